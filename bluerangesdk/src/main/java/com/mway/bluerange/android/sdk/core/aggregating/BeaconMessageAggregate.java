@@ -25,6 +25,7 @@
 
 package com.mway.bluerange.android.sdk.core.aggregating;
 
+import com.mway.bluerange.android.sdk.core.aggregating.averaging.IncrementalMovingAverageFilter;
 import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 
 import java.util.ArrayList;
@@ -34,12 +35,18 @@ import java.util.List;
 /**
  * A beacon message aggregate is a collection of equivalent beacon messages. An aggregate has a
  * predefined lifetime that is specified by a duration. When the end of the lifetime is reached,
- * all observers will be notified about this event.
+ * all observers will be notified about this event.<br>
+ *     If an incremental average filter is set, it is updated whenever a message is added or
+ *     removed, so that the average RSSI of the aggregate is always available in constant time.
  */
 public abstract class BeaconMessageAggregate {
 
-    protected List<BeaconMessage> messages = new ArrayList<>();
+    // Created by the first call of add, so that subclasses that override add and store their
+    // messages on their own do not allocate it.
+    protected List<BeaconMessage> messages;
     private long aggregateDurationInMs;
+    private IncrementalMovingAverageFilter averageFilter;
+    private BeaconMessage outputMessage;
 
     public BeaconMessageAggregate(BeaconMessage firstMessage, long aggregateDurationInMs) {
         this.aggregateDurationInMs = aggregateDurationInMs;
@@ -50,26 +57,117 @@ public abstract class BeaconMessageAggregate {
         add(firstMessage);
     }
 
+    /**
+     * Adds a message to this aggregate. Note that this method is called by the constructor of
+     * this class, before the constructors of subclasses have been executed.
+     */
     public void add(BeaconMessage message) {
+        if (messages == null) {
+            messages = new ArrayList<>();
+        }
         messages.add(message);
+        if (averageFilter != null) {
+            averageFilter.addSample(message.getTimestamp().getTime(), message.getRssi());
+        }
+    }
+
+    /**
+     * Sets the filter that maintains the average RSSI of this aggregate. The messages that are
+     * already contained in the aggregate are added to the filter.
+     * @param averageFilter an empty filter.
+     */
+    public void setAverageFilter(IncrementalMovingAverageFilter averageFilter) {
+        this.averageFilter = averageFilter;
+        for (int i = 0; i < getNumberOfMessages(); i++) {
+            averageFilter.addSample(getTimePoint(i), getRssi(i));
+        }
+    }
+
+    /**
+     * Returns the filter that maintains the average RSSI of this aggregate.
+     * @return the filter or null, if no filter was set.
+     */
+    public IncrementalMovingAverageFilter getAverageFilter() {
+        return averageFilter;
+    }
+
+    /**
+     * Returns the message that is reused to publish this aggregate. It is cloned from the
+     * prototype message on the first call and returned by all subsequent calls.
+     */
+    public BeaconMessage getOutputMessage() {
+        if (outputMessage == null) {
+            outputMessage = getPrototypeMessage().clone();
+        }
+        return outputMessage;
     }
 
     public boolean fits(BeaconMessage message) {
-        BeaconMessage firstMessage = messages.get(0);
-        return message.equals(firstMessage);
+        return message.equals(getPrototypeMessage());
     }
 
+    /**
+     * Returns the messages of this aggregate. Subclasses that do not store all messages return
+     * only the messages they keep.
+     */
     public List<BeaconMessage> getMessages() {
         return messages;
     }
 
+    /**
+     * Returns the message that the aggregated message is derived from.
+     * @return the first message, by default.
+     */
+    public BeaconMessage getPrototypeMessage() {
+        return messages.get(0);
+    }
+
+    /**
+     * Returns the number of messages contributing to the average RSSI.
+     */
+    public int getNumberOfMessages() {
+        return messages.size();
+    }
+
+    /**
+     * Returns the timestamp of the message at the passed index in milliseconds.
+     * @param index A value between 0 (the oldest message) and {@link #getNumberOfMessages()} - 1.
+     */
+    public long getTimePoint(int index) {
+        return messages.get(index).getTimestamp().getTime();
+    }
+
+    /**
+     * Returns the RSSI of the message at the passed index.
+     * @param index A value between 0 (the oldest message) and {@link #getNumberOfMessages()} - 1.
+     */
+    public int getRssi(int index) {
+        return messages.get(index).getRssi();
+    }
+
     public boolean isEmpty() {
-        return messages.isEmpty();
+        return getNumberOfMessages() == 0;
     }
 
     public abstract Date getStartDate();
     public abstract Date getStopDate();
 
+    /**
+     * Returns the start of this aggregate in milliseconds. Subclasses that create the start
+     * date on each call override this method, so that callers do not allocate a date.
+     */
+    public long getStartTimeInMs() {
+        return getStartDate().getTime();
+    }
+
+    /**
+     * Returns the end of this aggregate in milliseconds. Subclasses that create the stop
+     * date on each call override this method, so that callers do not allocate a date.
+     */
+    public long getStopTimeInMs() {
+        return getStopDate().getTime();
+    }
+
     public long getAggregateDurationInMs() {
         return aggregateDurationInMs;
     }
@@ -25,16 +25,27 @@
 
 package com.mway.bluerange.android.sdk.core.aggregating;
 
+import com.mway.bluerange.android.sdk.core.aggregating.averaging.IncrementalMovingAverageFilter;
+import com.mway.bluerange.android.sdk.core.aggregating.averaging.IncrementalMovingAverageFilterFactory;
 import com.mway.bluerange.android.sdk.core.aggregating.averaging.LinearWeightedMovingAverageFilter;
 import com.mway.bluerange.android.sdk.core.aggregating.averaging.MovingAverageFilter;
 import com.mway.bluerange.android.sdk.core.aggregating.averaging.SimpleMovingAverageFilter;
 import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
-import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeReceiver;
 import com.mway.bluerange.android.sdk.utils.logging.ITracer;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A beacon message aggregator is a node in a message processing graph that merges equivalent
@@ -45,7 +56,36 @@ import java.util.List;
  * message that is identical to the first message in the aggregate. However to make further
  * message processing more stable, message properties like the RSSI value will be averaged by
  * using a moving average filter. The resulting beacon message will be sent to all receivers of
- * the node.
+ * the node.<br>
+ *     The aggregates are indexed by the message they were created for. Since equivalent
+ *     messages are equal according to {@link BeaconMessage#equals}, the aggregate of a message
+ *     is found in constant time, independent of the number of beacons.<br>
+ *     The aggregates are distributed over {@link #NUMBER_OF_SHARDS} shards by the hash code of
+ *     their message. Each shard has its own lock, so that messages of different beacons, e.g.
+ *     coming from multiple senders, are aggregated in parallel. Aggregated messages are sent to
+ *     the receivers after the lock was released.<br>
+ *     In sliding window mode, an aggregate expires, when its most recent message is older than
+ *     the aggregate duration. Expired aggregates are removed whenever a message arrives and by a
+ *     timer that is only scheduled while aggregates exist. Moreover, the number of aggregates is
+ *     limited by {@link #getMaximumNumberOfAggregates}. The limit is enforced for the total
+ *     number of aggregates: if a new aggregate exceeds it, the least recently updated aggregate
+ *     of the new aggregate's shard is discarded or, if this shard is empty, the least recently
+ *     updated aggregate of the largest shard. In addition, each shard may hold at most twice its
+ *     fair share of the limit, so that a single shard cannot displace all others.<br>
+ *     In sliding window mode, an aggregated message is published for each incoming message by
+ *     default. To reduce the work of the receivers, the emission can be restricted by {@link
+ *     #setMinimumRssiChange} and {@link #setMaximumSilenceIntervalInMs}. Then, a message is only
+ *     published, if its average RSSI differs from the last published one by at least the minimum
+ *     change or if the maximum silence interval has elapsed since the last publication. Both
+ *     are evaluated with the timestamps of the incoming messages.<br>
+ *     By default, each aggregated message is a clone of the prototype message. If {@link
+ *     #setReuseAggregatedMessages} is enabled, each aggregate publishes the same message instance
+ *     instead, which is updated before each publish. In this case a published message is only
+ *     valid until the next message of the same beacon arrives. Receivers that keep messages
+ *     after their callback has returned, e.g. queues, or that run concurrently with the senders
+ *     of this node, must clone them. Moreover, the aggregator must then receive its messages
+ *     from a single thread, because a message is updated in place while another thread might
+ *     still deliver it.
  */
 public class BeaconMessageAggregator extends BeaconMessageStreamNode
         implements BeaconMessagePacketAggregate.BeaconMessagePacketAggregateObserver {
@@ -54,22 +94,128 @@ public class BeaconMessageAggregator extends BeaconMessageStreamNode
     private ITracer tracer;
     private static final String LOG_TAG = "Aggregator";
     // Mode
-    private AggregationMode aggregationMode;
+    private volatile AggregationMode aggregationMode;
     // Configuration
     private static final long DEFAULT_AGGREGATE_DURATION_IN_MS = 1000;
-    private long aggregateDurationInMs = DEFAULT_AGGREGATE_DURATION_IN_MS;
-    // Aggregates
-    private final List<BeaconMessageAggregate> aggregates = new ArrayList<>();
+    private volatile long aggregateDurationInMs = DEFAULT_AGGREGATE_DURATION_IN_MS;
+    public static final int DEFAULT_MAXIMUM_NUMBER_OF_AGGREGATES = 1024;
+    private volatile int maximumNumberOfAggregates = DEFAULT_MAXIMUM_NUMBER_OF_AGGREGATES;
+    // Aggregates, sharded by the hash code of the message they were created for.
+    public static final int NUMBER_OF_SHARDS = 16;
+    private final Shard[] shards = createShards();
+    private final AtomicInteger numberOfAggregates = new AtomicInteger();
+    // Output
+    private volatile boolean reuseAggregatedMessages = false;
+    private volatile float minimumRssiChange = 0;
+    private volatile long maximumSilenceIntervalInMs = Long.MAX_VALUE;
     // AverageFilter
-    private MovingAverageFilter averageFilter = new LinearWeightedMovingAverageFilter(0.3f);
-    // GarbageCollector
-    private Thread garbageCollectorThread;
+    private volatile MovingAverageFilter averageFilter
+            = new LinearWeightedMovingAverageFilter(0.3f);
+    // Completes all packet aggregates and expires sliding window aggregates on a single thread.
+    private final ScheduledExecutorService completionScheduler
+            = BeaconMessagePacketAggregate.createScheduler("BeaconMessageAggregator-CompletionTimer");
 
     public enum AggregationMode {
         PACEKT,
         SLIDING_WINDOW
     }
 
+    /**
+     * A part of the aggregates. All fields are guarded by the shard's monitor.
+     */
+    private class Shard {
+        // Aggregates indexed by the message they were created for,
+        // ordered from the least to the most recently updated one.
+        private final Map<BeaconMessage, BeaconMessageAggregate> aggregates
+                = new LinkedHashMap<>(16, 0.75f, true);
+        // Expiry of sliding window aggregates
+        private ScheduledFuture<?> expiryFuture;
+
+        /**
+         * Removes all sliding window aggregates whose most recent message is older than the
+         * aggregate duration. Since the aggregates are ordered by their last update, only the
+         * expired aggregates and the first one that has not expired are visited.
+         * @param currentTime The time in milliseconds the messages are compared to.
+         */
+        private void removeExpiredAggregates(long currentTime) {
+            if (aggregationMode != AggregationMode.SLIDING_WINDOW) {
+                return;
+            }
+            Iterator<BeaconMessageAggregate> iterator = aggregates.values().iterator();
+            while (iterator.hasNext()) {
+                BeaconMessageAggregate aggregate = iterator.next();
+                if (getExpiryTime(aggregate) > currentTime) {
+                    break;
+                }
+                aggregate.clear();
+                iterator.remove();
+                numberOfAggregates.decrementAndGet();
+            }
+        }
+
+        private void scheduleExpiry() {
+            if (aggregationMode != AggregationMode.SLIDING_WINDOW || expiryFuture != null
+                    || aggregates.isEmpty() || completionScheduler.isShutdown()) {
+                return;
+            }
+            BeaconMessageAggregate leastRecentlyUpdatedAggregate
+                    = aggregates.values().iterator().next();
+            long delayInMs = Math.max(1, getExpiryTime(leastRecentlyUpdatedAggregate)
+                    - System.currentTimeMillis());
+            expiryFuture = completionScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (Shard.this) {
+                        expiryFuture = null;
+                        removeExpiredAggregates(System.currentTimeMillis());
+                        scheduleExpiry();
+                    }
+                }
+            }, delayInMs, TimeUnit.MILLISECONDS);
+        }
+
+        private void removeLeastRecentlyUpdatedAggregates(int maximumNumberOfRemainingAggregates) {
+            Iterator<BeaconMessageAggregate> iterator = aggregates.values().iterator();
+            while (aggregates.size() > maximumNumberOfRemainingAggregates && iterator.hasNext()) {
+                BeaconMessageAggregate aggregate = iterator.next();
+                // Packet aggregates are discarded before they were published.
+                if (aggregate instanceof BeaconMessagePacketAggregate) {
+                    recordDroppedMessages(aggregate.getNumberOfMessages());
+                }
+                aggregate.clear();
+                iterator.remove();
+                numberOfAggregates.decrementAndGet();
+            }
+        }
+
+        private void addAggregate(BeaconMessage message, BeaconMessageAggregate aggregate) {
+            aggregates.put(message, aggregate);
+            numberOfAggregates.incrementAndGet();
+        }
+
+        private void removeAggregate(BeaconMessageAggregate aggregate) {
+            aggregate.clear();
+            // The prototype of a packet aggregate is the message it was created for.
+            BeaconMessage key = aggregate.getPrototypeMessage();
+            if (aggregates.get(key) == aggregate) {
+                aggregates.remove(key);
+                numberOfAggregates.decrementAndGet();
+            }
+        }
+
+        private void clear() {
+            for (BeaconMessageAggregate aggregate : aggregates.values()) {
+                aggregate.clear();
+            }
+            numberOfAggregates.addAndGet(-aggregates.size());
+            aggregates.clear();
+            if (expiryFuture != null) {
+                expiryFuture.cancel(false);
+                expiryFuture = null;
+            }
+        }
+    }
+
     public BeaconMessageAggregator(ITracer tracer, BeaconMessageStreamNode sender) {
         super(sender);
         init(tracer);
@@ -83,38 +229,58 @@ public class BeaconMessageAggregator extends BeaconMessageStreamNode
     private void init(ITracer tracer) {
         this.tracer = tracer;
         this.setAggregationMode(AggregationMode.PACEKT);
-        startAggregateGarbageCollector();
     }
 
-    private void startAggregateGarbageCollector() {
-        garbageCollectorThread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    while (true) {
-                        removeGarbage();
-                        Thread.sleep(10 * 1000);
-                    }
-                } catch (InterruptedException e) {
-                    // On interrupt, we stop this thread.
+    private Shard[] createShards() {
+        Shard[] shards = new Shard[NUMBER_OF_SHARDS];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+        return shards;
+    }
+
+    /**
+     * Returns the index of the shard that contains the aggregate of the message.
+     */
+    static int getShardIndex(BeaconMessage message) {
+        int hashCode = message.hashCode();
+        return (hashCode ^ (hashCode >>> 16)) & (NUMBER_OF_SHARDS - 1);
+    }
+
+    private Shard getShard(BeaconMessage message) {
+        return shards[getShardIndex(message)];
+    }
+
+    private long getExpiryTime(BeaconMessageAggregate aggregate) {
+        return aggregate.getStopTimeInMs() + aggregateDurationInMs;
+    }
+
+    private int getMaximumNumberOfAggregatesPerShard() {
+        // The hash codes are not distributed evenly, so each shard gets twice its fair share.
+        int fairShare = (maximumNumberOfAggregates + NUMBER_OF_SHARDS - 1) / NUMBER_OF_SHARDS;
+        return Math.max(1, 2 * fairShare);
+    }
+
+    /**
+     * Discards the least recently updated aggregates of the largest shards, until the total
+     * number of aggregates does not exceed the limit. Must be called without holding a shard's
+     * monitor.
+     */
+    private void removeExcessAggregates() {
+        while (numberOfAggregates.get() > maximumNumberOfAggregates) {
+            // The sizes are only used as a hint, so they are read without locking the shards.
+            Shard largestShard = shards[0];
+            for (Shard shard : shards) {
+                if (shard.aggregates.size() > largestShard.aggregates.size()) {
+                    largestShard = shard;
                 }
             }
-        });
-        garbageCollectorThread.start();
-    }
-
-    private void removeGarbage() {
-        synchronized (aggregates) {
-            for (int i = 0; i < aggregates.size(); i++) {
-                if (this.aggregationMode == AggregationMode.SLIDING_WINDOW) {
-                    BeaconMessageAggregate aggregate = aggregates.get(i);
-                    BeaconMessageSlidingWindowAggregate slidingWindowAggregate =
-                            (BeaconMessageSlidingWindowAggregate) aggregate;
-                    slidingWindowAggregate.removeOldMessages();
-                    if (slidingWindowAggregate.isEmpty()) {
-                        aggregates.remove(slidingWindowAggregate);
-                    }
+            synchronized (largestShard) {
+                if (largestShard.aggregates.isEmpty()) {
+                    return;
                 }
+                largestShard.removeLeastRecentlyUpdatedAggregates(
+                        largestShard.aggregates.size() - 1);
             }
         }
     }
@@ -122,109 +288,219 @@ public class BeaconMessageAggregator extends BeaconMessageStreamNode
     @Override
     public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
         tracer.logDebug(LOG_TAG, "Aggregator received message with RSSI ." + message.getRssi());
-        synchronized (aggregates) {
-            BeaconMessageAggregate aggregate = findAggregateForMessage(message);
+        BeaconMessage aggregatedMessage = aggregateMessage(message);
+        if (aggregatedMessage != null) {
+            publishAggregatedMessage(aggregatedMessage);
+        }
+    }
+
+    @Override
+    public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+        tracer.logDebug(LOG_TAG, "Aggregator received " + messages.size() + " messages.");
+        List<BeaconMessage> aggregatedMessages = null;
+        for (int i = 0; i < messages.size(); i++) {
+            BeaconMessage aggregatedMessage = aggregateMessage(messages.get(i));
+            if (aggregatedMessage != null) {
+                if (aggregatedMessages == null) {
+                    aggregatedMessages = new ArrayList<>();
+                }
+                aggregatedMessages.add(aggregatedMessage);
+            }
+        }
+        if (aggregatedMessages == null) {
+            return;
+        }
+        if (reuseAggregatedMessages) {
+            aggregatedMessages = removeSupersededMessages(aggregatedMessages);
+        }
+        // In sliding window mode the whole batch is published at once.
+        if (aggregatedMessages.size() == 1) {
+            publishAggregatedMessage(aggregatedMessages.get(0));
+        } else {
+            sendMessagesToReceivers(aggregatedMessages);
+            tracer.logDebug(LOG_TAG, "Sent " + aggregatedMessages.size() + " aggregate messages.");
+        }
+    }
+
+    /**
+     * Keeps only the last occurrence of each message instance. A reused message already carries
+     * the latest state of its aggregate, so that its earlier occurrences are superseded.
+     * @return the remaining messages in their original order.
+     */
+    static List<BeaconMessage> removeSupersededMessages(List<BeaconMessage> messages) {
+        if (messages.size() < 2) {
+            return messages;
+        }
+        Set<BeaconMessage> latestMessages
+                = Collections.newSetFromMap(new IdentityHashMap<BeaconMessage, Boolean>());
+        List<BeaconMessage> remainingMessages = new ArrayList<>(messages.size());
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (latestMessages.add(messages.get(i))) {
+                remainingMessages.add(messages.get(i));
+            }
+        }
+        Collections.reverse(remainingMessages);
+        return remainingMessages;
+    }
+
+    /**
+     * Adds the message to its aggregate.
+     * @return the aggregated message that has to be published or null, if there is none.
+     */
+    private BeaconMessage aggregateMessage(BeaconMessage message) {
+        if (completionScheduler.isShutdown()) {
+            // The aggregator was stopped.
+            return null;
+        }
+        BeaconMessage aggregatedMessage = aggregateMessageInShard(message);
+        // Only happens, if the shard of the message was empty while the limit was reached.
+        if (numberOfAggregates.get() > maximumNumberOfAggregates) {
+            removeExcessAggregates();
+        }
+        return aggregatedMessage;
+    }
+
+    private BeaconMessage aggregateMessageInShard(BeaconMessage message) {
+        Shard shard = getShard(message);
+        synchronized (shard) {
+            shard.removeExpiredAggregates(message.getTimestamp().getTime());
+            BeaconMessageAggregate aggregate = shard.aggregates.get(message);
             if (aggregate != null) {
                 aggregate.add(message);
             } else {
+                int maximumNumberOfRemainingAggregates = getMaximumNumberOfAggregatesPerShard() - 1;
+                if (numberOfAggregates.get() >= maximumNumberOfAggregates) {
+                    maximumNumberOfRemainingAggregates = Math.min(
+                            maximumNumberOfRemainingAggregates, shard.aggregates.size() - 1);
+                }
+                shard.removeLeastRecentlyUpdatedAggregates(maximumNumberOfRemainingAggregates);
                 if (this.aggregationMode == AggregationMode.PACEKT) {
-                    BeaconMessagePacketAggregate packetAggregate
-                            = new BeaconMessagePacketAggregate(message, aggregateDurationInMs);
-                    packetAggregate.addObserver(this);
-                    aggregates.add(packetAggregate);
+                    // The aggregator observes the aggregate before its timer is started.
+                    BeaconMessagePacketAggregate packetAggregate = new BeaconMessagePacketAggregate(
+                            message, aggregateDurationInMs, completionScheduler, this);
+                    initAverageFilter(packetAggregate);
+                    shard.addAggregate(message, packetAggregate);
                     aggregate = packetAggregate;
                 } else if(this.aggregationMode == AggregationMode.SLIDING_WINDOW) {
                     BeaconMessageSlidingWindowAggregate slidingWindowAggregate
                             = new BeaconMessageSlidingWindowAggregate(message, aggregateDurationInMs);
+                    initAverageFilter(slidingWindowAggregate);
                     aggregate = slidingWindowAggregate;
-                    aggregates.add(slidingWindowAggregate);
+                    shard.addAggregate(message, slidingWindowAggregate);
                 }
             }
+            shard.scheduleExpiry();
 
             // Instant reaction in sliding window mode.
             if(this.aggregationMode == AggregationMode.SLIDING_WINDOW) {
                 BeaconMessageSlidingWindowAggregate slidingWindowAggregate =
                         (BeaconMessageSlidingWindowAggregate) aggregate;
-                handleSlidingWindowMessage(slidingWindowAggregate);
+                slidingWindowAggregate.removeOldMessages();
+                int averageRssi = (int) getAverageRssi(slidingWindowAggregate);
+                long time = message.getTimestamp().getTime();
+                if (!isEmissionDue(slidingWindowAggregate, averageRssi, time)) {
+                    return null;
+                }
+                slidingWindowAggregate.setPublished(averageRssi, time);
+                return createAggregatedMessage(slidingWindowAggregate, averageRssi);
             }
+            return null;
         }
     }
 
-    private BeaconMessageAggregate findAggregateForMessage(BeaconMessage message) {
-        for (BeaconMessageAggregate aggregate : aggregates) {
-            if (aggregate.fits(message)) {
-                return aggregate;
-            }
+    private void initAverageFilter(BeaconMessageAggregate aggregate) {
+        // Filters with an incremental counterpart are updated with each message, so that
+        // publishing an aggregate does not iterate over all its messages.
+        MovingAverageFilter averageFilter = this.averageFilter;
+        if (averageFilter instanceof IncrementalMovingAverageFilterFactory) {
+            aggregate.setAverageFilter(
+                    ((IncrementalMovingAverageFilterFactory) averageFilter).createIncrementalFilter());
         }
-        return null;
     }
 
     @Override
     public void onAggregateCompleted(BeaconMessagePacketAggregate aggregate) {
-        synchronized (aggregates) {
-            publishAggregatedMessageForAggregate(aggregate);
-            removeAggregate(aggregate);
+        BeaconMessage aggregatedMessage;
+        Shard shard = getShard(aggregate.getPrototypeMessage());
+        synchronized (shard) {
+            aggregatedMessage = createAggregatedMessage(aggregate, (int) getAverageRssi(aggregate));
+            shard.removeAggregate(aggregate);
         }
+        publishAggregatedMessage(aggregatedMessage);
+    }
+
+    private boolean isEmissionDue(BeaconMessageSlidingWindowAggregate aggregate,
+                                  int averageRssi, long time) {
+        return !aggregate.isPublished()
+                || Math.abs(averageRssi - aggregate.getPublishedRssi()) >= minimumRssiChange
+                || time - aggregate.getPublishTime() >= maximumSilenceIntervalInMs;
     }
 
+    /**
+     * Publishes the aggregated message of the aggregate, regardless of the emission restrictions.
+     */
     public void handleSlidingWindowMessage(BeaconMessageSlidingWindowAggregate aggregate) {
-        synchronized (aggregates) {
+        BeaconMessage aggregatedMessage;
+        synchronized (getShard(aggregate.getPrototypeMessage())) {
             aggregate.removeOldMessages();
-            publishAggregatedMessageForAggregate(aggregate);
+            int averageRssi = (int) getAverageRssi(aggregate);
+            aggregate.setPublished(averageRssi, aggregate.getStopTimeInMs());
+            aggregatedMessage = createAggregatedMessage(aggregate, averageRssi);
         }
+        publishAggregatedMessage(aggregatedMessage);
     }
 
-    private void publishAggregatedMessageForAggregate(BeaconMessageAggregate aggregate) {
-        BeaconMessage aggregatedMessage = createAggregatedMessage(aggregate);
-        sendToReceivers(aggregatedMessage);
+    private void publishAggregatedMessage(BeaconMessage aggregatedMessage) {
+        sendMessageToReceivers(aggregatedMessage);
         tracer.logDebug(LOG_TAG, "Sent aggregate message with RSSI " + aggregatedMessage
                 .getRssi());
     }
 
-    private BeaconMessage createAggregatedMessage(BeaconMessageAggregate aggregate) {
-        // Use first message as prototype.
-        BeaconMessage aggregatedMessage = aggregate.getMessages().get(0).clone();
+    private BeaconMessage createAggregatedMessage(BeaconMessageAggregate aggregate,
+                                                  int averageRssi) {
+        BeaconMessage prototypeMessage = aggregate.getPrototypeMessage();
+        BeaconMessage aggregatedMessage;
+        if (reuseAggregatedMessages) {
+            // The prototype's properties are shared instead of copied.
+            aggregatedMessage = aggregate.getOutputMessage();
+            aggregatedMessage.setTimestamp(prototypeMessage.getTimestamp());
+            aggregatedMessage.setTxPower(prototypeMessage.getTxPower());
+        } else {
+            aggregatedMessage = prototypeMessage.clone();
+        }
         // Merge messages property of all messages in this aggregate
-        int avgRssi = (int)getAverageRssi(aggregate);
-        aggregatedMessage.setRssi(avgRssi);
+        aggregatedMessage.setRssi(averageRssi);
+        aggregatedMessage.setNumberOfAggregatedMessages(aggregate.getNumberOfMessages());
         // Return flattenedMessage
         return aggregatedMessage;
     }
 
     private float getAverageRssi(BeaconMessageAggregate aggregate) {
-        long minTime = aggregate.getStartDate().getTime();
-        long maxTime = aggregate.getStopDate().getTime();
+        long minTime = aggregate.getStartTimeInMs();
+        long maxTime = aggregate.getStopTimeInMs();
+        IncrementalMovingAverageFilter incrementalAverageFilter = aggregate.getAverageFilter();
+        if (incrementalAverageFilter != null) {
+            return incrementalAverageFilter.getCurrentAverage(minTime, maxTime);
+        }
         List<Long> timePoints = new ArrayList<>();
         List<Float> values = new ArrayList<>();
 
-        for (BeaconMessage message : aggregate.getMessages()) {
-            timePoints.add(message.getTimestamp().getTime());
-            values.add((float)message.getRssi());
+        for (int i = 0; i < aggregate.getNumberOfMessages(); i++) {
+            timePoints.add(aggregate.getTimePoint(i));
+            values.add((float) aggregate.getRssi(i));
         }
 
         float average = this.averageFilter.getAverage(minTime, maxTime, timePoints, values);
         return average;
     }
 
-    private void sendToReceivers(BeaconMessage aggregatedMessage) {
-        for (BeaconMessageStreamNodeReceiver receiver : getReceivers()) {
-            receiver.onReceivedMessage(this, aggregatedMessage);
-        }
-    }
-
     public void stop() {
-        synchronized (aggregates) {
-            for (BeaconMessageAggregate aggregate : aggregates) {
-                aggregate.clear();
+        completionScheduler.shutdownNow();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.clear();
             }
-            aggregates.clear();
         }
-        garbageCollectorThread.interrupt();
-    }
-
-    private void removeAggregate(BeaconMessageAggregate aggregate) {
-        aggregate.clear();
-        aggregates.remove(aggregate);
     }
 
     public long getAggregateDurationInMs() {
@@ -235,6 +511,74 @@ public class BeaconMessageAggregator extends BeaconMessageStreamNode
         this.aggregateDurationInMs = aggregateDurationInMs;
     }
 
+    public int getMaximumNumberOfAggregates() {
+        return maximumNumberOfAggregates;
+    }
+
+    /**
+     * Limits the number of aggregates. If the limit is exceeded, the least recently updated
+     * aggregates are discarded, as described in the class documentation.
+     */
+    public void setMaximumNumberOfAggregates(int maximumNumberOfAggregates) {
+        if (maximumNumberOfAggregates <= 0) {
+            throw new IllegalArgumentException("Maximum number of aggregates must be positive.");
+        }
+        this.maximumNumberOfAggregates = maximumNumberOfAggregates;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.removeLeastRecentlyUpdatedAggregates(getMaximumNumberOfAggregatesPerShard());
+            }
+        }
+        removeExcessAggregates();
+    }
+
+    /**
+     * Returns the number of aggregates that are currently stored.
+     */
+    public int getNumberOfAggregates() {
+        return numberOfAggregates.get();
+    }
+
+    public boolean isReuseAggregatedMessages() {
+        return reuseAggregatedMessages;
+    }
+
+    /**
+     * If enabled, each aggregate publishes the same message instance, which is updated in place,
+     * instead of a new clone for each publish. Only enable it, if all messages are received
+     * from a single thread. See the class documentation for the restrictions this imposes on
+     * receivers.
+     */
+    public void setReuseAggregatedMessages(boolean reuseAggregatedMessages) {
+        this.reuseAggregatedMessages = reuseAggregatedMessages;
+    }
+
+    public float getMinimumRssiChange() {
+        return minimumRssiChange;
+    }
+
+    /**
+     * In sliding window mode, an aggregated message is only published, if its RSSI differs from
+     * the last published RSSI of the beacon by at least this value or if the maximum silence
+     * interval has elapsed. The default value 0 publishes each aggregated message.
+     */
+    public void setMinimumRssiChange(float minimumRssiChange) {
+        this.minimumRssiChange = minimumRssiChange;
+    }
+
+    public long getMaximumSilenceIntervalInMs() {
+        return maximumSilenceIntervalInMs;
+    }
+
+    /**
+     * In sliding window mode, an aggregated message is published at the latest, when this
+     * interval has elapsed since the last publication for the beacon, even if the RSSI did not
+     * change by the minimum RSSI change.
+     */
+    public void setMaximumSilenceIntervalInMs(long maximumSilenceIntervalInMs) {
+        this.maximumSilenceIntervalInMs = maximumSilenceIntervalInMs;
+    }
+
     public MovingAverageFilter getAverageFilter() {
         return averageFilter;
     }
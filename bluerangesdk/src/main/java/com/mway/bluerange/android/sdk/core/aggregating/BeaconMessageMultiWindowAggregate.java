@@ -0,0 +1,159 @@
+//
+//  BeaconMessageMultiWindowAggregate.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating;
+
+import com.mway.bluerange.android.sdk.core.aggregating.averaging.IncrementalMovingAverageFilter;
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+
+/**
+ * A multi window aggregate is a sliding window aggregate that averages the RSSI over several
+ * windows of different lengths at once. The messages are stored only once for the longest
+ * window. For each window, an incremental average filter and the index of the oldest message
+ * inside the window are maintained, so that adding a message updates all windows without
+ * iterating over the stored messages.
+ */
+public class BeaconMessageMultiWindowAggregate extends BeaconMessageSlidingWindowAggregate {
+
+    private final long[] windowDurationsInMs;
+    private IncrementalMovingAverageFilter[] windowFilters;
+    // The index of the oldest message inside each window.
+    private int[] windowStarts;
+    // The messages that are reused to publish each window.
+    private BeaconMessage[] outputMessages;
+
+    /**
+     * @param windowDurationsInMs The lengths of the windows in milliseconds.
+     */
+    public BeaconMessageMultiWindowAggregate(BeaconMessage firstMessage, long[] windowDurationsInMs) {
+        super(firstMessage, getLongestDuration(windowDurationsInMs));
+        this.windowDurationsInMs = windowDurationsInMs.clone();
+        this.windowStarts = new int[windowDurationsInMs.length];
+    }
+
+    private static long getLongestDuration(long[] windowDurationsInMs) {
+        long longestDurationInMs = 0;
+        for (long windowDurationInMs : windowDurationsInMs) {
+            longestDurationInMs = Math.max(longestDurationInMs, windowDurationInMs);
+        }
+        return longestDurationInMs;
+    }
+
+    /**
+     * Sets the filters that maintain the average RSSI of each window. The messages that are
+     * already contained in the aggregate are added to all filters.
+     * @param windowFilters empty filters, one for each window.
+     */
+    public void setWindowFilters(IncrementalMovingAverageFilter[] windowFilters) {
+        if (windowFilters.length != windowDurationsInMs.length) {
+            throw new IllegalArgumentException("There must be one filter for each window.");
+        }
+        this.windowFilters = windowFilters;
+        for (int window = 0; window < windowFilters.length; window++) {
+            windowStarts[window] = 0;
+            for (int i = 0; i < getNumberOfMessages(); i++) {
+                windowFilters[window].addSample(getTimePoint(i), getRssi(i));
+            }
+        }
+    }
+
+    @Override
+    public void add(BeaconMessage message) {
+        super.add(message);
+        if (windowFilters != null) {
+            long timePoint = message.getTimestamp().getTime();
+            for (IncrementalMovingAverageFilter windowFilter : windowFilters) {
+                windowFilter.addSample(timePoint, message.getRssi());
+            }
+        }
+    }
+
+    @Override
+    public void removeOldMessages() {
+        int numberOfMessages = getNumberOfMessages();
+        if (numberOfMessages == 0) {
+            return;
+        }
+        long recentTimePoint = getTimePoint(numberOfMessages - 1);
+        for (int window = 0; window < windowStarts.length; window++) {
+            int start = windowStarts[window];
+            while (start < numberOfMessages
+                    && (recentTimePoint - getTimePoint(start)) > windowDurationsInMs[window]) {
+                if (windowFilters != null) {
+                    windowFilters[window].evictSample(getTimePoint(start), getRssi(start));
+                }
+                start++;
+            }
+            windowStarts[window] = start;
+        }
+        // The removed messages are outside of all windows.
+        super.removeOldMessages();
+        int removedMessages = numberOfMessages - getNumberOfMessages();
+        for (int window = 0; window < windowStarts.length; window++) {
+            windowStarts[window] -= removedMessages;
+        }
+    }
+
+    public int getNumberOfWindows() {
+        return windowDurationsInMs.length;
+    }
+
+    public long getWindowDurationInMs(int window) {
+        return windowDurationsInMs[window];
+    }
+
+    /**
+     * Returns the message that is reused to publish the window. It is cloned from the prototype
+     * message on the first call for each window and returned by all subsequent calls.
+     */
+    public BeaconMessage getOutputMessage(int window) {
+        if (outputMessages == null) {
+            outputMessages = new BeaconMessage[windowDurationsInMs.length];
+        }
+        if (outputMessages[window] == null) {
+            outputMessages[window] = getPrototypeMessage().clone();
+        }
+        return outputMessages[window];
+    }
+
+    /**
+     * Returns the number of messages inside the window.
+     */
+    public int getNumberOfMessages(int window) {
+        return getNumberOfMessages() - windowStarts[window];
+    }
+
+    /**
+     * Returns the average RSSI of the messages inside the window.
+     * @return the average or NaN, if no filters were set.
+     */
+    public float getAverageRssi(int window) {
+        if (windowFilters == null) {
+            return Float.NaN;
+        }
+        long stopTime = getStopTimeInMs();
+        long startTime = stopTime - windowDurationsInMs[window];
+        return windowFilters[window].getCurrentAverage(startTime, stopTime);
+    }
+}
@@ -0,0 +1,331 @@
+//
+//  BeaconMessageMultiWindowAggregator.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating;
+
+import com.mway.bluerange.android.sdk.core.aggregating.averaging.IncrementalMovingAverageFilter;
+import com.mway.bluerange.android.sdk.core.aggregating.averaging.IncrementalMovingAverageFilterFactory;
+import com.mway.bluerange.android.sdk.core.aggregating.averaging.LinearWeightedMovingAverageFilter;
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
+import com.mway.bluerange.android.sdk.utils.logging.ITracer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A beacon message multi window aggregator is a node in a message processing graph that
+ * aggregates equivalent beacon messages over several sliding windows of different lengths, e.g.
+ * 1 s, 5 s and 30 s. Instead of using one {@link BeaconMessageAggregator} for each window, the
+ * messages of each beacon are stored only once in a {@link BeaconMessageMultiWindowAggregate}.
+ * <br>
+ *     Each window has its own output port, which is a node that can be used as the sender of
+ *     other nodes or to which receivers can be added. Whenever a message arrives, each port
+ *     publishes an aggregated message with the average RSSI of the beacon's messages inside its
+ *     window. The aggregated messages are sent after the lock of this node was released.<br>
+ *     This node does not start any thread. Aggregates whose most recent message is older than
+ *     the longest window are removed when a message arrives. Moreover, the number of aggregates
+ *     is limited by {@link #getMaximumNumberOfAggregates}. If a new aggregate exceeds this limit,
+ *     the least recently updated aggregate is discarded.<br>
+ *     By default, each aggregated message is a clone of the prototype message. If {@link
+ *     #setReuseAggregatedMessages} is enabled, each window of an aggregate publishes the same
+ *     message instance instead, with the same restrictions as described for the {@link
+ *     BeaconMessageAggregator}.
+ */
+public class BeaconMessageMultiWindowAggregator extends BeaconMessageStreamNode {
+
+    // Tracing
+    private ITracer tracer;
+    private static final String LOG_TAG = "MultiWindowAggregator";
+    // Configuration
+    private final long[] windowDurationsInMs;
+    private long longestWindowDurationInMs;
+    private volatile int maximumNumberOfAggregates
+            = BeaconMessageAggregator.DEFAULT_MAXIMUM_NUMBER_OF_AGGREGATES;
+    private volatile IncrementalMovingAverageFilterFactory averageFilter
+            = new LinearWeightedMovingAverageFilter(0.3f);
+    private volatile boolean reuseAggregatedMessages = false;
+    // Aggregates indexed by the message they were created for,
+    // ordered from the least to the most recently updated one.
+    private final Map<BeaconMessage, BeaconMessageMultiWindowAggregate> aggregates
+            = new LinkedHashMap<>(16, 0.75f, true);
+    // Output
+    private final WindowPort[] ports;
+
+    /**
+     * The output port of a window.
+     */
+    public static class WindowPort extends BeaconMessageStreamNode {
+
+        private final long windowDurationInMs;
+
+        private WindowPort(long windowDurationInMs) {
+            this.windowDurationInMs = windowDurationInMs;
+        }
+
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            // A port does not have any senders.
+        }
+
+        private void publish(List<BeaconMessage> messages) {
+            if (messages.size() == 1) {
+                sendMessageToReceivers(messages.get(0));
+            } else if (messages.size() > 1) {
+                sendMessagesToReceivers(messages);
+            }
+        }
+
+        public long getWindowDurationInMs() {
+            return windowDurationInMs;
+        }
+    }
+
+    public BeaconMessageMultiWindowAggregator(ITracer tracer, BeaconMessageStreamNode sender,
+                                              long... windowDurationsInMs) {
+        super();
+        this.windowDurationsInMs = windowDurationsInMs.clone();
+        this.ports = createPorts(windowDurationsInMs);
+        init(tracer);
+        addSender(sender);
+    }
+
+    public BeaconMessageMultiWindowAggregator(ITracer tracer, List<BeaconMessageStreamNode> senders,
+                                              long... windowDurationsInMs) {
+        super();
+        this.windowDurationsInMs = windowDurationsInMs.clone();
+        this.ports = createPorts(windowDurationsInMs);
+        init(tracer);
+        for (BeaconMessageStreamNode sender : senders) {
+            addSender(sender);
+        }
+    }
+
+    private static WindowPort[] createPorts(long[] windowDurationsInMs) {
+        if (windowDurationsInMs.length == 0) {
+            throw new IllegalArgumentException("At least one window must be defined.");
+        }
+        WindowPort[] ports = new WindowPort[windowDurationsInMs.length];
+        for (int i = 0; i < windowDurationsInMs.length; i++) {
+            if (windowDurationsInMs[i] <= 0) {
+                throw new IllegalArgumentException("Window durations must be positive.");
+            }
+            ports[i] = new WindowPort(windowDurationsInMs[i]);
+        }
+        return ports;
+    }
+
+    private void init(ITracer tracer) {
+        this.tracer = tracer;
+        for (long windowDurationInMs : windowDurationsInMs) {
+            longestWindowDurationInMs = Math.max(longestWindowDurationInMs, windowDurationInMs);
+        }
+    }
+
+    @Override
+    public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+        List<List<BeaconMessage>> outgoingMessages = createOutgoingMessageLists();
+        synchronized (aggregates) {
+            aggregateMessage(message, outgoingMessages);
+        }
+        publish(outgoingMessages);
+        tracer.logDebug(LOG_TAG, "Aggregated message with RSSI " + message.getRssi()
+                + " in " + ports.length + " windows.");
+    }
+
+    @Override
+    public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+        List<List<BeaconMessage>> outgoingMessages = createOutgoingMessageLists();
+        synchronized (aggregates) {
+            for (int i = 0; i < messages.size(); i++) {
+                aggregateMessage(messages.get(i), outgoingMessages);
+            }
+        }
+        if (reuseAggregatedMessages) {
+            for (int window = 0; window < ports.length; window++) {
+                outgoingMessages.set(window, BeaconMessageAggregator.removeSupersededMessages(
+                        outgoingMessages.get(window)));
+            }
+        }
+        publish(outgoingMessages);
+        tracer.logDebug(LOG_TAG, "Aggregated " + messages.size() + " messages in "
+                + ports.length + " windows.");
+    }
+
+    private List<List<BeaconMessage>> createOutgoingMessageLists() {
+        List<List<BeaconMessage>> outgoingMessages = new ArrayList<>(ports.length);
+        for (int i = 0; i < ports.length; i++) {
+            outgoingMessages.add(new ArrayList<BeaconMessage>());
+        }
+        return outgoingMessages;
+    }
+
+    private void publish(List<List<BeaconMessage>> outgoingMessages) {
+        for (int window = 0; window < ports.length; window++) {
+            ports[window].publish(outgoingMessages.get(window));
+        }
+    }
+
+    // Must be called while holding the lock of the aggregates.
+    private void aggregateMessage(BeaconMessage message, List<List<BeaconMessage>> outgoingMessages) {
+        removeExpiredAggregates(message.getTimestamp().getTime());
+        BeaconMessageMultiWindowAggregate aggregate = aggregates.get(message);
+        if (aggregate != null) {
+            aggregate.add(message);
+        } else {
+            removeLeastRecentlyUpdatedAggregates(maximumNumberOfAggregates - 1);
+            aggregate = new BeaconMessageMultiWindowAggregate(message, windowDurationsInMs);
+            aggregate.setWindowFilters(createWindowFilters());
+            aggregates.put(message, aggregate);
+        }
+        aggregate.removeOldMessages();
+        for (int window = 0; window < ports.length; window++) {
+            outgoingMessages.get(window).add(createAggregatedMessage(aggregate, window));
+        }
+    }
+
+    private IncrementalMovingAverageFilter[] createWindowFilters() {
+        IncrementalMovingAverageFilter[] windowFilters
+                = new IncrementalMovingAverageFilter[windowDurationsInMs.length];
+        for (int i = 0; i < windowFilters.length; i++) {
+            windowFilters[i] = averageFilter.createIncrementalFilter();
+        }
+        return windowFilters;
+    }
+
+    private BeaconMessage createAggregatedMessage(BeaconMessageMultiWindowAggregate aggregate,
+                                                  int window) {
+        BeaconMessage prototypeMessage = aggregate.getPrototypeMessage();
+        BeaconMessage aggregatedMessage;
+        if (reuseAggregatedMessages) {
+            // The prototype's properties are shared instead of copied.
+            aggregatedMessage = aggregate.getOutputMessage(window);
+            aggregatedMessage.setTimestamp(prototypeMessage.getTimestamp());
+            aggregatedMessage.setTxPower(prototypeMessage.getTxPower());
+        } else {
+            aggregatedMessage = prototypeMessage.clone();
+        }
+        aggregatedMessage.setRssi((int) aggregate.getAverageRssi(window));
+        aggregatedMessage.setNumberOfAggregatedMessages(aggregate.getNumberOfMessages(window));
+        return aggregatedMessage;
+    }
+
+    private void removeExpiredAggregates(long currentTime) {
+        Iterator<BeaconMessageMultiWindowAggregate> iterator = aggregates.values().iterator();
+        while (iterator.hasNext()) {
+            BeaconMessageMultiWindowAggregate aggregate = iterator.next();
+            if (aggregate.getStopTimeInMs() + longestWindowDurationInMs > currentTime) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    private void removeLeastRecentlyUpdatedAggregates(int maximumNumberOfRemainingAggregates) {
+        Iterator<BeaconMessageMultiWindowAggregate> iterator = aggregates.values().iterator();
+        while (aggregates.size() > maximumNumberOfRemainingAggregates && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the output port of the window at the passed index.
+     */
+    public WindowPort getPort(int window) {
+        return ports[window];
+    }
+
+    public int getNumberOfWindows() {
+        return ports.length;
+    }
+
+    public long getWindowDurationInMs(int window) {
+        return windowDurationsInMs[window];
+    }
+
+    public int getMaximumNumberOfAggregates() {
+        return maximumNumberOfAggregates;
+    }
+
+    /**
+     * Limits the number of aggregates. If the limit is exceeded, the least recently updated
+     * aggregates are discarded.
+     */
+    public void setMaximumNumberOfAggregates(int maximumNumberOfAggregates) {
+        if (maximumNumberOfAggregates <= 0) {
+            throw new IllegalArgumentException("Maximum number of aggregates must be positive.");
+        }
+        synchronized (aggregates) {
+            this.maximumNumberOfAggregates = maximumNumberOfAggregates;
+            removeLeastRecentlyUpdatedAggregates(maximumNumberOfAggregates);
+        }
+    }
+
+    /**
+     * Returns the number of aggregates that are currently stored.
+     */
+    public int getNumberOfAggregates() {
+        synchronized (aggregates) {
+            return aggregates.size();
+        }
+    }
+
+    public IncrementalMovingAverageFilterFactory getAverageFilter() {
+        return averageFilter;
+    }
+
+    /**
+     * Sets the filter that averages the RSSI of each window. Only aggregates created afterwards
+     * use the new filter.
+     */
+    public void setAverageFilter(IncrementalMovingAverageFilterFactory averageFilter) {
+        this.averageFilter = averageFilter;
+    }
+
+    public boolean isReuseAggregatedMessages() {
+        return reuseAggregatedMessages;
+    }
+
+    /**
+     * If enabled, each window of an aggregate publishes the same message instance, which is
+     * updated in place, instead of a new clone for each publish. Only enable it, if all
+     * messages are received from a single thread.
+     */
+    public void setReuseAggregatedMessages(boolean reuseAggregatedMessages) {
+        this.reuseAggregatedMessages = reuseAggregatedMessages;
+    }
+
+    /**
+     * Removes all aggregates.
+     */
+    public void clear() {
+        synchronized (aggregates) {
+            aggregates.clear();
+        }
+    }
+}
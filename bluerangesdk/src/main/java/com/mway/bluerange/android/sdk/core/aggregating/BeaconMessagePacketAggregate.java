@@ -30,25 +30,93 @@ import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * A packet aggregate collects equivalent messages until its duration has elapsed. The observers
+ * are notified about the completion on the thread of a scheduler, which is shared by many
+ * aggregates, so that the number of threads does not depend on the number of aggregates.<br>
+ *     Since the completion timer is started by the constructor, an observer should be passed to
+ *     the constructor. An observer that is added after the aggregate has completed is notified
+ *     immediately on the calling thread.
+ */
 public class BeaconMessagePacketAggregate extends BeaconMessageAggregate {
 
+    // The time after which an idle scheduler thread terminates.
+    private static final long IDLE_THREAD_TIMEOUT_IN_MS = 1000;
+    // Used by aggregates that were created without a scheduler.
+    private static ScheduledExecutorService defaultScheduler;
+
     private Date creationDate;
     private Date completionDate;
-    private Timer timer;
+    private ScheduledFuture<?> completionFuture;
 
-    private List<BeaconMessagePacketAggregateObserver> observers = new ArrayList<>();
+    // The observers and the completion flag are guarded by the list's monitor.
+    private final List<BeaconMessagePacketAggregateObserver> observers = new ArrayList<>();
+    private boolean completed = false;
 
     public interface BeaconMessagePacketAggregateObserver {
         void onAggregateCompleted(BeaconMessagePacketAggregate aggregate);
     }
 
     public BeaconMessagePacketAggregate(BeaconMessage firstMessage, long aggregateDurationInMs) {
+        this(firstMessage, aggregateDurationInMs, getDefaultScheduler());
+    }
+
+    /**
+     * Creates an aggregate whose completion is triggered by the passed scheduler.
+     * @param scheduler The scheduler that notifies the observers about the completion.
+     */
+    public BeaconMessagePacketAggregate(BeaconMessage firstMessage, long aggregateDurationInMs,
+                                        ScheduledExecutorService scheduler) {
+        this(firstMessage, aggregateDurationInMs, scheduler, null);
+    }
+
+    /**
+     * Creates an aggregate whose completion is triggered by the passed scheduler.
+     * @param scheduler The scheduler that notifies the observers about the completion.
+     * @param observer An observer that is added before the completion timer is started or null.
+     */
+    public BeaconMessagePacketAggregate(BeaconMessage firstMessage, long aggregateDurationInMs,
+                                        ScheduledExecutorService scheduler,
+                                        BeaconMessagePacketAggregateObserver observer) {
         super(firstMessage, aggregateDurationInMs);
+        if (observer != null) {
+            observers.add(observer);
+        }
         initCompletionDate(firstMessage);
-        initCompletionTimer();
+        initCompletionTimer(scheduler);
+    }
+
+    private static synchronized ScheduledExecutorService getDefaultScheduler() {
+        if (defaultScheduler == null) {
+            defaultScheduler = createScheduler("BeaconMessagePacketAggregate-CompletionTimer");
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * Creates a scheduler with a single daemon thread that can be shared by many aggregates. The
+     * thread is only started when a task is scheduled and terminates when no task is pending.
+     * @param threadName The name of the scheduler's thread.
+     */
+    public static ScheduledExecutorService createScheduler(final String threadName) {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                thread.setName(threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.setKeepAliveTime(IDLE_THREAD_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+        return scheduler;
     }
 
     private void initCompletionDate(BeaconMessage firstMessage) {
@@ -59,20 +127,36 @@ public class BeaconMessagePacketAggregate extends BeaconMessageAggregate {
         this.completionDate = new Date(this.creationDate.getTime() + getAggregateDurationInMs());
     }
 
-    private void initCompletionTimer() {
-        timer = new Timer("BeaconMessagePacketAggregate-CompletionTimer");
-        timer.schedule(new TimerTask() {
+    private void initCompletionTimer(ScheduledExecutorService scheduler) {
+        long delayInMs = Math.max(0, this.completionDate.getTime() - System.currentTimeMillis());
+        completionFuture = scheduler.schedule(new Runnable() {
             @Override
             public void run() {
-                for (BeaconMessagePacketAggregateObserver observer : observers) {
-                    observer.onAggregateCompleted(BeaconMessagePacketAggregate.this);
-                }
+                complete();
             }
-        }, this.completionDate);
+        }, delayInMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void complete() {
+        List<BeaconMessagePacketAggregateObserver> observersToNotify;
+        synchronized (observers) {
+            completed = true;
+            observersToNotify = new ArrayList<>(observers);
+        }
+        // The observers are notified without holding the lock.
+        for (BeaconMessagePacketAggregateObserver observer : observersToNotify) {
+            observer.onAggregateCompleted(this);
+        }
     }
 
     public void addObserver(BeaconMessagePacketAggregateObserver observer) {
-        this.observers.add(observer);
+        synchronized (observers) {
+            if (!completed) {
+                observers.add(observer);
+                return;
+            }
+        }
+        observer.onAggregateCompleted(this);
     }
 
     public Date getCompletionDate() {
@@ -95,8 +179,8 @@ public class BeaconMessagePacketAggregate extends BeaconMessageAggregate {
 
     @Override
     public void clear() {
-        if (timer != null) {
-            timer.cancel();
+        if (completionFuture != null) {
+            completionFuture.cancel(false);
         }
     }
 }
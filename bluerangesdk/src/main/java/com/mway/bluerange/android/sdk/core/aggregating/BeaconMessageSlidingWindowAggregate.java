@@ -1,69 +1,163 @@
-//
-//  BeaconMessageSlidingWindowAggregate.java
-//  BlueRangeSDK
-//
-// Copyright (c) 2016-2017, M-Way Solutions GmbH
-// All rights reserved.
-//
-// Licensed to the Apache Software Foundation (ASF) under one
-// or more contributor license agreements.  See the NOTICE file
-// distributed with this work for additional information
-// regarding copyright ownership.  The ASF licenses this file
-// to you under the Apache License, Version 2.0 (the
-// "License"); you may not use this file except in compliance
-// with the License.  You may obtain a copy of the License at
-//
-//   http://www.apache.org/licenses/LICENSE-2.0
-//
-// Unless required by applicable law or agreed to in writing,
-// software distributed under the License is distributed on an
-// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
-// KIND, either express or implied.  See the License for the
-// specific language governing permissions and limitations
-// under the License.
-//
-
 package com.mway.bluerange.android.sdk.core.aggregating;
 
+import com.mway.bluerange.android.sdk.core.aggregating.averaging.IncrementalMovingAverageFilter;
 import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 
+/**
+ * A sliding window aggregate contains all messages that were received within the aggregate
+ * duration before the most recent message. Only the timestamps and RSSI values of the messages
+ * are needed for averaging. They are, therefore, stored in primitive ring buffers, whereas only
+ * the most recent message is kept as the prototype of the aggregated message. Expired entries
+ * are removed from the oldest end of the ring, assuming that messages arrive in the order of
+ * their timestamps.
+ */
 public class BeaconMessageSlidingWindowAggregate extends BeaconMessageAggregate {
 
+    private static final int INITIAL_CAPACITY = 8;
+
+    // These fields must not have initializers, because add is called by the super
+    // constructor. They are initialized lazily by the first call of add.
+    private long[] timePoints;
+    private short[] rssis;
+    // Index of the oldest entry.
+    private int tail;
+    private int size;
+    private BeaconMessage recentMessage;
+    // The most recently published aggregated message.
+    private boolean published;
+    private int publishedRssi;
+    private long publishTime;
+
     public BeaconMessageSlidingWindowAggregate(BeaconMessage firstMessage, long aggregateDurationInMs) {
         super(firstMessage, aggregateDurationInMs);
     }
 
+    @Override
+    public void add(BeaconMessage message) {
+        if (timePoints == null) {
+            timePoints = new long[INITIAL_CAPACITY];
+            rssis = new short[INITIAL_CAPACITY];
+        } else if (size == timePoints.length) {
+            grow();
+        }
+        long timePoint = message.getTimestamp().getTime();
+        int head = (tail + size) % timePoints.length;
+        timePoints[head] = timePoint;
+        rssis[head] = (short) message.getRssi();
+        size++;
+        recentMessage = message;
+        IncrementalMovingAverageFilter averageFilter = getAverageFilter();
+        if (averageFilter != null) {
+            averageFilter.addSample(timePoint, message.getRssi());
+        }
+    }
+
+    private void grow() {
+        long[] newTimePoints = new long[timePoints.length * 2];
+        short[] newRssis = new short[rssis.length * 2];
+        for (int i = 0; i < size; i++) {
+            int index = (tail + i) % timePoints.length;
+            newTimePoints[i] = timePoints[index];
+            newRssis[i] = rssis[index];
+        }
+        timePoints = newTimePoints;
+        rssis = newRssis;
+        tail = 0;
+    }
+
     public void removeOldMessages() {
-        BeaconMessage recentMessage = messages.get(messages.size()-1);
-        for (int i = 0; i < messages.size(); i++) {
-            BeaconMessage message = messages.get(i);
-            if (isOldMessage(message, recentMessage)) {
-                messages.remove(i);
-                i--;
+        if (size == 0) {
+            return;
+        }
+        long recentTimePoint = getTimePoint(size - 1);
+        IncrementalMovingAverageFilter averageFilter = getAverageFilter();
+        while (size > 0 && (recentTimePoint - timePoints[tail]) > getAggregateDurationInMs()) {
+            if (averageFilter != null) {
+                averageFilter.evictSample(timePoints[tail], rssis[tail]);
             }
+            tail = (tail + 1) % timePoints.length;
+            size--;
         }
     }
 
-    private boolean isOldMessage(BeaconMessage message, BeaconMessage recentMessage) {
-        long messageTimestampInMs = message.getTimestamp().getTime();
-        long recentMessageTimestampInMs = recentMessage.getTimestamp().getTime();
-        return (recentMessageTimestampInMs - messageTimestampInMs) > getAggregateDurationInMs();
+    /**
+     * Returns a list that only contains the most recent message.
+     */
+    @Override
+    public List<BeaconMessage> getMessages() {
+        return Collections.singletonList(recentMessage);
+    }
+
+    /**
+     * Returns the most recent message.
+     */
+    @Override
+    public BeaconMessage getPrototypeMessage() {
+        return recentMessage;
+    }
+
+    @Override
+    public int getNumberOfMessages() {
+        return size;
+    }
+
+    @Override
+    public long getTimePoint(int index) {
+        return timePoints[(tail + index) % timePoints.length];
+    }
+
+    @Override
+    public int getRssi(int index) {
+        return rssis[(tail + index) % rssis.length];
+    }
+
+    /**
+     * Stores that an aggregated message was published for this aggregate.
+     * @param rssi The RSSI of the published message.
+     * @param time The time of the publication in milliseconds.
+     */
+    public void setPublished(int rssi, long time) {
+        this.published = true;
+        this.publishedRssi = rssi;
+        this.publishTime = time;
+    }
+
+    /**
+     * Returns true, if an aggregated message was published for this aggregate.
+     */
+    public boolean isPublished() {
+        return published;
+    }
+
+    public int getPublishedRssi() {
+        return publishedRssi;
+    }
+
+    public long getPublishTime() {
+        return publishTime;
     }
 
     @Override
     public Date getStartDate() {
-        long endDateInMs = messages.get(messages.size()-1).getTimestamp().getTime();
-        return new Date(endDateInMs - getAggregateDurationInMs());
+        return new Date(getStartTimeInMs());
     }
 
     @Override
     public Date getStopDate() {
-        return messages.get(messages.size()-1).getTimestamp();
+        return new Date(getStopTimeInMs());
+    }
+
+    @Override
+    public long getStartTimeInMs() {
+        return getStopTimeInMs() - getAggregateDurationInMs();
+    }
+
+    @Override
+    public long getStopTimeInMs() {
+        return getTimePoint(size - 1);
     }
 }
@@ -0,0 +1,131 @@
+//
+//  ExponentialMovingAverageFilter.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+import java.util.List;
+
+/**
+ * This class implements the {@link MovingAverageFilter} interface by using an exponential moving
+ * average, whose decay depends on the time between two values. When a value arrives t ms after
+ * the previous one, it is weighted with 1 - 2^(-t / halfLife), whereas the previous average is
+ * weighted with the remainder. Therefore, a burst of values arriving within a short time has
+ * about the same influence as a single value, and the average does not depend on how regularly
+ * the values arrive. Values with equal timestamps are treated as if they were 1 ms apart.<br>
+ *     The state consists only of the current average and the time of the last value. The
+ *     incremental counterpart created by {@link #createIncrementalFilter} can, therefore, be
+ *     used in both aggregation modes without keeping the messages. Evicted values are not
+ *     removed from the average. Their influence decays with time instead.
+ */
+public class ExponentialMovingAverageFilter
+        implements MovingAverageFilter, IncrementalMovingAverageFilterFactory {
+
+    public static final long DEFAULT_HALF_LIFE_IN_MS = 1000;
+
+    private final long halfLifeInMs;
+
+    /**
+     * The state of an exponential moving average for a single beacon.
+     */
+    public static class Estimator implements IncrementalMovingAverageFilter {
+        private final long halfLifeInMs;
+        private boolean initialized = false;
+        private float average;
+        private long lastTimePoint;
+        private int numberOfSamples = 0;
+
+        public Estimator(long halfLifeInMs) {
+            this.halfLifeInMs = halfLifeInMs;
+        }
+
+        @Override
+        public void addSample(long timePoint, float value) {
+            numberOfSamples++;
+            if (!initialized) {
+                average = value;
+                lastTimePoint = timePoint;
+                initialized = true;
+                return;
+            }
+            long timeSinceLastValue = Math.max(1, timePoint - lastTimePoint);
+            double weight = 1 - Math.pow(2, -(double) timeSinceLastValue / halfLifeInMs);
+            average += (float) (weight * (value - average));
+            lastTimePoint = Math.max(lastTimePoint, timePoint);
+        }
+
+        @Override
+        public void evictSample(long timePoint, float value) {
+            // The influence of old values decays by itself.
+            numberOfSamples--;
+        }
+
+        @Override
+        public float getCurrentAverage(long startTime, long endTime) {
+            return initialized ? average : Float.NaN;
+        }
+
+        @Override
+        public int getNumberOfSamples() {
+            return numberOfSamples;
+        }
+
+        @Override
+        public void clear() {
+            initialized = false;
+            numberOfSamples = 0;
+        }
+    }
+
+    public ExponentialMovingAverageFilter() {
+        this(DEFAULT_HALF_LIFE_IN_MS);
+    }
+
+    /**
+     * @param halfLifeInMs The time after which the weight of a value has decreased to one half.
+     */
+    public ExponentialMovingAverageFilter(long halfLifeInMs) {
+        if (halfLifeInMs <= 0) {
+            throw new IllegalArgumentException("Half life must be positive.");
+        }
+        this.halfLifeInMs = halfLifeInMs;
+    }
+
+    @Override
+    public float getAverage(long startTime, long endTime, List<Long> timePoints, List<Float> values) {
+        Estimator estimator = createIncrementalFilter();
+        for (int i = 0; i < values.size(); i++) {
+            estimator.addSample(timePoints.get(i), values.get(i));
+        }
+        return estimator.getCurrentAverage(startTime, endTime);
+    }
+
+    @Override
+    public Estimator createIncrementalFilter() {
+        return new Estimator(halfLifeInMs);
+    }
+
+    public long getHalfLifeInMs() {
+        return halfLifeInMs;
+    }
+}
@@ -0,0 +1,106 @@
+//
+//  IncrementalLinearWeightedMovingAverageFilter.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+/**
+ * The incremental counterpart of the {@link LinearWeightedMovingAverageFilter}. The weight of a
+ * value v defined at time t is w = (1 - c) * (t - startTime) / (endTime - startTime) + c. Since
+ * the weights are linear in t, the weighted sum and the sum of all weights can be computed
+ * from the sums of v, t * v and t, which are updated incrementally. Times are stored relative
+ * to the first value of the window to preserve precision.
+ */
+public class IncrementalLinearWeightedMovingAverageFilter implements IncrementalMovingAverageFilter {
+
+    private final float c;
+
+    private int numberOfSamples = 0;
+    private long referenceTime = 0;
+    private double sumValues = 0;
+    private double sumTimes = 0;
+    private double sumTimesValues = 0;
+
+    public IncrementalLinearWeightedMovingAverageFilter(float c) {
+        this.c = c;
+    }
+
+    @Override
+    public void addSample(long timePoint, float value) {
+        if (numberOfSamples == 0) {
+            referenceTime = timePoint;
+        }
+        double relativeTime = timePoint - referenceTime;
+        numberOfSamples++;
+        sumValues += value;
+        sumTimes += relativeTime;
+        sumTimesValues += relativeTime * value;
+    }
+
+    @Override
+    public void evictSample(long timePoint, float value) {
+        double relativeTime = timePoint - referenceTime;
+        numberOfSamples--;
+        sumValues -= value;
+        sumTimes -= relativeTime;
+        sumTimesValues -= relativeTime * value;
+        if (numberOfSamples == 0) {
+            // Prevents rounding errors from accumulating.
+            clear();
+        }
+    }
+
+    @Override
+    public float getCurrentAverage(long startTime, long endTime) {
+        if (numberOfSamples == 0) {
+            return Float.NaN;
+        }
+        if (numberOfSamples == 1) {
+            return (float) sumValues;
+        }
+        double duration = endTime - startTime;
+        if (duration <= 0) {
+            return (float) (sumValues / numberOfSamples);
+        }
+        double relativeStartTime = startTime - referenceTime;
+        double m = (1.0 - c) / duration;
+        double weightedSum = m * (sumTimesValues - relativeStartTime * sumValues) + c * sumValues;
+        double sumWeights = m * (sumTimes - relativeStartTime * numberOfSamples)
+                + c * numberOfSamples;
+        return (float) (weightedSum / sumWeights);
+    }
+
+    @Override
+    public int getNumberOfSamples() {
+        return numberOfSamples;
+    }
+
+    @Override
+    public void clear() {
+        numberOfSamples = 0;
+        referenceTime = 0;
+        sumValues = 0;
+        sumTimes = 0;
+        sumTimesValues = 0;
+    }
+}
@@ -0,0 +1,62 @@
+//
+//  IncrementalMovingAverageFilter.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+/**
+ * An incremental moving average filter computes the average of a window of values defined at
+ * specific times. In contrast to {@link MovingAverageFilter}, the values are not passed all at
+ * once. Instead, the filter keeps running sums that are updated whenever a value enters or
+ * leaves the window. Adding a value, evicting a value and computing the average, therefore,
+ * take constant time and do not allocate any memory.<br>
+ *     An instance of this interface stores the state of a single window and is not
+ *     thread-safe.
+ */
+public interface IncrementalMovingAverageFilter {
+
+    /**
+     * Adds a value to the window.
+     */
+    void addSample(long timePoint, float value);
+
+    /**
+     * Removes a value from the window that was added before.
+     */
+    void evictSample(long timePoint, float value);
+
+    /**
+     * Computes the average of all values in the window.
+     * @param startTime The start of the window.
+     * @param endTime The end of the window.
+     * @return the average or NaN, if the window is empty.
+     */
+    float getCurrentAverage(long startTime, long endTime);
+
+    int getNumberOfSamples();
+
+    /**
+     * Removes all values from the window.
+     */
+    void clear();
+}
@@ -0,0 +1,36 @@
+//
+//  IncrementalMovingAverageFilterFactory.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+/**
+ * Moving average filters that have an incremental counterpart implement this interface, so
+ * that components can maintain the average of a sliding window in constant time.
+ */
+public interface IncrementalMovingAverageFilterFactory {
+    /**
+     * Creates an empty window whose average is equal to the average computed by this filter.
+     */
+    IncrementalMovingAverageFilter createIncrementalFilter();
+}
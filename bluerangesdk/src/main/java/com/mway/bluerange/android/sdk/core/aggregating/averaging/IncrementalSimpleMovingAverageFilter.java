@@ -0,0 +1,70 @@
+//
+//  IncrementalSimpleMovingAverageFilter.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+/**
+ * The incremental counterpart of the {@link SimpleMovingAverageFilter}. It keeps the number and
+ * the sum of all values in the window.
+ */
+public class IncrementalSimpleMovingAverageFilter implements IncrementalMovingAverageFilter {
+
+    private int numberOfSamples = 0;
+    private double sumValues = 0;
+
+    @Override
+    public void addSample(long timePoint, float value) {
+        numberOfSamples++;
+        sumValues += value;
+    }
+
+    @Override
+    public void evictSample(long timePoint, float value) {
+        numberOfSamples--;
+        sumValues -= value;
+        if (numberOfSamples == 0) {
+            // Prevents rounding errors from accumulating.
+            sumValues = 0;
+        }
+    }
+
+    @Override
+    public float getCurrentAverage(long startTime, long endTime) {
+        if (numberOfSamples == 0) {
+            return Float.NaN;
+        }
+        return (float) (sumValues / numberOfSamples);
+    }
+
+    @Override
+    public int getNumberOfSamples() {
+        return numberOfSamples;
+    }
+
+    @Override
+    public void clear() {
+        numberOfSamples = 0;
+        sumValues = 0;
+    }
+}
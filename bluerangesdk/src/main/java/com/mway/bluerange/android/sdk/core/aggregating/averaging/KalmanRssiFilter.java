@@ -0,0 +1,142 @@
+//
+//  KalmanRssiFilter.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+import java.util.List;
+
+/**
+ * This class implements the {@link MovingAverageFilter} interface by using a one-dimensional
+ * Kalman filter. The RSSI is modelled as a constant value that changes by a random amount
+ * between two measurements, whose variance is the process noise. Each measurement is disturbed
+ * by noise, whose variance is the measurement noise. A higher ratio of process noise to
+ * measurement noise makes the filter react faster, but smooths less.<br>
+ *     The state of the filter consists only of the current estimate and its variance. The
+ *     incremental counterpart created by {@link #createIncrementalFilter} is, therefore, the
+ *     preferable way to use this filter. Since a Kalman filter does not have a window, evicted
+ *     values are not removed from the estimate. Their influence decreases exponentially instead.
+ */
+public class KalmanRssiFilter implements MovingAverageFilter, IncrementalMovingAverageFilterFactory {
+
+    // A standard deviation of about 6 dBm is typical for the RSSI of BLE advertisements.
+    public static final float DEFAULT_PROCESS_NOISE = 0.5f;
+    public static final float DEFAULT_MEASUREMENT_NOISE = 36.0f;
+
+    private final float processNoise;
+    private final float measurementNoise;
+
+    /**
+     * The state of a Kalman filter for a single beacon.
+     */
+    public static class Estimator implements IncrementalMovingAverageFilter {
+        private final float processNoise;
+        private final float measurementNoise;
+        private boolean initialized = false;
+        private float estimate;
+        private float errorVariance;
+        private int numberOfSamples = 0;
+
+        public Estimator(float processNoise, float measurementNoise) {
+            this.processNoise = processNoise;
+            this.measurementNoise = measurementNoise;
+        }
+
+        @Override
+        public void addSample(long timePoint, float value) {
+            numberOfSamples++;
+            if (!initialized) {
+                estimate = value;
+                errorVariance = measurementNoise;
+                initialized = true;
+                return;
+            }
+            // Predict
+            errorVariance += processNoise;
+            // Correct
+            float gain = errorVariance / (errorVariance + measurementNoise);
+            estimate += gain * (value - estimate);
+            errorVariance *= (1 - gain);
+        }
+
+        @Override
+        public void evictSample(long timePoint, float value) {
+            // The influence of old values decays by itself.
+            numberOfSamples--;
+        }
+
+        @Override
+        public float getCurrentAverage(long startTime, long endTime) {
+            return initialized ? estimate : Float.NaN;
+        }
+
+        @Override
+        public int getNumberOfSamples() {
+            return numberOfSamples;
+        }
+
+        @Override
+        public void clear() {
+            initialized = false;
+            numberOfSamples = 0;
+        }
+    }
+
+    public KalmanRssiFilter() {
+        this(DEFAULT_PROCESS_NOISE, DEFAULT_MEASUREMENT_NOISE);
+    }
+
+    /**
+     * @param processNoise The variance of the RSSI change between two measurements in dBm².
+     * @param measurementNoise The variance of the measurement error in dBm².
+     */
+    public KalmanRssiFilter(float processNoise, float measurementNoise) {
+        if (processNoise < 0 || measurementNoise <= 0) {
+            throw new IllegalArgumentException("Process noise must not be negative and measurement noise must be positive.");
+        }
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    @Override
+    public float getAverage(long startTime, long endTime, List<Long> timePoints, List<Float> values) {
+        Estimator estimator = createIncrementalFilter();
+        for (int i = 0; i < values.size(); i++) {
+            estimator.addSample(timePoints.get(i), values.get(i));
+        }
+        return estimator.getCurrentAverage(startTime, endTime);
+    }
+
+    @Override
+    public Estimator createIncrementalFilter() {
+        return new Estimator(processNoise, measurementNoise);
+    }
+
+    public float getProcessNoise() {
+        return processNoise;
+    }
+
+    public float getMeasurementNoise() {
+        return measurementNoise;
+    }
+}
@@ -34,7 +34,8 @@ import java.util.List;
  * new values will have a greater weight than older values. The oldest
  * value defined at f(minTime) will be weighted with the constant c.
  */
-public class LinearWeightedMovingAverageFilter implements MovingAverageFilter {
+public class LinearWeightedMovingAverageFilter
+        implements MovingAverageFilter, IncrementalMovingAverageFilterFactory {
 
     private float c;
 
@@ -68,4 +69,9 @@ public class LinearWeightedMovingAverageFilter implements MovingAverageFilter {
         }
         return average;
     }
+
+    @Override
+    public IncrementalMovingAverageFilter createIncrementalFilter() {
+        return new IncrementalLinearWeightedMovingAverageFilter(c);
+    }
 }
@@ -31,7 +31,8 @@ import java.util.List;
  * This class implements the {@link MovingAverageFilter} interface and computes the average value
  * by just calculating the average value of all values without considering their time points.
  */
-public class SimpleMovingAverageFilter implements MovingAverageFilter {
+public class SimpleMovingAverageFilter
+        implements MovingAverageFilter, IncrementalMovingAverageFilterFactory {
     @Override
     public float getAverage(long startTime, long endTime, List<Long> timePoints, List<Float> values) {
         float averageValue = 0.0f;
@@ -40,4 +41,9 @@ public class SimpleMovingAverageFilter implements MovingAverageFilter {
         }
         return averageValue / values.size();
     }
+
+    @Override
+    public IncrementalMovingAverageFilter createIncrementalFilter() {
+        return new IncrementalSimpleMovingAverageFilter();
+    }
 }
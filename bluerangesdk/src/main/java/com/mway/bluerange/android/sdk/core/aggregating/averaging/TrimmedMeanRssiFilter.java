@@ -0,0 +1,264 @@
+//
+//  TrimmedMeanRssiFilter.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class implements the {@link MovingAverageFilter} interface by computing a trimmed mean of
+ * the most recent values. The values are sorted and the given fraction of the smallest and of
+ * the largest values is discarded before averaging the remaining values. A trim fraction of 0.5
+ * yields the median. Single outliers, e.g. caused by reflections, therefore, do not influence
+ * the result.<br>
+ *     The incremental counterpart groups the values of the window into buckets of 1 dBm between
+ *     {@link #MIN_RSSI} and {@link #MAX_RSSI} and keeps the number and the sum of the values of
+ *     each bucket in two Fenwick trees. Adding and removing a value as well as reading the
+ *     trimmed mean therefore take O(log(number of buckets)) time independent of the window
+ *     size, and no objects are allocated. Since RSSI values are integers, the result equals the
+ *     result of sorting the window. Non-integer values that fall into the same bucket are
+ *     averaged, if the trim boundary lies within their bucket, and values outside of the range
+ *     are sorted into the first or last bucket. If more values are added than the window size,
+ *     the oldest values are removed automatically.
+ */
+public class TrimmedMeanRssiFilter implements MovingAverageFilter, IncrementalMovingAverageFilterFactory {
+
+    public static final int DEFAULT_WINDOW_SIZE = 10;
+    public static final float DEFAULT_TRIM_FRACTION = 0.25f;
+    public static final int MIN_RSSI = -127;
+    public static final int MAX_RSSI = 0;
+
+    private final int windowSize;
+    private final float trimFraction;
+
+    /**
+     * The window of a single beacon.
+     */
+    public static class Estimator implements IncrementalMovingAverageFilter {
+        private static final int NUMBER_OF_BUCKETS = MAX_RSSI - MIN_RSSI + 1;
+        // The largest power of two that is not larger than the number of buckets.
+        private static final int HIGHEST_STEP = Integer.highestOneBit(NUMBER_OF_BUCKETS);
+
+        private final float trimFraction;
+        // Fenwick trees over the buckets, indexed from 1.
+        private final int[] bucketCounts = new int[NUMBER_OF_BUCKETS + 1];
+        private final double[] bucketSums = new double[NUMBER_OF_BUCKETS + 1];
+        // The values in the order of arrival.
+        private final float[] ringValues;
+        private int ringTail = 0;
+        private int size = 0;
+        // Used to detect whether an evicted value was already removed automatically.
+        private long addedSamples = 0;
+        private long evictedSamples = 0;
+
+        public Estimator(int windowSize, float trimFraction) {
+            this.trimFraction = trimFraction;
+            this.ringValues = new float[windowSize];
+        }
+
+        @Override
+        public void addSample(long timePoint, float value) {
+            if (size == ringValues.length) {
+                removeOldestValue();
+            }
+            ringValues[(ringTail + size) % ringValues.length] = value;
+            updateBuckets(value, 1);
+            size++;
+            addedSamples++;
+        }
+
+        /**
+         * Removes the oldest value, assuming that values are evicted in the order they were
+         * added. Values that were already removed because the window was full are ignored.
+         */
+        @Override
+        public void evictSample(long timePoint, float value) {
+            long evictedSample = evictedSamples++;
+            if (size > 0 && evictedSample >= addedSamples - size) {
+                removeOldestValue();
+            }
+        }
+
+        private void removeOldestValue() {
+            updateBuckets(ringValues[ringTail], -1);
+            ringTail = (ringTail + 1) % ringValues.length;
+            size--;
+        }
+
+        private void updateBuckets(float value, int count) {
+            for (int i = getBucket(value) + 1; i <= NUMBER_OF_BUCKETS; i += i & -i) {
+                bucketCounts[i] += count;
+                bucketSums[i] += (double) value * count;
+            }
+        }
+
+        private static int getBucket(float value) {
+            int rssi = Math.round(value);
+            return Math.min(Math.max(rssi, MIN_RSSI), MAX_RSSI) - MIN_RSSI;
+        }
+
+        /**
+         * Returns the sum of the given number of smallest values.
+         */
+        private double getSumOfSmallestValues(int numberOfValues) {
+            if (numberOfValues == 0) {
+                return 0;
+            }
+            // Find the last bucket before the bucket containing the largest of these values.
+            int position = 0;
+            int remainingValues = numberOfValues;
+            double sum = 0;
+            for (int step = HIGHEST_STEP; step > 0; step >>= 1) {
+                int next = position + step;
+                if (next <= NUMBER_OF_BUCKETS && bucketCounts[next] < remainingValues) {
+                    position = next;
+                    remainingValues -= bucketCounts[next];
+                    sum += bucketSums[next];
+                }
+            }
+            return sum + remainingValues * getBucketMean(position + 1);
+        }
+
+        /**
+         * Returns the value with the given rank, starting with 0 for the smallest value.
+         */
+        private double getValue(int rank) {
+            return getSumOfSmallestValues(rank + 1) - getSumOfSmallestValues(rank);
+        }
+
+        private double getBucketMean(int index) {
+            int count = 0;
+            double sum = 0;
+            for (int i = index; i > 0; i -= i & -i) {
+                count += bucketCounts[i];
+                sum += bucketSums[i];
+            }
+            for (int i = index - 1; i > 0; i -= i & -i) {
+                count -= bucketCounts[i];
+                sum -= bucketSums[i];
+            }
+            return sum / count;
+        }
+
+        @Override
+        public float getCurrentAverage(long startTime, long endTime) {
+            if (size == 0) {
+                return Float.NaN;
+            }
+            if (trimFraction >= 0.5f) {
+                int middle = size / 2;
+                return size % 2 == 1
+                        ? (float) getValue(middle)
+                        : (float) ((getValue(middle - 1) + getValue(middle)) / 2);
+            }
+            int trimmedValues = (int) (size * trimFraction);
+            double sum = getSumOfSmallestValues(size - trimmedValues)
+                    - getSumOfSmallestValues(trimmedValues);
+            return (float) (sum / (size - 2 * trimmedValues));
+        }
+
+        @Override
+        public int getNumberOfSamples() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(bucketCounts, 0);
+            Arrays.fill(bucketSums, 0);
+            size = 0;
+            ringTail = 0;
+            addedSamples = 0;
+            evictedSamples = 0;
+        }
+    }
+
+    public TrimmedMeanRssiFilter() {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_TRIM_FRACTION);
+    }
+
+    /**
+     * @param windowSize The maximum number of recent values that are considered.
+     * @param trimFraction The fraction of values that is discarded at each end of the sorted
+     *                     window. Must be between 0 and 0.5.
+     */
+    public TrimmedMeanRssiFilter(int windowSize, float trimFraction) {
+        if (windowSize <= 0 || trimFraction < 0 || trimFraction > 0.5f) {
+            throw new IllegalArgumentException("Window size must be positive "
+                    + "and trim fraction must be between 0 and 0.5.");
+        }
+        this.windowSize = windowSize;
+        this.trimFraction = trimFraction;
+    }
+
+    /**
+     * Creates a filter that computes the median of the most recent values.
+     */
+    public static TrimmedMeanRssiFilter median(int windowSize) {
+        return new TrimmedMeanRssiFilter(windowSize, 0.5f);
+    }
+
+    private static float getTrimmedMean(float[] sortedValues, int size, float trimFraction) {
+        if (size == 0) {
+            return Float.NaN;
+        }
+        if (trimFraction >= 0.5f) {
+            int middle = size / 2;
+            return size % 2 == 1
+                    ? sortedValues[middle]
+                    : (sortedValues[middle - 1] + sortedValues[middle]) / 2;
+        }
+        int trimmedValues = (int) (size * trimFraction);
+        float sum = 0;
+        for (int i = trimmedValues; i < size - trimmedValues; i++) {
+            sum += sortedValues[i];
+        }
+        return sum / (size - 2 * trimmedValues);
+    }
+
+    @Override
+    public float getAverage(long startTime, long endTime, List<Long> timePoints, List<Float> values) {
+        int size = Math.min(windowSize, values.size());
+        float[] sortedValues = new float[size];
+        for (int i = 0; i < size; i++) {
+            sortedValues[i] = values.get(values.size() - size + i);
+        }
+        Arrays.sort(sortedValues);
+        return getTrimmedMean(sortedValues, size, trimFraction);
+    }
+
+    @Override
+    public Estimator createIncrementalFilter() {
+        return new Estimator(windowSize, trimFraction);
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public float getTrimFraction() {
+        return trimFraction;
+    }
+}
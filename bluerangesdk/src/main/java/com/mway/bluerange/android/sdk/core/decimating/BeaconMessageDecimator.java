@@ -0,0 +1,348 @@
+//
+//  BeaconMessageDecimator.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.decimating;
+
+import com.mway.bluerange.android.sdk.core.aggregating.BeaconMessagePacketAggregate;
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
+import com.mway.bluerange.android.sdk.utils.structs.HashSlotTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A beacon message decimator is a node in a message processing graph that limits the rate of
+ * messages per beacon. Two messages belong to the same beacon, if they are equal according to
+ * {@link BeaconMessage#equals}. For each beacon, the time is divided into windows with a length
+ * of one second divided by {@link #getMaximumMessagesPerSecond}. Only one message of each window
+ * is passed to the receivers. Which message is passed, is defined by the {@link SelectionMode}.
+ * <br>
+ *     A window of a beacon starts with its first message. All times are measured with the
+ *     timestamps of the messages. In {@link SelectionMode#FIRST} mode, the first message of a
+ *     window is passed immediately. In all other modes, the selected message is passed, when the
+ *     window has ended. This happens either when the next message of the beacon arrives or when a
+ *     completion task detects the end of the window. The task is only scheduled while a window
+ *     holds a selected message and runs on a daemon thread that is shared by all decimators. It
+ *     advances the timestamp of the newest message by the time that has elapsed since this
+ *     message was received.<br>
+ *     The state of each beacon is kept in primitive arrays that are indexed by a {@link
+ *     HashSlotTable}, so that processing a message does not allocate any memory. Beacons that did
+ *     not send any message for {@link #IDLE_WINDOWS} windows are removed from the table, when the
+ *     completion task runs or before the table would grow.
+ */
+public class BeaconMessageDecimator extends BeaconMessageStreamNode {
+
+    /**
+     * Defines which message of a window is passed to the receivers.
+     */
+    public enum SelectionMode {
+        /**
+         * The first message of the window.
+         */
+        FIRST,
+        /**
+         * The last message of the window.
+         */
+        LAST,
+        /**
+         * The message with the highest RSSI of the window.
+         */
+        STRONGEST
+    }
+
+    public static final int IDLE_WINDOWS = 10;
+
+    private final SelectionMode selectionMode;
+    private final int maximumMessagesPerSecond;
+    private final long windowDurationInMs;
+
+    // The table and all per beacon arrays are guarded by the table's monitor.
+    private final HashSlotTable<BeaconMessage> beacons = new HashSlotTable<>();
+    private long[] windowStartTimes = new long[beacons.capacity()];
+    private long[] lastMessageTimes = new long[beacons.capacity()];
+    private int[] selectedRssis = new int[beacons.capacity()];
+    private BeaconMessage[] selectedMessages = new BeaconMessage[beacons.capacity()];
+
+    // Messages that are sent to the receivers after the lock was released. The lists are
+    // swapped on each delivery, so that no list is copied.
+    private List<BeaconMessage> outgoingMessages = new ArrayList<>();
+    private List<BeaconMessage> spareOutgoingMessages = new ArrayList<>();
+    // Messages that were dropped since the last call of sendOutgoingMessages.
+    private int droppedMessages = 0;
+
+    // Window completion
+    private static ScheduledExecutorService sharedScheduler;
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> completionFuture;
+    private boolean stopped = false;
+    // The timestamp of the newest message and the time it was received.
+    private long newestMessageTime = Long.MIN_VALUE;
+    private long newestMessageReceptionNanoTime;
+
+    public BeaconMessageDecimator(BeaconMessageStreamNode sender, int maximumMessagesPerSecond,
+                                  SelectionMode selectionMode) {
+        super();
+        if (maximumMessagesPerSecond <= 0) {
+            throw new IllegalArgumentException("Maximum messages per second must be positive.");
+        }
+        this.selectionMode = selectionMode;
+        this.maximumMessagesPerSecond = maximumMessagesPerSecond;
+        this.windowDurationInMs = Math.max(1, 1000 / maximumMessagesPerSecond);
+        this.scheduler = getSharedScheduler();
+        // The sender is added after the state was initialized,
+        // because it may deliver messages right away.
+        addSender(sender);
+    }
+
+    private static synchronized ScheduledExecutorService getSharedScheduler() {
+        if (sharedScheduler == null) {
+            sharedScheduler = BeaconMessagePacketAggregate.createScheduler(
+                    "BeaconMessageDecimator-WindowCompletion");
+        }
+        return sharedScheduler;
+    }
+
+    /**
+     * Cancels the pending window completion. Messages that were selected in the current
+     * windows will not be passed anymore.
+     */
+    public void stop() {
+        synchronized (beacons) {
+            stopped = true;
+            if (completionFuture != null) {
+                completionFuture.cancel(false);
+                completionFuture = null;
+            }
+            beacons.clear();
+            Arrays.fill(selectedMessages, null);
+        }
+    }
+
+    @Override
+    public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+        synchronized (beacons) {
+            decimateMessage(message);
+        }
+        sendOutgoingMessages();
+    }
+
+    @Override
+    public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+        synchronized (beacons) {
+            for (int i = 0; i < messages.size(); i++) {
+                decimateMessage(messages.get(i));
+            }
+        }
+        sendOutgoingMessages();
+    }
+
+    // Must be called while holding the table's monitor.
+    private void decimateMessage(BeaconMessage message) {
+        long time = message.getTimestamp().getTime();
+        if (time >= newestMessageTime) {
+            newestMessageTime = time;
+            newestMessageReceptionNanoTime = System.nanoTime();
+        }
+        int slot = beacons.getSlot(message);
+        if (slot < 0) {
+            slot = addBeacon(message, time);
+            startWindow(slot, message, time);
+            return;
+        }
+        lastMessageTimes[slot] = time;
+        if (time >= windowStartTimes[slot] + windowDurationInMs) {
+            completeWindow(slot);
+            startWindow(slot, message, time);
+            return;
+        }
+        switch (selectionMode) {
+            case FIRST:
+                // The first message of the window was already passed.
+                droppedMessages++;
+                break;
+            case LAST:
+                droppedMessages++;
+                selectMessage(slot, message);
+                break;
+            case STRONGEST:
+                droppedMessages++;
+                if (selectedMessages[slot] == null || message.getRssi() > selectedRssis[slot]) {
+                    selectMessage(slot, message);
+                }
+                break;
+        }
+    }
+
+    private int addBeacon(BeaconMessage message, long time) {
+        if (beacons.size() == beacons.capacity()) {
+            // Make room for the beacon, before the table grows.
+            removeIdleBeacons(time);
+        }
+        int slot = beacons.addKey(message);
+        int capacity = beacons.capacity();
+        if (windowStartTimes.length < capacity) {
+            windowStartTimes = Arrays.copyOf(windowStartTimes, capacity);
+            lastMessageTimes = Arrays.copyOf(lastMessageTimes, capacity);
+            selectedRssis = Arrays.copyOf(selectedRssis, capacity);
+            selectedMessages = Arrays.copyOf(selectedMessages, capacity);
+        }
+        return slot;
+    }
+
+    private void startWindow(int slot, BeaconMessage message, long time) {
+        windowStartTimes[slot] = time;
+        lastMessageTimes[slot] = time;
+        if (selectionMode == SelectionMode.FIRST) {
+            selectedMessages[slot] = null;
+            outgoingMessages.add(message);
+        } else {
+            selectMessage(slot, message);
+            scheduleWindowCompletion(time + windowDurationInMs);
+        }
+    }
+
+    private void selectMessage(int slot, BeaconMessage message) {
+        selectedMessages[slot] = message;
+        selectedRssis[slot] = message.getRssi();
+    }
+
+    private void completeWindow(int slot) {
+        if (selectedMessages[slot] != null) {
+            outgoingMessages.add(selectedMessages[slot]);
+            selectedMessages[slot] = null;
+        }
+    }
+
+    // Must be called while holding the table's monitor. Schedules a completion at the end of a
+    // window, unless a completion is already pending, which happens at an earlier time.
+    private void scheduleWindowCompletion(long windowEndTime) {
+        if (completionFuture != null || stopped) {
+            return;
+        }
+        long delayInMs = Math.max(0, windowEndTime - getCurrentTime());
+        completionFuture = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                long currentTime;
+                synchronized (beacons) {
+                    completionFuture = null;
+                    currentTime = getCurrentTime();
+                }
+                completeWindows(currentTime);
+            }
+        }, delayInMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Must be called while holding the table's monitor.
+    private long getCurrentTime() {
+        long elapsedTimeInMs = (System.nanoTime() - newestMessageReceptionNanoTime) / 1000000;
+        return newestMessageTime + elapsedTimeInMs;
+    }
+
+    void completeWindows(long currentTime) {
+        synchronized (beacons) {
+            long nextWindowEndTime = Long.MAX_VALUE;
+            int slotLimit = beacons.getSlotLimit();
+            for (int slot = 0; slot < slotLimit; slot++) {
+                if (beacons.getKey(slot) == null) {
+                    continue;
+                }
+                long windowEndTime = windowStartTimes[slot] + windowDurationInMs;
+                if (currentTime >= windowEndTime) {
+                    completeWindow(slot);
+                } else if (selectedMessages[slot] != null) {
+                    nextWindowEndTime = Math.min(nextWindowEndTime, windowEndTime);
+                }
+            }
+            removeIdleBeacons(currentTime);
+            if (nextWindowEndTime != Long.MAX_VALUE) {
+                scheduleWindowCompletion(nextWindowEndTime);
+            }
+        }
+        sendOutgoingMessages();
+    }
+
+    // Must be called while holding the table's monitor.
+    private void removeIdleBeacons(long currentTime) {
+        int slotLimit = beacons.getSlotLimit();
+        for (int slot = 0; slot < slotLimit; slot++) {
+            if (beacons.getKey(slot) != null && selectedMessages[slot] == null
+                    && currentTime >= lastMessageTimes[slot] + IDLE_WINDOWS * windowDurationInMs) {
+                beacons.removeSlot(slot);
+            }
+        }
+    }
+
+    private void sendOutgoingMessages() {
+        List<BeaconMessage> messages;
+        synchronized (beacons) {
+            if (droppedMessages > 0) {
+                recordDroppedMessages(droppedMessages);
+                droppedMessages = 0;
+            }
+            if (outgoingMessages.isEmpty()) {
+                return;
+            }
+            messages = outgoingMessages;
+            // The spare list is missing, if another thread is still sending its messages.
+            outgoingMessages = spareOutgoingMessages != null
+                    ? spareOutgoingMessages : new ArrayList<BeaconMessage>();
+            spareOutgoingMessages = null;
+        }
+        try {
+            if (messages.size() == 1) {
+                sendMessageToReceivers(messages.get(0));
+            } else {
+                sendMessagesToReceivers(messages);
+            }
+        } finally {
+            messages.clear();
+            synchronized (beacons) {
+                spareOutgoingMessages = messages;
+            }
+        }
+    }
+
+    public SelectionMode getSelectionMode() {
+        return selectionMode;
+    }
+
+    public int getMaximumMessagesPerSecond() {
+        return maximumMessagesPerSecond;
+    }
+
+    /**
+     * Returns the number of beacons whose state is currently stored.
+     */
+    public int getNumberOfBeacons() {
+        synchronized (beacons) {
+            return beacons.size();
+        }
+    }
+}
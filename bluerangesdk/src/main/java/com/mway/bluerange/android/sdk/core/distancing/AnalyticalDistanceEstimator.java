@@ -32,7 +32,7 @@ package com.mway.bluerange.android.sdk.core.distancing;
  * Cuthbert, Bluetooth positioning using rssi and triangulation methods, in: Consumer
  * Communications and Networking Conference (CCNC), 2013 IEEE, 2013, pp. 837{842.
  */
-public class AnalyticalDistanceEstimator implements DistanceEstimator {
+public class AnalyticalDistanceEstimator implements BatchDistanceEstimator {
 
     // A is the received signal strength in dBm at 1 metre.
     // We set A as described in:
@@ -51,6 +51,16 @@ public class AnalyticalDistanceEstimator implements DistanceEstimator {
         return rssiToDistanceWithA(rssi, txPower);
     }
 
+    @Override
+    public void getDistancesInMetres(float[] rssis, float[] txPowers, float[] distancesInMetres,
+                                     int length) {
+        // 10^(x/(10*n)) = e^(x*ln(10)/(10*n)), where the factor is computed only once.
+        double exponentFactor = Math.log(10) / (10 * n);
+        for (int i = 0; i < length; i++) {
+            distancesInMetres[i] = (float) Math.exp((txPowers[i] - rssis[i]) * exponentFactor);
+        }
+    }
+
     public float rssiToDistance(float rssi) {
         return rssiToDistanceWithNAndA(rssi, n, A);
     }
@@ -0,0 +1,44 @@
+//
+//  BatchDistanceEstimator.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.distancing;
+
+/**
+ * A batch distance estimator transforms many RSSI values to distance values in one call, so that
+ * consumers that receive many messages at once, e.g. once per scan cycle, can estimate all
+ * distances in a single loop over primitive arrays. {@link DistanceEstimators} provides the same
+ * operation for estimators that do not implement this interface.
+ */
+public interface BatchDistanceEstimator extends DistanceEstimator {
+
+    /**
+     * Estimates the distances of the first length elements. The distance at index i corresponds
+     * to {@link #getDistanceInMetres}(rssis[i], txPowers[i]).
+     * @param rssis The RSSI values.
+     * @param txPowers The txPower values.
+     * @param distancesInMetres The array that is filled with the distances.
+     * @param length The number of values to estimate.
+     */
+    void getDistancesInMetres(float[] rssis, float[] txPowers, float[] distancesInMetres, int length);
+}
@@ -0,0 +1,149 @@
+//
+//  CachingDistanceEstimator.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.distancing;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class decorates a distance estimator with precomputed lookup tables. Since RSSI and
+ * txPower values are reported as integers, the distance of each integer RSSI value between
+ * {@link #MIN_RSSI} and {@link #MAX_RSSI} is computed only once for each integer txPower. The
+ * table of a txPower is created, when the txPower occurs for the first time. Fractional RSSI
+ * values, e.g. averaged by an aggregator, are linearly interpolated between the two neighbouring
+ * table entries. Afterwards, each estimation takes constant time and does not allocate any
+ * memory.<br>
+ *     Values outside of the tables and fractional txPower values are passed to the decorated
+ *     estimator. If the parameters of the decorated estimator are changed, {@link #clear} must be
+ *     called to discard the outdated tables. Therefore, the decorator is not used by default; it
+ *     has to be passed explicitly, e.g. to
+ *     {@link com.mway.bluerange.android.sdk.core.triggering.BeaconAction#setDistanceEstimator}.
+ */
+public class CachingDistanceEstimator implements BatchDistanceEstimator {
+
+    public static final int MIN_RSSI = -128;
+    // An RSSI of 0 is used by some estimators to signal an unknown distance.
+    public static final int MAX_RSSI = -1;
+    public static final int MIN_TX_POWER = -128;
+    public static final int MAX_TX_POWER = 127;
+
+    private final DistanceEstimator distanceEstimator;
+    // The distances of all RSSI values, indexed by txPower - MIN_TX_POWER.
+    private final AtomicReferenceArray<float[]> tables
+            = new AtomicReferenceArray<>(MAX_TX_POWER - MIN_TX_POWER + 1);
+
+    /**
+     * @param distanceEstimator The estimator whose results are cached.
+     */
+    public CachingDistanceEstimator(DistanceEstimator distanceEstimator) {
+        this.distanceEstimator = distanceEstimator;
+    }
+
+    @Override
+    public float getDistanceInMetres(float rssi, float txPower) {
+        float[] table = getTable(txPower);
+        if (table == null || !isInTable(rssi)) {
+            return distanceEstimator.getDistanceInMetres(rssi, txPower);
+        }
+        return lookUp(table, rssi);
+    }
+
+    /**
+     * Estimates the distances of the first length elements. The table is only looked up again,
+     * if the txPower differs from the previous one.
+     */
+    @Override
+    public void getDistancesInMetres(float[] rssis, float[] txPowers, float[] distancesInMetres,
+                                     int length) {
+        float[] table = null;
+        float tableTxPower = Float.NaN;
+        for (int i = 0; i < length; i++) {
+            float rssi = rssis[i];
+            float txPower = txPowers[i];
+            if (txPower != tableTxPower) {
+                table = getTable(txPower);
+                tableTxPower = txPower;
+            }
+            if (table == null || !isInTable(rssi)) {
+                distancesInMetres[i] = distanceEstimator.getDistanceInMetres(rssi, txPower);
+            } else {
+                distancesInMetres[i] = lookUp(table, rssi);
+            }
+        }
+    }
+
+    /**
+     * Returns the table of the txPower and creates it, if necessary.
+     * @return the table or null, if the txPower is not covered by the tables.
+     */
+    private float[] getTable(float txPower) {
+        int txPowerIndex = (int) txPower - MIN_TX_POWER;
+        if (txPower != (int) txPower || txPowerIndex < 0 || txPowerIndex >= tables.length()) {
+            return null;
+        }
+        float[] table = tables.get(txPowerIndex);
+        if (table == null) {
+            table = createTable(txPower);
+            // Concurrently created tables are identical.
+            tables.set(txPowerIndex, table);
+        }
+        return table;
+    }
+
+    private static boolean isInTable(float rssi) {
+        return rssi >= MIN_RSSI && rssi <= MAX_RSSI;
+    }
+
+    private static float lookUp(float[] table, float rssi) {
+        float position = rssi - MIN_RSSI;
+        int lowerIndex = (int) position;
+        float fraction = position - lowerIndex;
+        if (fraction == 0) {
+            return table[lowerIndex];
+        }
+        return table[lowerIndex] + fraction * (table[lowerIndex + 1] - table[lowerIndex]);
+    }
+
+    private float[] createTable(float txPower) {
+        float[] table = new float[MAX_RSSI - MIN_RSSI + 1];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = distanceEstimator.getDistanceInMetres(MIN_RSSI + i, txPower);
+        }
+        return table;
+    }
+
+    /**
+     * Discards all tables, so that they are recomputed with the current parameters of the
+     * decorated estimator.
+     */
+    public void clear() {
+        for (int i = 0; i < tables.length(); i++) {
+            tables.set(i, null);
+        }
+    }
+
+    public DistanceEstimator getDistanceEstimator() {
+        return distanceEstimator;
+    }
+}
@@ -0,0 +1,73 @@
+//
+//  CalibratedDistanceEstimator.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.distancing;
+
+/**
+ * A calibrated distance estimator estimates the distance to a single beacon with the path-loss
+ * parameters that were fitted for this beacon in a {@link PathLossCalibrationStore}. In this
+ * case, the txPower is ignored. As long as the beacon is not calibrated, the estimation is
+ * passed to a fallback estimator. The calibration is looked up in constant time for each
+ * estimation, so that samples added to the store take effect immediately.
+ */
+public class CalibratedDistanceEstimator implements DistanceEstimator {
+
+    private final PathLossCalibrationStore store;
+    private final String beaconId;
+    private final DistanceEstimator fallbackEstimator;
+
+    public CalibratedDistanceEstimator(PathLossCalibrationStore store, String beaconId) {
+        this(store, beaconId, new AnalyticalDistanceEstimator());
+    }
+
+    public CalibratedDistanceEstimator(PathLossCalibrationStore store, String beaconId,
+                                       DistanceEstimator fallbackEstimator) {
+        this.store = store;
+        this.beaconId = beaconId;
+        this.fallbackEstimator = fallbackEstimator;
+    }
+
+    @Override
+    public float getDistanceInMetres(float rssi, float txPower) {
+        PathLossCalibration calibration = store.getCalibration(beaconId);
+        if (calibration == null || !calibration.isCalibrated()) {
+            return fallbackEstimator.getDistanceInMetres(rssi, txPower);
+        }
+        float A;
+        float n;
+        synchronized (calibration) {
+            A = calibration.getA();
+            n = calibration.getN();
+        }
+        return (float) Math.pow(10, (A - rssi) / (10 * n));
+    }
+
+    public String getBeaconId() {
+        return beaconId;
+    }
+
+    public DistanceEstimator getFallbackEstimator() {
+        return fallbackEstimator;
+    }
+}
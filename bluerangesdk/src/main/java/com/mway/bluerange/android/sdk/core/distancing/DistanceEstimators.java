@@ -0,0 +1,54 @@
+//
+//  DistanceEstimators.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.distancing;
+
+/**
+ * This class contains helper methods for distance estimators.
+ */
+public class DistanceEstimators {
+
+    private DistanceEstimators() {}
+
+    /**
+     * Estimates the distances of the first length elements. Estimators that implement the
+     * {@link BatchDistanceEstimator} interface estimate all values in one call. Other
+     * estimators are called for each value.
+     * @see BatchDistanceEstimator#getDistancesInMetres
+     */
+    public static void getDistancesInMetres(DistanceEstimator distanceEstimator, float[] rssis,
+                                            float[] txPowers, float[] distancesInMetres, int length) {
+        if (length > rssis.length || length > txPowers.length || length > distancesInMetres.length) {
+            throw new IllegalArgumentException("Arrays must contain at least length elements.");
+        }
+        if (distanceEstimator instanceof BatchDistanceEstimator) {
+            ((BatchDistanceEstimator) distanceEstimator).getDistancesInMetres(
+                    rssis, txPowers, distancesInMetres, length);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            distancesInMetres[i] = distanceEstimator.getDistanceInMetres(rssis[i], txPowers[i]);
+        }
+    }
+}
@@ -29,7 +29,7 @@ package com.mway.bluerange.android.sdk.core.distancing;
  * This class implements an distance estimator based on empirical data as described in
  * http://developer.radiusnetworks.com/2014/12/04/fundamentals-of-beacon-ranging.html.
  */
-public class EmpiricalDistanceEstimator implements DistanceEstimator {
+public class EmpiricalDistanceEstimator implements BatchDistanceEstimator {
 
     @Override
     public float getDistanceInMetres(float rssi, float txPower) {
@@ -46,4 +46,12 @@ public class EmpiricalDistanceEstimator implements DistanceEstimator {
             return (float)distance;
         }
     }
+
+    @Override
+    public void getDistancesInMetres(float[] rssis, float[] txPowers, float[] distancesInMetres,
+                                     int length) {
+        for (int i = 0; i < length; i++) {
+            distancesInMetres[i] = getDistanceInMetres(rssis[i], txPowers[i]);
+        }
+    }
 }
@@ -31,7 +31,7 @@ import android.content.Context;
  * This class implements a distance estimation strategy based on the empirical models of the
  * Android beacon library (https://github.com/AltBeacon/android-beacon-library).
  */
-public class ModelSpecificDistanceCalculator implements DistanceEstimator {
+public class ModelSpecificDistanceCalculator implements BatchDistanceEstimator {
 
     private Context context;
     private org.altbeacon.beacon.distance.ModelSpecificDistanceCalculator calculator;
@@ -45,4 +45,12 @@ public class ModelSpecificDistanceCalculator implements DistanceEstimator {
     public float getDistanceInMetres(float rssi, float txPower) {
         return (float)calculator.calculateDistance((int)txPower, rssi);
     }
+
+    @Override
+    public void getDistancesInMetres(float[] rssis, float[] txPowers, float[] distancesInMetres,
+                                     int length) {
+        for (int i = 0; i < length; i++) {
+            distancesInMetres[i] = (float)calculator.calculateDistance((int)txPowers[i], rssis[i]);
+        }
+    }
 }
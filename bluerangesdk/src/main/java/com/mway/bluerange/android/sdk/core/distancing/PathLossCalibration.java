@@ -0,0 +1,140 @@
+//
+//  PathLossCalibration.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.distancing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A path-loss calibration estimates the parameters A and n of the path-loss formula
+ * rssi = A - 10 * n * log10(distance) for a single beacon from labelled samples. The parameters
+ * are fitted by running least squares: each sample updates a fixed set of sums, so that adding
+ * a sample and reading the parameters takes constant time and memory.<br>
+ *     As long as all samples were taken at the same distance, n cannot be determined. In this
+ *     case, and if the fitted n is not positive, n is set to
+ *     {@link AnalyticalDistanceEstimator#kDefaultN} and only A is fitted. This class is
+ *     thread-safe.
+ */
+public class PathLossCalibration {
+
+    // Minimum variance of the log distances for n to be fitted.
+    private static final double MIN_VARIANCE = 1e-6;
+
+    // With x = -10 * log10(distance) and y = rssi, the fitted line is y = A + n * x.
+    private long numberOfSamples = 0;
+    private double sumX = 0;
+    private double sumY = 0;
+    private double sumXX = 0;
+    private double sumXY = 0;
+
+    // Fitted parameters
+    private float A = AnalyticalDistanceEstimator.kDefaultA;
+    private float n = AnalyticalDistanceEstimator.kDefaultN;
+
+    /**
+     * Adds a sample to the calibration and updates the fitted parameters.
+     * @param rssi the RSSI that was received.
+     * @param distanceInMetres the distance between the beacon and the receiver.
+     */
+    public synchronized void addSample(float rssi, float distanceInMetres) {
+        if (!(distanceInMetres > 0)) {
+            throw new IllegalArgumentException("Distance must be positive.");
+        }
+        double x = -10 * Math.log10(distanceInMetres);
+        numberOfSamples++;
+        sumX += x;
+        sumY += rssi;
+        sumXX += x * x;
+        sumXY += x * rssi;
+        fit();
+    }
+
+    private void fit() {
+        double meanX = sumX / numberOfSamples;
+        double meanY = sumY / numberOfSamples;
+        double varianceX = sumXX / numberOfSamples - meanX * meanX;
+        double fittedN = AnalyticalDistanceEstimator.kDefaultN;
+        if (varianceX > MIN_VARIANCE) {
+            double covarianceXY = sumXY / numberOfSamples - meanX * meanY;
+            double slope = covarianceXY / varianceX;
+            if (slope > 0) {
+                fittedN = slope;
+            }
+        }
+        this.n = (float) fittedN;
+        this.A = (float) (meanY - fittedN * meanX);
+    }
+
+    /**
+     * Returns the received signal strength in dBm at 1 metre.
+     */
+    public synchronized float getA() {
+        return A;
+    }
+
+    /**
+     * Returns the path-loss exponent.
+     */
+    public synchronized float getN() {
+        return n;
+    }
+
+    public synchronized long getNumberOfSamples() {
+        return numberOfSamples;
+    }
+
+    public synchronized boolean isCalibrated() {
+        return numberOfSamples > 0;
+    }
+
+    /**
+     * Writes the state of this calibration. The fitted parameters are not written, since they
+     * are derived from the state when it is read.
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeLong(numberOfSamples);
+        out.writeDouble(sumX);
+        out.writeDouble(sumY);
+        out.writeDouble(sumXX);
+        out.writeDouble(sumXY);
+    }
+
+    /**
+     * Reads a calibration that was written with {@link #writeTo}.
+     */
+    public static PathLossCalibration readFrom(DataInput in) throws IOException {
+        PathLossCalibration calibration = new PathLossCalibration();
+        calibration.numberOfSamples = in.readLong();
+        calibration.sumX = in.readDouble();
+        calibration.sumY = in.readDouble();
+        calibration.sumXX = in.readDouble();
+        calibration.sumXY = in.readDouble();
+        if (calibration.numberOfSamples > 0) {
+            calibration.fit();
+        }
+        return calibration;
+    }
+}
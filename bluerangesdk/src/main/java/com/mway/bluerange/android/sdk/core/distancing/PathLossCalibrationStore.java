@@ -0,0 +1,229 @@
+//
+//  PathLossCalibrationStore.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.distancing;
+
+import android.content.Context;
+
+import com.mway.bluerange.android.sdk.utils.io.FileAccessor;
+import com.mway.bluerange.android.sdk.utils.io.FileAccessorImpl;
+import com.mway.bluerange.android.sdk.utils.io.RenamingFileAccessor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A path-loss calibration store keeps a {@link PathLossCalibration} for each beacon, so that
+ * beacons mounted in different places can be calibrated on the device. Beacons are identified
+ * by a string, e.g. the string representation of an iBeacon. Looking up a calibration takes
+ * constant time.<br>
+ *     The store is persisted by calling {@link #save()} and {@link #load()}. Only the sums of
+ *     each calibration are written in a binary format, so that a beacon takes about 40 bytes
+ *     plus the length of its identifier. Each file ends with a CRC32 checksum, so that an
+ *     incompletely written file is detected. The store is first written to a temporary file,
+ *     which then replaces the old file, so that a failed save does not destroy the last saved
+ *     store. If the file accessor is not a {@link RenamingFileAccessor}, the temporary file is
+ *     copied instead and only deleted after the copy is complete. In this case, {@link #load()}
+ *     falls back to the temporary file, if the file of the store is missing or invalid.
+ */
+public class PathLossCalibrationStore {
+
+    public static final String DEFAULT_FILE_NAME = "pathloss_calibrations";
+    private static final int FORMAT_VERSION = 2;
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final Map<String, PathLossCalibration> calibrations = new ConcurrentHashMap<>();
+
+    // Persisting
+    private final FileAccessor fileAccessor;
+    private final String fileName;
+    private final String temporaryFileName;
+
+    public PathLossCalibrationStore(Context context) {
+        this(new FileAccessorImpl(context));
+    }
+
+    public PathLossCalibrationStore(FileAccessor fileAccessor) {
+        this(fileAccessor, DEFAULT_FILE_NAME);
+    }
+
+    public PathLossCalibrationStore(FileAccessor fileAccessor, String fileName) {
+        this.fileAccessor = fileAccessor;
+        this.fileName = fileName;
+        this.temporaryFileName = fileName + TEMPORARY_FILE_SUFFIX;
+    }
+
+    /**
+     * Adds a labelled sample to the calibration of a beacon.
+     * @param beaconId the identifier of the beacon.
+     * @param rssi the RSSI that was received from the beacon.
+     * @param distanceInMetres the distance between the beacon and the receiver.
+     */
+    public void addSample(String beaconId, float rssi, float distanceInMetres) {
+        // Lock the map, so that load() cannot replace the calibration while the sample is added.
+        synchronized (calibrations) {
+            PathLossCalibration calibration = calibrations.get(beaconId);
+            if (calibration == null) {
+                calibration = new PathLossCalibration();
+                calibrations.put(beaconId, calibration);
+            }
+            calibration.addSample(rssi, distanceInMetres);
+        }
+    }
+
+    /**
+     * Returns the calibration of a beacon.
+     * @return the calibration or null, if no sample was added for the beacon.
+     */
+    public PathLossCalibration getCalibration(String beaconId) {
+        return calibrations.get(beaconId);
+    }
+
+    public void removeCalibration(String beaconId) {
+        calibrations.remove(beaconId);
+    }
+
+    public int getNumberOfCalibrations() {
+        return calibrations.size();
+    }
+
+    public void clear() {
+        calibrations.clear();
+    }
+
+    /**
+     * Writes all calibrations to the file of this store.
+     */
+    public void save() throws IOException {
+        synchronized (fileAccessor) {
+            // Copy the entries, since the number of entries must be written first.
+            List<Map.Entry<String, PathLossCalibration>> entries =
+                    new ArrayList<>(calibrations.entrySet());
+            deleteFileIfExists(temporaryFileName);
+            writeCalibrations(temporaryFileName, entries);
+            if (fileAccessor instanceof RenamingFileAccessor) {
+                ((RenamingFileAccessor) fileAccessor).renameFile(temporaryFileName, fileName);
+            } else {
+                deleteFileIfExists(fileName);
+                writeCalibrations(fileName, entries);
+                fileAccessor.deleteFile(temporaryFileName);
+            }
+        }
+    }
+
+    private void writeCalibrations(String fileName,
+                                   List<Map.Entry<String, PathLossCalibration>> entries)
+            throws IOException {
+        CRC32 checksum = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(fileAccessor.openFileOutputStream(fileName)), checksum));
+        try {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, PathLossCalibration> entry : entries) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+            out.writeLong(checksum.getValue());
+        } finally {
+            out.close();
+        }
+    }
+
+    private void deleteFileIfExists(String fileName) {
+        if (fileAccessor.getFileNames().contains(fileName)) {
+            fileAccessor.deleteFile(fileName);
+        }
+    }
+
+    /**
+     * Replaces all calibrations with the calibrations read from the file of this store. If the
+     * file does not exist, the store remains unchanged. Samples that are added while the store
+     * is loaded are either replaced as well or added to the loaded calibrations.
+     */
+    public void load() throws IOException {
+        synchronized (fileAccessor) {
+            List<String> fileNames = fileAccessor.getFileNames();
+            // Without renaming, a complete temporary file remains, if copying it was interrupted.
+            boolean hasTemporaryFile = !(fileAccessor instanceof RenamingFileAccessor)
+                    && fileNames.contains(temporaryFileName);
+            Map<String, PathLossCalibration> loadedCalibrations;
+            if (fileNames.contains(fileName)) {
+                try {
+                    loadedCalibrations = readCalibrations(fileName);
+                } catch (IOException e) {
+                    if (!hasTemporaryFile) {
+                        throw e;
+                    }
+                    loadedCalibrations = readCalibrations(temporaryFileName);
+                }
+            } else if (hasTemporaryFile) {
+                loadedCalibrations = readCalibrations(temporaryFileName);
+            } else {
+                return;
+            }
+            synchronized (calibrations) {
+                calibrations.clear();
+                calibrations.putAll(loadedCalibrations);
+            }
+        }
+    }
+
+    private Map<String, PathLossCalibration> readCalibrations(String fileName)
+            throws IOException {
+        CRC32 checksum = new CRC32();
+        DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(fileAccessor.openFileInputStream(fileName)), checksum));
+        try {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported calibration format version: " + version);
+            }
+            int numberOfCalibrations = in.readInt();
+            Map<String, PathLossCalibration> loadedCalibrations = new HashMap<>();
+            for (int i = 0; i < numberOfCalibrations; i++) {
+                String beaconId = in.readUTF();
+                loadedCalibrations.put(beaconId, PathLossCalibration.readFrom(in));
+            }
+            long expectedChecksum = checksum.getValue();
+            if (in.readLong() != expectedChecksum) {
+                throw new IOException("Calibration file " + fileName + " is corrupt.");
+            }
+            return loadedCalibrations;
+        } finally {
+            in.close();
+        }
+    }
+}
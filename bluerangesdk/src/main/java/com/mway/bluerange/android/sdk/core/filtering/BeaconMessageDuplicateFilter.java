@@ -0,0 +1,231 @@
+//
+//  BeaconMessageDuplicateFilter.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.filtering;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
+
+import java.util.Arrays;
+
+/**
+ * A beacon message duplicate filter drops messages that were already passed within a time
+ * window. Two messages are duplicates, if they are equal according to {@link
+ * BeaconMessage#equals}, have the same RSSI and their timestamps fall into the same timestamp
+ * bucket. Duplicates arise, for example, when the regions of several message generators overlap
+ * and the scanner, therefore, reports the same packet more than once.<br>
+ *     Passed messages are remembered together with a 64 bit fingerprint in a ring with a fixed
+ *     capacity, which is indexed by an open addressing hash table. Memory usage, therefore,
+ *     stays constant. If more messages arrive within the window than the ring can hold, the
+ *     oldest messages are forgotten early. The fingerprints only speed up the lookup: messages
+ *     with equal fingerprints are compared with {@link BeaconMessage#equals}, so that messages
+ *     of different beacons are never considered to be duplicates.
+ */
+public class BeaconMessageDuplicateFilter extends BeaconMessageFilter {
+
+    public static final long DEFAULT_WINDOW_IN_MS = 2000;
+    public static final long DEFAULT_TIMESTAMP_BUCKET_IN_MS = 1000;
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int EMPTY = -1;
+
+    private final long windowInMs;
+    private final long timestampBucketInMs;
+
+    // The passed messages in order of arrival.
+    private final BeaconMessage[] ringMessages;
+    private final long[] ringFingerprints;
+    private final long[] ringTimestampBuckets;
+    private final long[] ringTimes;
+    private int ringHead = 0;
+    private int ringSize = 0;
+    // Contains the ring index of each message in the ring, hashed by its fingerprint.
+    private final int[] fingerprintTable;
+
+    private long droppedMessages = 0;
+
+    public BeaconMessageDuplicateFilter(BeaconMessageStreamNode senderNode) {
+        this(senderNode, DEFAULT_WINDOW_IN_MS, DEFAULT_TIMESTAMP_BUCKET_IN_MS, DEFAULT_CAPACITY);
+    }
+
+    public BeaconMessageDuplicateFilter(BeaconMessageStreamNode senderNode, long windowInMs,
+                                        long timestampBucketInMs, int capacity) {
+        super();
+        if (windowInMs <= 0 || timestampBucketInMs <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Window, timestamp bucket and capacity must be positive.");
+        }
+        this.windowInMs = windowInMs;
+        this.timestampBucketInMs = timestampBucketInMs;
+        this.ringMessages = new BeaconMessage[capacity];
+        this.ringFingerprints = new long[capacity];
+        this.ringTimestampBuckets = new long[capacity];
+        this.ringTimes = new long[capacity];
+        // At most half of the table is used, so that probe sequences stay short.
+        this.fingerprintTable = new int[Integer.highestOneBit(capacity) << 2];
+        Arrays.fill(fingerprintTable, EMPTY);
+        // The sender is added after the state was initialized,
+        // because it may deliver messages right away.
+        addSender(senderNode);
+    }
+
+    @Override
+    public synchronized boolean accepts(BeaconMessage message) {
+        long time = message.getTimestamp().getTime();
+        removeExpiredFingerprints(time);
+        long timestampBucket = floorDiv(time, timestampBucketInMs);
+        long fingerprint = computeFingerprint(message, timestampBucket);
+        if (containsMessage(message, fingerprint, timestampBucket)) {
+            droppedMessages++;
+            return false;
+        }
+        addMessage(message, fingerprint, timestampBucket, time);
+        return true;
+    }
+
+    private long computeFingerprint(BeaconMessage message, long timestampBucket) {
+        long fingerprint = mix(message.hashCode() & 0xFFFFFFFFL);
+        fingerprint = mix(fingerprint ^ message.getRssi());
+        return mix(fingerprint ^ timestampBucket);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long quotient = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? quotient - 1 : quotient;
+    }
+
+    private static long mix(long x) {
+        // The finalizer of the 64 bit MurmurHash3.
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    private void removeExpiredFingerprints(long time) {
+        while (ringSize > 0 && ringTimes[ringHead] + windowInMs <= time) {
+            removeOldestMessage();
+        }
+    }
+
+    private void removeOldestMessage() {
+        removeFromTable(ringHead);
+        ringMessages[ringHead] = null;
+        ringHead = (ringHead + 1) % ringMessages.length;
+        ringSize--;
+    }
+
+    private void addMessage(BeaconMessage message, long fingerprint, long timestampBucket,
+                            long time) {
+        if (ringSize == ringMessages.length) {
+            removeOldestMessage();
+        }
+        int tail = (ringHead + ringSize) % ringMessages.length;
+        ringMessages[tail] = message;
+        ringFingerprints[tail] = fingerprint;
+        ringTimestampBuckets[tail] = timestampBucket;
+        ringTimes[tail] = time;
+        ringSize++;
+        addToTable(tail);
+    }
+
+    private int homeBucket(long fingerprint) {
+        return (int) fingerprint & (fingerprintTable.length - 1);
+    }
+
+    private boolean containsMessage(BeaconMessage message, long fingerprint,
+                                    long timestampBucket) {
+        int mask = fingerprintTable.length - 1;
+        int bucket = homeBucket(fingerprint);
+        while (fingerprintTable[bucket] != EMPTY) {
+            int index = fingerprintTable[bucket];
+            if (ringFingerprints[index] == fingerprint
+                    && ringTimestampBuckets[index] == timestampBucket
+                    && ringMessages[index].getRssi() == message.getRssi()
+                    && ringMessages[index].equals(message)) {
+                return true;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return false;
+    }
+
+    private void addToTable(int index) {
+        int mask = fingerprintTable.length - 1;
+        int bucket = homeBucket(ringFingerprints[index]);
+        while (fingerprintTable[bucket] != EMPTY) {
+            bucket = (bucket + 1) & mask;
+        }
+        fingerprintTable[bucket] = index;
+    }
+
+    private void removeFromTable(int index) {
+        int mask = fingerprintTable.length - 1;
+        int gap = homeBucket(ringFingerprints[index]);
+        while (fingerprintTable[gap] != index) {
+            gap = (gap + 1) & mask;
+        }
+        // Move following entries back, so that no entry becomes unreachable.
+        int next = (gap + 1) & mask;
+        while (fingerprintTable[next] != EMPTY) {
+            int home = homeBucket(ringFingerprints[fingerprintTable[next]]);
+            boolean homeBetweenGapAndNext = gap <= next
+                    ? (gap < home && home <= next)
+                    : (gap < home || home <= next);
+            if (!homeBetweenGapAndNext) {
+                fingerprintTable[gap] = fingerprintTable[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        fingerprintTable[gap] = EMPTY;
+    }
+
+    /**
+     * Forgets all remembered messages.
+     */
+    public synchronized void clear() {
+        Arrays.fill(fingerprintTable, EMPTY);
+        Arrays.fill(ringMessages, null);
+        ringHead = 0;
+        ringSize = 0;
+    }
+
+    public long getWindowInMs() {
+        return windowInMs;
+    }
+
+    public long getTimestampBucketInMs() {
+        return timestampBucketInMs;
+    }
+
+    /**
+     * Returns the number of messages that were dropped as duplicates.
+     */
+    public synchronized long getDroppedMessages() {
+        return droppedMessages;
+    }
+}
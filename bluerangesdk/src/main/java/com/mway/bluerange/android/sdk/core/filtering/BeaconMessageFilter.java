@@ -25,15 +25,24 @@
 
 package com.mway.bluerange.android.sdk.core.filtering;
 
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * A beacon message filter is node in a message processing graph that filters the stream of
- * incoming beacon messages and sends the resulting message stream to all receivers.
+ * incoming beacon messages and sends the resulting message stream to all receivers. Subclasses
+ * should define the filter criterion by overriding the {@link #accepts} method, so that batches
+ * of messages are filtered and passed on as a whole. Subclasses that instead override {@link
+ * #onReceivedMessage} are still supported: for them, batches are split into single messages.
  */
 public abstract class BeaconMessageFilter extends BeaconMessageStreamNode {
+
+    // True, if a subclass overrides accepts.
+    private final boolean acceptsOverridden = isAcceptsOverridden(getClass());
+
     public BeaconMessageFilter() {
         super();
     }
@@ -45,4 +54,50 @@ public abstract class BeaconMessageFilter extends BeaconMessageStreamNode {
     public BeaconMessageFilter(List<BeaconMessageStreamNode> senders) {
         super(senders);
     }
+
+    private static boolean isAcceptsOverridden(Class<?> filterClass) {
+        try {
+            return filterClass.getMethod("accepts", BeaconMessage.class).getDeclaringClass()
+                    != BeaconMessageFilter.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Decides whether a message passes this filter.
+     * @param message The message to be checked.
+     * @return true, if the message should be passed to the receivers. By default, all messages
+     * are accepted.
+     */
+    public boolean accepts(BeaconMessage message) {
+        return true;
+    }
+
+    @Override
+    public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+        if (accepts(message)) {
+            sendMessageToReceivers(message);
+        } else {
+            recordDroppedMessages(1);
+        }
+    }
+
+    @Override
+    public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+        if (!acceptsOverridden) {
+            // The subclass may filter in onReceivedMessage.
+            super.onReceivedMessages(senderNode, messages);
+            return;
+        }
+        List<BeaconMessage> acceptedMessages = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            BeaconMessage message = messages.get(i);
+            if (accepts(message)) {
+                acceptedMessages.add(message);
+            }
+        }
+        recordDroppedMessages(messages.size() - acceptedMessages.size());
+        sendMessagesToReceivers(acceptedMessages);
+    }
 }
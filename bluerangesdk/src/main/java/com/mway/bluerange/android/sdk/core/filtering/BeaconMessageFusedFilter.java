@@ -0,0 +1,165 @@
+//
+//  BeaconMessageFusedFilter.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.filtering;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeReceiver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A beacon message fused filter replaces a chain of filters in a message processing graph. In a
+ * chain like scanner -> iBeacon filter -> tag filter -> receiver each filter checks the message
+ * and then passes it to the next node. A fused filter evaluates the criteria of all filters of
+ * the chain in one step and passes the accepted messages directly to the receivers of the last
+ * filter.<br>
+ *     A chain is created by calling {@link #fuse} with the last filter of the chain. Only
+ *     filters whose behaviour is completely defined by {@link BeaconMessageFilter#accepts}, that
+ *     have exactly one sender and whose sender is their only predecessor, are fused. The
+ *     filters themselves are not modified, so that their criteria can still be changed
+ *     afterwards.<br>
+ *     A chain can be fused while messages are being delivered. The senders of the chain switch
+ *     to the fused filter in one step, so that no message is passed twice or lost on its way
+ *     into the graph. Only a message that is still passing the chain on another thread, when
+ *     the last filter is disconnected from its receivers, may be lost. Chains should,
+ *     therefore, preferably be fused before the scanner is started.
+ */
+public class BeaconMessageFusedFilter extends BeaconMessageFilter {
+
+    private final BeaconMessageFilter[] filters;
+
+    private BeaconMessageFusedFilter(List<BeaconMessageFilter> filters) {
+        super();
+        this.filters = filters.toArray(new BeaconMessageFilter[filters.size()]);
+    }
+
+    /**
+     * Replaces the longest chain of filters ending at the passed filter by a fused filter. The
+     * fused filter takes over the senders of the first and the receivers of the last filter of
+     * the chain. The filters of the chain are disconnected from the graph.
+     * @param lastFilter The last filter of the chain.
+     * @return the fused filter or the passed filter, if the chain consists of only one filter.
+     */
+    public static BeaconMessageFilter fuse(BeaconMessageFilter lastFilter) {
+        List<BeaconMessageFilter> chain = findChain(lastFilter);
+        if (chain.size() < 2) {
+            return lastFilter;
+        }
+        BeaconMessageFilter firstFilter = chain.get(0);
+        BeaconMessageFusedFilter fusedFilter = new BeaconMessageFusedFilter(chain);
+
+        // 1. Connect the fused filter to the receivers of the last filter. No message reaches
+        // the fused filter yet.
+        List<BeaconMessageStreamNodeReceiver> receivers = lastFilter.getReceivers();
+        for (BeaconMessageStreamNodeReceiver receiver : receivers) {
+            if (receiver instanceof BeaconMessageStreamNode) {
+                ((BeaconMessageStreamNode) receiver).addSender(fusedFilter);
+            } else {
+                fusedFilter.addReceiver(receiver);
+            }
+        }
+        // 2. Switch each sender of the first filter to the fused filter in one step.
+        for (BeaconMessageStreamNode sender : new ArrayList<>(firstFilter.getSenders())) {
+            fusedFilter.replaceSender(sender, firstFilter);
+        }
+        // 3. Disconnect the last filter, which no message reaches anymore.
+        for (BeaconMessageStreamNodeReceiver receiver : receivers) {
+            if (receiver instanceof BeaconMessageStreamNode) {
+                ((BeaconMessageStreamNode) receiver).removeSender(lastFilter);
+            } else {
+                lastFilter.removeReceiver(receiver);
+            }
+        }
+        return fusedFilter;
+    }
+
+    private static List<BeaconMessageFilter> findChain(BeaconMessageFilter lastFilter) {
+        List<BeaconMessageFilter> chain = new ArrayList<>();
+        if (!isPureFilter(lastFilter)) {
+            return chain;
+        }
+        chain.add(0, lastFilter);
+        BeaconMessageFilter filter = lastFilter;
+        while (filter.getSenders().size() == 1) {
+            BeaconMessageStreamNode sender = filter.getSenders().get(0);
+            if (!(sender instanceof BeaconMessageFilter)
+                    || sender.getReceivers().size() != 1
+                    || !isPureFilter((BeaconMessageFilter) sender)) {
+                break;
+            }
+            filter = (BeaconMessageFilter) sender;
+            chain.add(0, filter);
+        }
+        return chain;
+    }
+
+    private static boolean isPureFilter(BeaconMessageFilter filter) {
+        // A filter that overrides the message handling of the base class
+        // may do more than accepting or rejecting messages.
+        try {
+            Class<?> filterClass = filter.getClass();
+            return filterClass.getMethod("onReceivedMessage",
+                    BeaconMessageStreamNode.class, BeaconMessage.class)
+                    .getDeclaringClass() == BeaconMessageFilter.class
+                    && filterClass.getMethod("onReceivedMessages",
+                    BeaconMessageStreamNode.class, List.class)
+                    .getDeclaringClass() == BeaconMessageFilter.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Class<? extends BeaconMessage> getReceivedMessageType() {
+        // A message has to pass all fused filters. Therefore, the most specific type suffices.
+        Class<? extends BeaconMessage> messageType = filters[0].getReceivedMessageType();
+        for (int i = 1; i < filters.length; i++) {
+            Class<? extends BeaconMessage> filterMessageType = filters[i].getReceivedMessageType();
+            if (messageType.isAssignableFrom(filterMessageType)) {
+                messageType = filterMessageType;
+            }
+        }
+        return messageType;
+    }
+
+    @Override
+    public boolean accepts(BeaconMessage message) {
+        for (int i = 0; i < filters.length; i++) {
+            if (!filters[i].accepts(message)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of filters that were fused.
+     */
+    public int getNumberOfFusedFilters() {
+        return filters.length;
+    }
+}
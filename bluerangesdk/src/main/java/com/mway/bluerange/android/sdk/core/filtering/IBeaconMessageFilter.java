@@ -28,7 +28,6 @@ package com.mway.bluerange.android.sdk.core.filtering;
 import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
-import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeReceiver;
 
 import java.util.List;
 
@@ -47,11 +46,12 @@ public class IBeaconMessageFilter extends BeaconMessageFilter  {
     }
 
     @Override
-    public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
-        if (message instanceof IBeaconMessage) {
-            for (BeaconMessageStreamNodeReceiver receiver : getReceivers()) {
-                receiver.onReceivedMessage(this, message);
-            }
-        }
+    public Class<? extends BeaconMessage> getReceivedMessageType() {
+        return IBeaconMessage.class;
+    }
+
+    @Override
+    public boolean accepts(BeaconMessage message) {
+        return message instanceof IBeaconMessage;
     }
 }
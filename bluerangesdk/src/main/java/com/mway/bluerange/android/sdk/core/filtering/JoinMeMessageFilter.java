@@ -28,7 +28,6 @@ package com.mway.bluerange.android.sdk.core.filtering;
 import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconJoinMeMessage;
 import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
-import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeReceiver;
 
 import java.util.List;
 
@@ -43,11 +42,12 @@ public class JoinMeMessageFilter extends BeaconMessageFilter {
     }
 
     @Override
-    public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
-        if (message instanceof BeaconJoinMeMessage) {
-            for (BeaconMessageStreamNodeReceiver receiver : getReceivers()) {
-                receiver.onReceivedMessage(this, message);
-            }
-        }
+    public Class<? extends BeaconMessage> getReceivedMessageType() {
+        return BeaconJoinMeMessage.class;
+    }
+
+    @Override
+    public boolean accepts(BeaconMessage message) {
+        return message instanceof BeaconJoinMeMessage;
     }
 }
@@ -28,7 +28,6 @@ package com.mway.bluerange.android.sdk.core.filtering;
 import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 import com.mway.bluerange.android.sdk.core.scanning.messages.RelutionTagMessageV1;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
-import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeReceiver;
 
 import java.util.List;
 
@@ -59,17 +58,19 @@ public class RelutionTagMessageFilter extends BeaconMessageFilter {
     }
 
     @Override
-    public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+    public Class<? extends BeaconMessage> getReceivedMessageType() {
+        return RelutionTagMessageV1.class;
+    }
+
+    @Override
+    public boolean accepts(BeaconMessage message) {
         // 1. Filter by message types
         if (message instanceof RelutionTagMessageV1) {
             RelutionTagMessageV1 relutionTagMessage = (RelutionTagMessageV1) message;
             // 2. Filter tags if wanted
-            if (!useTagFilter() || (useTagFilter() && messageContainsAtLeastOneMatchingTag(relutionTagMessage))) {
-                for (BeaconMessageStreamNodeReceiver receiver : getReceivers()) {
-                    receiver.onReceivedMessage(this, message);
-                }
-            }
+            return !useTagFilter() || messageContainsAtLeastOneMatchingTag(relutionTagMessage);
         }
+        return false;
     }
 
     private boolean useTagFilter() {
@@ -0,0 +1,43 @@
+//
+//  BeaconMessageBatchPersistor.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.logging;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+
+import java.util.List;
+
+/**
+ * A beacon message batch persistor is a {@link BeaconMessagePersistor} that can save a batch of
+ * messages at once. By default, the messages of a batch are passed to {@link #writeMessage} one
+ * by one. Subclasses should override {@link #writeMessages}, if a batch can be saved more
+ * efficiently, e.g. with fewer disk accesses.
+ */
+public abstract class BeaconMessageBatchPersistor implements BeaconMessagePersistor {
+    public void writeMessages(List<BeaconMessage> beaconMessages) {
+        for (int i = 0; i < beaconMessages.size(); i++) {
+            writeMessage(beaconMessages.get(i));
+        }
+    }
+}
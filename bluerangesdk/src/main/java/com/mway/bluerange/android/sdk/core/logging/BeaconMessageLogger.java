@@ -28,6 +28,7 @@ package com.mway.bluerange.android.sdk.core.logging;
 import android.content.Context;
 
 import java.util.Iterator;
+import java.util.List;
 
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessagePassingStreamNode;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
@@ -128,6 +129,18 @@ public class BeaconMessageLogger extends BeaconMessagePassingStreamNode implemen
         //tracer.logDebug(kLogTag, message.toString());
     }
 
+    @Override
+    protected void preprocessMessages(List<BeaconMessage> messages) {
+        if (persistor instanceof BeaconMessageBatchPersistor) {
+            // Write the whole batch at once.
+            ((BeaconMessageBatchPersistor) persistor).writeMessages(messages);
+        } else {
+            for (int i = 0; i < messages.size(); i++) {
+                persistor.writeMessage(messages.get(i));
+            }
+        }
+    }
+
     @Override
     protected void postprocessMessage(BeaconMessage message) {
 
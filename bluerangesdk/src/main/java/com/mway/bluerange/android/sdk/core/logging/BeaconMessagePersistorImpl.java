@@ -62,7 +62,7 @@ import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
  * before it is being saved. However, to increase the persisting efficiency, the compression
  * might be turned off.
  */
-public class BeaconMessagePersistorImpl implements BeaconMessagePersistor {
+public class BeaconMessagePersistorImpl extends BeaconMessageBatchPersistor {
 
     // Configuration
     // By default we limit the log size to about 100 MB,
@@ -355,6 +355,30 @@ public class BeaconMessagePersistorImpl implements BeaconMessagePersistor {
         }
     }
 
+    @Override
+    public void writeMessages(List<BeaconMessage> beaconMessages) {
+        // Do only add as many messages as the log can take.
+        int numberOfMessages = Math.min(beaconMessages.size(),
+                Math.max(0, maxLogSize - getTotalMessages()));
+        int index = 0;
+        while (index < numberOfMessages) {
+            // Fill the cached chunk at once and save it, if it is full. Thus,
+            // a batch results in one disk access per completed chunk.
+            int end = Math.min(numberOfMessages,
+                    index + this.chunkSize - this.cachedMessages.size());
+            this.cachedMessages.addAll(beaconMessages.subList(index, end));
+            if (this.cachedMessages.size() >= this.chunkSize) {
+                saveChunk();
+            }
+            index = end;
+        }
+        if (numberOfMessages < beaconMessages.size()) {
+            int numberOfDroppedMessages = beaconMessages.size() - numberOfMessages;
+            tracer.logError(kLogTag, "Could not persist " + numberOfDroppedMessages
+                    + " messages to log. Maximum log size of " + maxLogSize + " bytes reached!");
+        }
+    }
+
     private void saveChunk() {
         // Persist chunk
         writeChunk();
@@ -258,18 +258,13 @@ public class BeaconMessageScanner extends IBeaconMessageScanner implements Beaco
         if (receivedAtLeastOneMeshBeacon(beacons)) {
             tracer.logDebug(LOG_TAG, "ScanService detected mesh beacons.");
             if (!meshDetected) {
-                for (BeaconMessageStreamNodeReceiver receiver : getReceivers()) {
-                    receiver.onMeshActive(this);
-                }
+                sendMeshActiveToReceivers();
                 this.meshDetected = true;
             }
             List<BeaconMessage> beaconMessages = createBeaconMessages(beacons, region);
-            for (BeaconMessage message : beaconMessages) {
-                tracer.logDebug(LOG_TAG, message.toString());
-                for (BeaconMessageStreamNodeReceiver receiver : getReceivers()) {
-                    receiver.onReceivedMessage(this, message);
-                }
-            }
+            tracer.logDebug(LOG_TAG, "ScanService received " + beaconMessages.size() + " messages.");
+            // All messages of a ranging cycle are delivered as one batch.
+            sendMessagesToReceivers(beaconMessages);
 
             this.restartMeshActivityTimer();
         }
@@ -333,9 +328,7 @@ public class BeaconMessageScanner extends IBeaconMessageScanner implements Beaco
 
     public void meshInactivityTimeoutReached() {
         tracer.logDebug(LOG_TAG, "ScanService: Device has left mesh network or network has become inactive.");
-        for (BeaconMessageStreamNodeReceiver receiver : getReceivers()) {
-            receiver.onMeshInactive(this);
-        }
+        sendMeshInactiveToReceivers();
         this.meshDetected = false;
     }
 
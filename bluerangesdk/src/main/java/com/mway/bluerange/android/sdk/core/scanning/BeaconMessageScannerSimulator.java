@@ -39,7 +39,6 @@ import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
 import com.mway.bluerange.android.sdk.core.scanning.messages.RelutionTagMessage;
 import com.mway.bluerange.android.sdk.core.scanning.messages.RelutionTagMessageV1;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
-import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeReceiver;
 import com.mway.bluerange.android.sdk.utils.logging.ITracer;
 import com.mway.bluerange.android.sdk.utils.logging.Tracer;
 
@@ -234,21 +233,20 @@ public class BeaconMessageScannerSimulator extends IBeaconMessageScanner {
     private void startOneTimeScan() {
         // Clone messages
         List<BeaconMessage> clonedMessages = getClonedMessages();
-        for (BeaconMessageStreamNodeReceiver receiver : getReceivers()) {
-            for(BeaconMessage beaconMessage : clonedMessages) {
-                if (rssiNoise) {
-                    int rssi = beaconMessage.getRssi();
-                    float noiseStrength = 10;
-                    float noise = (float)((Math.random() * noiseStrength) - noiseStrength/2);
-                    float noisedRssi = rssi + noise;
-                    //Log.d("Rssi", "rssi = " + rssi);
-                    //Log.d("Rssi", "noised rssi = " + noisedRssi);
-                    beaconMessage.setRssi((int)noisedRssi);
-                }
-                beaconMessage.setTimestamp(new Date());
-                receiver.onReceivedMessage(this, beaconMessage);
+        for(BeaconMessage beaconMessage : clonedMessages) {
+            if (rssiNoise) {
+                int rssi = beaconMessage.getRssi();
+                float noiseStrength = 10;
+                float noise = (float)((Math.random() * noiseStrength) - noiseStrength/2);
+                float noisedRssi = rssi + noise;
+                //Log.d("Rssi", "rssi = " + rssi);
+                //Log.d("Rssi", "noised rssi = " + noisedRssi);
+                beaconMessage.setRssi((int)noisedRssi);
             }
+            beaconMessage.setTimestamp(new Date());
         }
+        // Deliver like the real scanner, so that typed subscriptions and metrics apply.
+        sendMessagesToReceivers(clonedMessages);
     }
 
     private List<BeaconMessage> getClonedMessages() {
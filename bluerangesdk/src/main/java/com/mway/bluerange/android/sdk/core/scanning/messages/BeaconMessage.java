@@ -61,6 +61,11 @@ public abstract class BeaconMessage implements Serializable {
     public static final short DEFAULT_TX_POWER = -55;
     private short txPower = DEFAULT_TX_POWER;
     private int rssi = -70;
+    // The number of messages that were combined to this message, e.g. by an aggregator. The
+    // field is transient to keep the serialized form unchanged, so that it is 0 after
+    // deserialization, which is read as 1.
+    @JsonIgnore
+    private transient int numberOfAggregatedMessages = 1;
 
     public BeaconMessage() {
         this.init(null, new Date());
@@ -108,6 +113,7 @@ public abstract class BeaconMessage implements Serializable {
         message.setRssi(rssi);
         message.setTxPower(txPower);
         message.setTimestamp(timestamp);
+        message.setNumberOfAggregatedMessages(numberOfAggregatedMessages);
         return message;
     }
 
@@ -147,6 +153,20 @@ public abstract class BeaconMessage implements Serializable {
         this.rssi = rssi;
     }
 
+    /**
+     * Returns the number of messages that were combined to this message.
+     * @return 1, if this message was not aggregated or was deserialized.
+     */
+    @JsonIgnore
+    public int getNumberOfAggregatedMessages() {
+        return numberOfAggregatedMessages == 0 ? 1 : numberOfAggregatedMessages;
+    }
+
+    @JsonIgnore
+    public void setNumberOfAggregatedMessages(int numberOfAggregatedMessages) {
+        this.numberOfAggregatedMessages = numberOfAggregatedMessages;
+    }
+
     // The beacon message type
     public String getType() {
         return this.getClass().getSimpleName();
@@ -32,7 +32,6 @@ import org.altbeacon.beacon.Beacon;
 import org.altbeacon.beacon.Region;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -91,7 +90,18 @@ public class RelutionTagMessageV1 extends BeaconMessage {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(this.getTags().toArray());
+        // Must neither depend on the order nor on duplicates of the tags, since equals does
+        // not. Summing the hash codes of the distinct tags does not allocate a set. Since there
+        // are only a few tags, searching for duplicates is cheap.
+        List<Long> tags = this.getTags();
+        int hashCode = 0;
+        for (int i = 0; i < tags.size(); i++) {
+            Long tag = tags.get(i);
+            if (tags.indexOf(tag) == i && tag != null) {
+                hashCode += tag.hashCode();
+            }
+        }
+        return hashCode;
     }
 
     @Override
@@ -0,0 +1,358 @@
+//
+//  BeaconMessageAsyncStreamNode.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.streaming;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.utils.logging.Tracer;
+import com.mway.bluerange.android.sdk.utils.structs.HashSlotTable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A beacon message async stream node is a node in a message processing graph that decouples
+ * its receivers from its senders. Incoming messages are put into a ring buffer with a fixed
+ * capacity and are delivered to the receivers by a dedicated consumer thread. A slow receiver,
+ * e.g. a logger writing to the disk, will therefore not block the sender, e.g. the scanner.<br>
+ *     If the messages arrive faster than the receivers can process them, the buffer will
+ *     eventually be full. What happens in this case, is defined by the {@link OverflowPolicy}.
+ *     The number of dropped and coalesced messages can be read by calling {@link
+ *     #getDroppedMessages} and {@link #getCoalescedMessages}.<br>
+ *     All messages that are available when the consumer thread wakes up, are delivered as one
+ *     batch. Each batch is a new unmodifiable list, so that receivers may keep it after their
+ *     callback has returned. Mesh state changes are passed to the receivers immediately on the sender's
+ *     thread.<br>
+ *     The consumer thread is a daemon thread. It is started on construction and runs until
+ *     {@link #stop} is called.
+ */
+public class BeaconMessageAsyncStreamNode extends BeaconMessageStreamNode {
+
+    /**
+     * Defines how a message is handled, when it arrives while the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The sender waits until the consumer thread has freed a slot.
+         */
+        BLOCK,
+        /**
+         * The new message is dropped.
+         */
+        DROP_NEWEST,
+        /**
+         * The oldest message in the buffer is dropped to make room for the new message.
+         */
+        DROP_OLDEST,
+        /**
+         * The new message replaces the newest buffered message of the same beacon. If the
+         * buffer does not contain a message of this beacon, the oldest message is dropped.
+         * The buffered message is found in constant time.
+         */
+        COALESCE
+    }
+
+    private static final String LOG_TAG = "AsyncStreamNode";
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP_OLDEST;
+
+    // All fields are guarded by the buffer's monitor.
+    private final BeaconMessageRingBuffer buffer;
+    private final OverflowPolicy overflowPolicy;
+    private long droppedMessages = 0;
+    private long coalescedMessages = 0;
+    private boolean running = false;
+
+    // Only used by the COALESCE policy. Maps each buffered beacon to the sequence number of its
+    // newest buffered message, where the position of a message in the buffer is its sequence
+    // number minus the sequence number of the oldest buffered message.
+    private final HashSlotTable<BeaconMessage> bufferedBeacons;
+    private final long[] newestSequenceNumbers;
+    private long oldestSequenceNumber = 0;
+
+    // Consumer
+    private Thread consumerThread;
+
+    public BeaconMessageAsyncStreamNode(BeaconMessageStreamNode sender) {
+        this(sender, DEFAULT_CAPACITY, DEFAULT_OVERFLOW_POLICY);
+    }
+
+    public BeaconMessageAsyncStreamNode(List<BeaconMessageStreamNode> senders) {
+        this(senders, DEFAULT_CAPACITY, DEFAULT_OVERFLOW_POLICY);
+    }
+
+    public BeaconMessageAsyncStreamNode(BeaconMessageStreamNode sender, int capacity,
+                                        OverflowPolicy overflowPolicy) {
+        this(Collections.singletonList(sender), capacity, overflowPolicy);
+    }
+
+    public BeaconMessageAsyncStreamNode(List<BeaconMessageStreamNode> senders, int capacity,
+                                        OverflowPolicy overflowPolicy) {
+        // The senders are added after the buffer was created,
+        // because they may deliver messages right away.
+        super();
+        this.buffer = new BeaconMessageRingBuffer(capacity);
+        this.overflowPolicy = overflowPolicy;
+        if (overflowPolicy == OverflowPolicy.COALESCE) {
+            // The buffer never contains more beacons than messages, so that the table never grows.
+            this.bufferedBeacons = new HashSlotTable<>(capacity);
+            this.newestSequenceNumbers = new long[bufferedBeacons.capacity()];
+        } else {
+            this.bufferedBeacons = null;
+            this.newestSequenceNumbers = null;
+        }
+        start();
+        for (BeaconMessageStreamNode sender : senders) {
+            addSender(sender);
+        }
+    }
+
+    private void start() {
+        synchronized (buffer) {
+            this.running = true;
+        }
+        this.consumerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    deliverMessages();
+                } catch (InterruptedException e) {
+                    // An interrupt should stop the thread.
+                }
+            }
+        });
+        this.consumerThread.setName("BeaconMessageAsyncStreamNode");
+        this.consumerThread.setDaemon(true);
+        this.consumerThread.start();
+    }
+
+    /**
+     * Stops the consumer thread. Messages that are still buffered will not be delivered.
+     */
+    public void stop() {
+        synchronized (buffer) {
+            this.running = false;
+            clearBuffer();
+            // Wake up the consumer thread and all blocked senders.
+            buffer.notifyAll();
+        }
+        consumerThread.interrupt();
+    }
+
+    @Override
+    public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+        synchronized (buffer) {
+            enqueue(message);
+            buffer.notifyAll();
+        }
+    }
+
+    @Override
+    public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+        // The whole batch is added while holding the lock only once.
+        synchronized (buffer) {
+            for (int i = 0; i < messages.size(); i++) {
+                enqueue(messages.get(i));
+            }
+            buffer.notifyAll();
+        }
+    }
+
+    @Override
+    public void onMeshActive(BeaconMessageStreamNode senderNode) {
+        sendMeshActiveToReceivers();
+    }
+
+    @Override
+    public void onMeshInactive(BeaconMessageStreamNode senderNode) {
+        sendMeshInactiveToReceivers();
+    }
+
+    // Must be called while holding the buffer's monitor.
+    private void enqueue(BeaconMessage message) {
+        if (!running) {
+            dropMessage();
+            return;
+        }
+        if (offer(message)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                waitUntilBufferIsNotFull();
+                if (!running || !offer(message)) {
+                    dropMessage();
+                }
+                break;
+            case DROP_NEWEST:
+                dropMessage();
+                break;
+            case DROP_OLDEST:
+                poll();
+                offer(message);
+                dropMessage();
+                break;
+            case COALESCE:
+                int slot = bufferedBeacons.getSlot(message);
+                if (slot >= 0) {
+                    int index = (int) (newestSequenceNumbers[slot] - oldestSequenceNumber);
+                    buffer.set(index, message);
+                    coalescedMessages++;
+                    recordDroppedMessages(1);
+                } else {
+                    poll();
+                    offer(message);
+                    dropMessage();
+                }
+                break;
+        }
+    }
+
+    // The following methods must be called while holding the buffer's monitor.
+    // They keep the index of the COALESCE policy in sync with the buffer.
+
+    private boolean offer(BeaconMessage message) {
+        if (!buffer.offer(message)) {
+            return false;
+        }
+        if (bufferedBeacons != null) {
+            int slot = bufferedBeacons.addKey(message);
+            newestSequenceNumbers[slot] = oldestSequenceNumber + buffer.size() - 1;
+        }
+        return true;
+    }
+
+    private BeaconMessage poll() {
+        BeaconMessage message = buffer.poll();
+        if (bufferedBeacons != null && message != null) {
+            int slot = bufferedBeacons.getSlot(message);
+            if (newestSequenceNumbers[slot] == oldestSequenceNumber) {
+                bufferedBeacons.removeSlot(slot);
+            }
+        }
+        oldestSequenceNumber++;
+        return message;
+    }
+
+    private void drainBuffer(List<BeaconMessage> messages) {
+        if (bufferedBeacons == null) {
+            oldestSequenceNumber += buffer.drainTo(messages, Integer.MAX_VALUE);
+            return;
+        }
+        while (!buffer.isEmpty()) {
+            messages.add(poll());
+        }
+    }
+
+    private void clearBuffer() {
+        oldestSequenceNumber += buffer.size();
+        buffer.clear();
+        if (bufferedBeacons != null) {
+            bufferedBeacons.clear();
+        }
+    }
+
+    // Must be called while holding the buffer's monitor.
+    private void dropMessage() {
+        droppedMessages++;
+        recordDroppedMessages(1);
+    }
+
+    private void waitUntilBufferIsNotFull() {
+        try {
+            while (running && buffer.isFull()) {
+                buffer.wait();
+            }
+        } catch (InterruptedException e) {
+            // The message will be dropped. The interrupt is preserved for the sender.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deliverMessages() throws InterruptedException {
+        while (true) {
+            List<BeaconMessage> batch;
+            synchronized (buffer) {
+                while (running && buffer.isEmpty()) {
+                    buffer.wait();
+                }
+                if (!running) {
+                    return;
+                }
+                batch = new ArrayList<>(buffer.size());
+                drainBuffer(batch);
+                // Wake up senders waiting for free slots.
+                buffer.notifyAll();
+            }
+            try {
+                if (batch.size() == 1) {
+                    sendMessageToReceivers(batch.get(0));
+                } else {
+                    sendMessagesToReceivers(Collections.unmodifiableList(batch));
+                }
+            } catch (RuntimeException e) {
+                // A failing receiver must not stop the delivery of further messages.
+                Tracer.getInstance().logError(LOG_TAG, "Delivering messages failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns the number of currently buffered messages.
+     */
+    public int getBufferedMessages() {
+        synchronized (buffer) {
+            return buffer.size();
+        }
+    }
+
+    /**
+     * Returns the number of messages that were dropped because of a full buffer or because the
+     * node was stopped.
+     */
+    public long getDroppedMessages() {
+        synchronized (buffer) {
+            return droppedMessages;
+        }
+    }
+
+    /**
+     * Returns the number of messages that replaced a buffered message of the same beacon.
+     */
+    public long getCoalescedMessages() {
+        synchronized (buffer) {
+            return coalescedMessages;
+        }
+    }
+}
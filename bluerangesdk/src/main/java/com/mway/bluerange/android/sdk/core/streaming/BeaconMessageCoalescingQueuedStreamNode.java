@@ -0,0 +1,232 @@
+//
+//  BeaconMessageCoalescingQueuedStreamNode.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.streaming;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A beacon message coalescing queued stream node is a queued stream node that keeps only the
+ * newest message of each beacon. Two messages belong to the same beacon, if they are equal
+ * according to {@link BeaconMessage#equals}, e.g. iBeacon messages with the same UUID, major
+ * and minor or Relution Tag messages with the same tags. If a message is received while the
+ * queue already contains a message of the same beacon, the queued message is replaced, but
+ * keeps its position in the queue. The messages are, therefore, pulled in the order the
+ * beacons were first seen since the last pull.<br>
+ *     If the consumer is blocked for a while, the queue does not accumulate outdated messages
+ *     and its size is bounded by the number of distinct beacons instead of the time the
+ *     consumer was blocked. The queue has a maximum size of {@link #maximumSize}. Messages of
+ *     beacons that are not yet contained in a full queue will be dropped.
+ */
+public class BeaconMessageCoalescingQueuedStreamNode extends BeaconMessageStreamNode {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = Integer.MAX_VALUE;
+    // Maps each message to the newest message of the same beacon. The map is also used as the
+    // lock of the queue.
+    private final LinkedHashMap<BeaconMessage, BeaconMessage> messageQueue = new LinkedHashMap<>();
+    private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private long coalescedMessages = 0;
+
+    public BeaconMessageCoalescingQueuedStreamNode(BeaconMessageStreamNode sender) {
+        // The senders are added after the queue was created,
+        // because they may deliver messages right away.
+        super();
+        addSender(sender);
+    }
+
+    public BeaconMessageCoalescingQueuedStreamNode(List<BeaconMessageStreamNode> senders) {
+        super();
+        for (BeaconMessageStreamNode sender : senders) {
+            addSender(sender);
+        }
+    }
+
+    @Override
+    public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+        synchronized (this.messageQueue) {
+            if (offerBeaconMessage(message)) {
+                // Wake up all threads that are waiting for incoming messages.
+                this.messageQueue.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+        // The whole batch is added while holding the lock only once.
+        synchronized (this.messageQueue) {
+            boolean added = false;
+            for (int i = 0; i < messages.size(); i++) {
+                added |= offerBeaconMessage(messages.get(i));
+            }
+            if (added) {
+                // Wake up all threads that are waiting for incoming messages.
+                this.messageQueue.notifyAll();
+            }
+        }
+    }
+
+    // Must be called while holding the queue's monitor.
+    private boolean offerBeaconMessage(BeaconMessage message) {
+        if (messageQueue.containsKey(message)) {
+            // Replacing the value of an existing key keeps the insertion order.
+            messageQueue.put(message, message);
+            coalescedMessages++;
+            recordDroppedMessages(1);
+            return true;
+        }
+        // Do not add the message to the queue, if the queue is full.
+        if (messageQueue.size() >= maximumSize) {
+            recordDroppedMessages(1);
+            return false;
+        }
+        messageQueue.put(message, message);
+        return true;
+    }
+
+    // Must be called while holding the queue's monitor.
+    private BeaconMessage removeOldestMessage() {
+        Iterator<Map.Entry<BeaconMessage, BeaconMessage>> iterator
+                = messageQueue.entrySet().iterator();
+        BeaconMessage message = iterator.next().getValue();
+        iterator.remove();
+        return message;
+    }
+
+    // Must be called while holding the queue's monitor.
+    private int removeOldestMessages(Collection<? super BeaconMessage> collection, int maxMessages) {
+        Iterator<Map.Entry<BeaconMessage, BeaconMessage>> iterator
+                = messageQueue.entrySet().iterator();
+        int count = 0;
+        while (count < maxMessages && iterator.hasNext()) {
+            collection.add(iterator.next().getValue());
+            iterator.remove();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Removes the oldest message from the queue. If the queue is empty, this method blocks until
+     * a message has been received.
+     * @return the newest message of the beacon that has been waiting the longest.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public BeaconMessage pullBeaconMessage() throws InterruptedException {
+        synchronized (this.messageQueue) {
+            while (messageQueue.isEmpty()) {
+                this.messageQueue.wait();
+            }
+            return removeOldestMessage();
+        }
+    }
+
+    /**
+     * Removes the oldest message from the queue. If the queue is empty, this method waits at
+     * most the passed timeout until a message has been received.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of the timeout.
+     * @return the oldest message or null, if no message was received within the timeout.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public BeaconMessage pollBeaconMessage(long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remainingNanos;
+        synchronized (this.messageQueue) {
+            while (messageQueue.isEmpty()) {
+                if (remainingNanos <= 0) {
+                    return null;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this.messageQueue, remainingNanos);
+                remainingNanos = deadline - System.nanoTime();
+            }
+            return removeOldestMessage();
+        }
+    }
+
+    /**
+     * Removes at most maxMessages of the oldest messages from the queue and adds them to the
+     * collection. If the queue is empty, this method blocks until a message has been received.
+     * @param collection The collection the messages are added to.
+     * @param maxMessages The maximum number of messages to be removed.
+     * @return the number of messages that were added to the collection.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public int pullBeaconMessages(Collection<? super BeaconMessage> collection, int maxMessages)
+            throws InterruptedException {
+        synchronized (this.messageQueue) {
+            while (messageQueue.isEmpty()) {
+                this.messageQueue.wait();
+            }
+            return removeOldestMessages(collection, maxMessages);
+        }
+    }
+
+    /**
+     * Removes at most maxMessages of the oldest messages from the queue and adds them to the
+     * collection. In contrast to {@link #pullBeaconMessages}, this method does not block.
+     * @param collection The collection the messages are added to.
+     * @param maxMessages The maximum number of messages to be removed.
+     * @return the number of messages that were added to the collection.
+     */
+    public int drainTo(Collection<? super BeaconMessage> collection, int maxMessages) {
+        synchronized (this.messageQueue) {
+            return removeOldestMessages(collection, maxMessages);
+        }
+    }
+
+    public int size() {
+        synchronized (this.messageQueue) {
+            return messageQueue.size();
+        }
+    }
+
+    /**
+     * Returns the number of messages that replaced a queued message of the same beacon.
+     */
+    public long getCoalescedMessages() {
+        synchronized (this.messageQueue) {
+            return coalescedMessages;
+        }
+    }
+
+    public void setMaximumSize(int maximumSize) {
+        synchronized (this.messageQueue) {
+            this.maximumSize = maximumSize;
+        }
+    }
+
+    public int getMaximumSize() {
+        synchronized (this.messageQueue) {
+            return maximumSize;
+        }
+    }
+}
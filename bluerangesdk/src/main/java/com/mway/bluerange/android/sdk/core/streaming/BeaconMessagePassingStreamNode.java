@@ -50,15 +50,19 @@ public abstract class BeaconMessagePassingStreamNode extends BeaconMessageStream
         // 1. Preprocessing
         preprocessMessage(message);
         // 2. Delegating
-        passMessageToReceivers(message);
+        sendMessageToReceivers(message);
         // 3. Postprocessing
         postprocessMessage(message);
     }
 
-    private void passMessageToReceivers(BeaconMessage message) {
-        for (BeaconMessageStreamNodeReceiver receiver : getReceivers()) {
-            receiver.onReceivedMessage(this, message);
-        }
+    @Override
+    public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+        // 1. Preprocessing
+        preprocessMessages(messages);
+        // 2. Delegating
+        sendMessagesToReceivers(messages);
+        // 3. Postprocessing
+        postprocessMessages(messages);
     }
 
     /**
@@ -76,4 +80,26 @@ public abstract class BeaconMessagePassingStreamNode extends BeaconMessageStream
     protected void postprocessMessage(BeaconMessage message) {
         // Default implementation is empty.
     }
+
+    /**
+     * This method is called right before a batch of beacon messages is passed to the
+     * receivers. By default, {@link #preprocessMessage} is called for each message.
+     * @param messages The received messages that are going to be passed to the receivers.
+     */
+    protected void preprocessMessages(List<BeaconMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            preprocessMessage(messages.get(i));
+        }
+    }
+
+    /**
+     * This method is called right after a batch of beacon messages was passed to the
+     * receivers. By default, {@link #postprocessMessage} is called for each message.
+     * @param messages The received messages that were passed to the receivers.
+     */
+    protected void postprocessMessages(List<BeaconMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            postprocessMessage(messages.get(i));
+        }
+    }
 }
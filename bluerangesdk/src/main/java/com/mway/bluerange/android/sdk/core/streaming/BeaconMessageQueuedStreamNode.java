@@ -22,29 +22,48 @@
 // specific language governing permissions and limitations
 // under the License.
 //
-
 package com.mway.bluerange.android.sdk.core.streaming;
 
 import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A beacon message queued stream node is a node in a message processing graph that queues all
- * incoming beacon messages. The queue has a maximum size of {@link #maximumSize}. The messages
- * will not be delivered to any receiver. However, they can be pulled by calling the {@link
- * #pullBeaconMessage} method.
+ * incoming beacon messages. The queue has a maximum size of {@link #maximumSize}. Messages that
+ * arrive while the queue is full will be dropped. The messages will not be delivered to any
+ * receiver. However, they can be pulled by calling the {@link #pullBeaconMessage}, {@link
+ * #pollBeaconMessage} or {@link #pullBeaconMessages} methods.<br>
+ *     The messages are stored in a ring buffer, so that pushing and pulling a message takes
+ *     constant time. The buffer grows on demand until it reaches the maximum size.
  */
 public class BeaconMessageQueuedStreamNode extends BeaconMessageStreamNode {
 
-    private final List<BeaconMessage> messageQueue = new ArrayList<BeaconMessage>();
+    private static final int INITIAL_CAPACITY = 16;
     private static final int DEFAULT_MAXIMUM_SIZE = Integer.MAX_VALUE;
+    // The buffer is also used as the lock of the queue.
+    private final BeaconMessageRingBuffer messageQueue;
     private int maximumSize = DEFAULT_MAXIMUM_SIZE;
 
-    public BeaconMessageQueuedStreamNode(BeaconMessageStreamNode sender) {super(sender);}
+    public BeaconMessageQueuedStreamNode(BeaconMessageStreamNode sender) {
+        this();
+        addSender(sender);
+    }
+
     public BeaconMessageQueuedStreamNode(List<BeaconMessageStreamNode> senders) {
-        super(senders);
+        this();
+        for (BeaconMessageStreamNode sender : senders) {
+            addSender(sender);
+        }
+    }
+
+    private BeaconMessageQueuedStreamNode() {
+        // The senders are added after the queue was created,
+        // because they may deliver messages right away.
+        super();
+        this.messageQueue = new BeaconMessageRingBuffer(INITIAL_CAPACITY);
     }
 
     @Override
@@ -52,36 +71,137 @@ public class BeaconMessageQueuedStreamNode extends BeaconMessageStreamNode {
         pushBeaconMessage(message);
     }
 
+    @Override
+    public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+        pushBeaconMessages(messages);
+    }
+
     private void pushBeaconMessage(BeaconMessage beaconMessage) {
-        // Do not add the message to the list, if the queue is full.
-        if (messageQueue.size() >= maximumSize) {
-            return;
-        }
         // Adding the beacon messages is synchronized as it is typical for producer consumer scenarios.
         synchronized(this.messageQueue) {
-            this.messageQueue.add(beaconMessage);
-            // Wake up all threads that are waiting for incoming messages.
-            this.messageQueue.notifyAll();
+            if (offerBeaconMessage(beaconMessage)) {
+                // Wake up all threads that are waiting for incoming messages.
+                this.messageQueue.notifyAll();
+            }
         }
     }
 
+    private void pushBeaconMessages(List<BeaconMessage> beaconMessages) {
+        // The whole batch is added while holding the lock only once.
+        synchronized(this.messageQueue) {
+            boolean added = false;
+            for (int i = 0; i < beaconMessages.size(); i++) {
+                added |= offerBeaconMessage(beaconMessages.get(i));
+            }
+            if (added) {
+                // Wake up all threads that are waiting for incoming messages.
+                this.messageQueue.notifyAll();
+            }
+        }
+    }
+
+    // Must be called while holding the queue's monitor.
+    private boolean offerBeaconMessage(BeaconMessage beaconMessage) {
+        // Do not add the message to the queue, if the queue is full.
+        if (messageQueue.size() >= maximumSize) {
+            recordDroppedMessages(1);
+            return false;
+        }
+        if (messageQueue.isFull()) {
+            // Grow the buffer, but never beyond the maximum size.
+            int capacity = messageQueue.capacity();
+            int newCapacity = capacity > maximumSize / 2 ? maximumSize : capacity * 2;
+            messageQueue.resize(newCapacity);
+        }
+        return messageQueue.offer(beaconMessage);
+    }
+
+    /**
+     * Removes the oldest message from the queue. If the queue is empty, this method blocks until
+     * a message has been received.
+     * @return the oldest message.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
     public BeaconMessage pullBeaconMessage() throws InterruptedException {
         // Consumer of producer consumer pattern.
         synchronized (this.messageQueue) {
             while(messageQueue.isEmpty()) {
                 this.messageQueue.wait();
             }
-            BeaconMessage beaconMessage = messageQueue.get(0);
-            messageQueue.remove(0);
-            return beaconMessage;
+            return messageQueue.poll();
+        }
+    }
+
+    /**
+     * Removes the oldest message from the queue. If the queue is empty, this method waits at
+     * most the passed timeout until a message has been received.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of the timeout.
+     * @return the oldest message or null, if no message was received within the timeout.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public BeaconMessage pollBeaconMessage(long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remainingNanos;
+        synchronized (this.messageQueue) {
+            while (messageQueue.isEmpty()) {
+                if (remainingNanos <= 0) {
+                    return null;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this.messageQueue, remainingNanos);
+                remainingNanos = deadline - System.nanoTime();
+            }
+            return messageQueue.poll();
+        }
+    }
+
+    /**
+     * Removes at most maxMessages of the oldest messages from the queue and adds them to the
+     * collection. If the queue is empty, this method blocks until a message has been received.
+     * All messages are removed while holding the lock only once.
+     * @param collection The collection the messages are added to.
+     * @param maxMessages The maximum number of messages to be removed.
+     * @return the number of messages that were added to the collection.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public int pullBeaconMessages(Collection<? super BeaconMessage> collection, int maxMessages)
+            throws InterruptedException {
+        synchronized (this.messageQueue) {
+            while(messageQueue.isEmpty()) {
+                this.messageQueue.wait();
+            }
+            return messageQueue.drainTo(collection, maxMessages);
+        }
+    }
+
+    /**
+     * Removes at most maxMessages of the oldest messages from the queue and adds them to the
+     * collection. In contrast to {@link #pullBeaconMessages}, this method does not block.
+     * @param collection The collection the messages are added to.
+     * @param maxMessages The maximum number of messages to be removed.
+     * @return the number of messages that were added to the collection.
+     */
+    public int drainTo(Collection<? super BeaconMessage> collection, int maxMessages) {
+        synchronized (this.messageQueue) {
+            return messageQueue.drainTo(collection, maxMessages);
+        }
+    }
+
+    public int size() {
+        synchronized (this.messageQueue) {
+            return messageQueue.size();
         }
     }
 
     public void setMaximumSize(int maximumSize) {
-        this.maximumSize = maximumSize;
+        synchronized (this.messageQueue) {
+            this.maximumSize = maximumSize;
+        }
     }
 
     public int getMaximumSize() {
-        return maximumSize;
+        synchronized (this.messageQueue) {
+            return maximumSize;
+        }
     }
 }
@@ -0,0 +1,148 @@
+//
+//  BeaconMessageRingBuffer.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.streaming;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+
+import java.util.Collection;
+
+/**
+ * A beacon message ring buffer is a first-in-first-out queue of beacon messages with a fixed
+ * capacity. All slots are allocated on construction, so that adding and removing messages
+ * takes constant time and does not allocate any memory. The capacity can only be changed
+ * explicitly by calling {@link #resize}. This class is not thread-safe. Callers have to
+ * synchronize the access to an instance on their own.
+ */
+class BeaconMessageRingBuffer {
+
+    private BeaconMessage[] elements;
+    // Index of the oldest message.
+    private int head = 0;
+    private int size = 0;
+
+    BeaconMessageRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.elements = new BeaconMessage[capacity];
+    }
+
+    /**
+     * Appends the message to the end of the buffer.
+     * @param message The message to be added.
+     * @return false, if the buffer is full and the message was not added.
+     */
+    boolean offer(BeaconMessage message) {
+        if (isFull()) {
+            return false;
+        }
+        elements[physicalIndex(size)] = message;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the oldest message from the buffer.
+     * @return the oldest message or null, if the buffer is empty.
+     */
+    BeaconMessage poll() {
+        if (isEmpty()) {
+            return null;
+        }
+        BeaconMessage message = elements[head];
+        // Release the reference so that the message can be garbage collected.
+        elements[head] = null;
+        head = physicalIndex(1);
+        size--;
+        return message;
+    }
+
+    /**
+     * Removes at most maxMessages of the oldest messages and adds them to the collection.
+     * @return the number of messages that were transferred.
+     */
+    int drainTo(Collection<? super BeaconMessage> collection, int maxMessages) {
+        int count = Math.min(size, maxMessages);
+        for (int i = 0; i < count; i++) {
+            collection.add(poll());
+        }
+        return count;
+    }
+
+    BeaconMessage get(int index) {
+        return elements[physicalIndex(index)];
+    }
+
+    void set(int index, BeaconMessage message) {
+        elements[physicalIndex(index)] = message;
+    }
+
+    /**
+     * Changes the capacity of the buffer while preserving the order of the buffered messages.
+     * @param capacity The new capacity, which must not be smaller than the current size.
+     */
+    void resize(int capacity) {
+        if (capacity < size || capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive and not smaller than the size.");
+        }
+        BeaconMessage[] newElements = new BeaconMessage[capacity];
+        for (int i = 0; i < size; i++) {
+            newElements[i] = elements[physicalIndex(i)];
+        }
+        this.elements = newElements;
+        this.head = 0;
+    }
+
+    void clear() {
+        while (!isEmpty()) {
+            poll();
+        }
+        head = 0;
+    }
+
+    private int physicalIndex(int index) {
+        int physicalIndex = head + index;
+        if (physicalIndex >= elements.length) {
+            physicalIndex -= elements.length;
+        }
+        return physicalIndex;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean isFull() {
+        return size == elements.length;
+    }
+}
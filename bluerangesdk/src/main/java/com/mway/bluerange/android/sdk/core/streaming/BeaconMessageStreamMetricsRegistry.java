@@ -0,0 +1,96 @@
+//
+//  BeaconMessageStreamMetricsRegistry.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.streaming;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A metrics registry collects the metrics of named nodes of a message processing graph. While
+ * the registry is enabled, the metrics of all registered nodes are enabled, so that a snapshot of
+ * the whole graph can be taken by calling {@link #getSnapshot}. While the registry is disabled,
+ * no metrics are collected.
+ */
+public class BeaconMessageStreamMetricsRegistry {
+
+    private final Map<String, BeaconMessageStreamNode> nodes = new LinkedHashMap<>();
+    private boolean enabled = false;
+
+    /**
+     * Adds a node to the registry. A node that was registered with the same name is replaced.
+     * @param name The name the metrics of the node will be reported with.
+     * @param node The node.
+     */
+    public synchronized void register(String name, BeaconMessageStreamNode node) {
+        BeaconMessageStreamNode oldNode = nodes.put(name, node);
+        if (oldNode != null && oldNode != node) {
+            oldNode.setMetricsEnabled(false);
+        }
+        node.setMetricsEnabled(enabled);
+    }
+
+    public synchronized void unregister(String name) {
+        BeaconMessageStreamNode node = nodes.remove(name);
+        if (node != null) {
+            node.setMetricsEnabled(false);
+        }
+    }
+
+    /**
+     * Removes all nodes from the registry and disables their metrics.
+     */
+    public synchronized void clear() {
+        for (BeaconMessageStreamNode node : nodes.values()) {
+            node.setMetricsEnabled(false);
+        }
+        nodes.clear();
+    }
+
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        for (BeaconMessageStreamNode node : nodes.values()) {
+            node.setMetricsEnabled(enabled);
+        }
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the current metrics of all registered nodes in the order of registration.
+     * @return the snapshots by node name. The map is empty, if the registry is disabled.
+     */
+    public synchronized Map<String, BeaconMessageStreamNodeMetrics.Snapshot> getSnapshot() {
+        Map<String, BeaconMessageStreamNodeMetrics.Snapshot> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, BeaconMessageStreamNode> entry : nodes.entrySet()) {
+            BeaconMessageStreamNodeMetrics metrics = entry.getValue().getMetrics();
+            if (metrics != null) {
+                snapshot.put(entry.getKey(), metrics.getSnapshot());
+            }
+        }
+        return snapshot;
+    }
+}
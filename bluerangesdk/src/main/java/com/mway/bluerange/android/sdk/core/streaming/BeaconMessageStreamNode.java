@@ -25,20 +25,129 @@
 
 package com.mway.bluerange.android.sdk.core.streaming;
 
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This is the base class of all message processing elements. Each instance of this class can be
  * interpreted as a node in a message stream processing graph, which can receive messages from a
  * list of incoming edges and a can send the messages to all its receivers. By using this class
  * as a base class of all message processing elements, it is possible to combine all elements to a
- * flexible message processing architecture.
+ * flexible message processing architecture.<br>
+ *     The receivers are stored in an immutable array that is replaced whenever a receiver is
+ *     added or removed. Delivering a message to the receivers, therefore, requires neither
+ *     locking nor an iterator and it is safe to modify the receivers from any thread, while
+ *     messages are being delivered.<br>
+ *     Each node is able to receive batches of messages. By default, a batch is processed by
+ *     calling {@link #onReceivedMessage} for each message. Subclasses should override {@link
+ *     #onReceivedMessages}, if a batch can be processed more efficiently as a whole.<br>
+ *     A receiver can subscribe to a specific message type by calling {@link
+ *     #addReceiver(Class, BeaconMessageStreamNodeReceiver)}. It will then only receive messages
+ *     of this type. The receivers of each message class are looked up in a dispatch table, which
+ *     is computed whenever the receivers change for all message classes this node has sent so
+ *     far. Single messages and batches are both routed by this table.<br>
+ *     Metrics can be enabled for each node by calling {@link #setMetricsEnabled}. The messages a
+ *     node receives and the time it spends processing them are measured by its senders. As long
+ *     as the metrics of all nodes are disabled, delivering a message costs only one additional
+ *     volatile read.
  */
-public abstract class BeaconMessageStreamNode implements BeaconMessageStreamNodeReceiver {
+public abstract class BeaconMessageStreamNode implements BeaconMessageStreamNodeBatchReceiver {
+
+    private final List<BeaconMessageStreamNode> senders = new CopyOnWriteArrayList<>();
+    // Snapshot of all receivers. It is never modified after it has been published.
+    private volatile Subscriptions subscriptions = Subscriptions.EMPTY;
+    private final Object receiversLock = new Object();
+
+    // The number of nodes whose metrics are enabled.
+    private static final AtomicInteger instrumentedNodes = new AtomicInteger();
+    private volatile BeaconMessageStreamNodeMetrics metrics;
+    private final Object metricsLock = new Object();
+
+    /**
+     * An immutable list of receivers and the message types they subscribed to.
+     */
+    private static final class Subscriptions {
+
+        private static final Subscriptions EMPTY = new Subscriptions(
+                new BeaconMessageStreamNodeReceiver[0], new Class<?>[0],
+                Collections.<Class<?>>emptySet());
 
-    private List<BeaconMessageStreamNode> senders = new ArrayList<>();
-    private List<BeaconMessageStreamNodeReceiver> receivers = new ArrayList<>();
+        private final BeaconMessageStreamNodeReceiver[] receivers;
+        private final Class<?>[] messageTypes;
+        // False, if all receivers subscribed to all messages.
+        private final boolean typed;
+        // The indices of all receivers.
+        private final int[] allReceivers;
+        // Maps each message class to the indices of the receivers that subscribed to it.
+        private final ConcurrentHashMap<Class<?>, int[]> dispatchTable = new ConcurrentHashMap<>();
+
+        private Subscriptions(BeaconMessageStreamNodeReceiver[] receivers, Class<?>[] messageTypes,
+                              Set<Class<?>> knownMessageClasses) {
+            this.receivers = receivers;
+            this.messageTypes = messageTypes;
+            this.allReceivers = new int[receivers.length];
+            boolean typed = false;
+            for (int i = 0; i < receivers.length; i++) {
+                allReceivers[i] = i;
+                if (messageTypes[i] != BeaconMessage.class) {
+                    typed = true;
+                }
+            }
+            this.typed = typed;
+            if (typed) {
+                for (Class<?> messageType : messageTypes) {
+                    dispatchTable.put(messageType, computeRoute(messageType));
+                }
+                for (Class<?> messageClass : knownMessageClasses) {
+                    dispatchTable.put(messageClass, computeRoute(messageClass));
+                }
+            }
+        }
+
+        /**
+         * Creates a snapshot with other receivers, whose dispatch table already contains all
+         * message classes routed by this snapshot.
+         */
+        private Subscriptions withReceivers(BeaconMessageStreamNodeReceiver[] receivers,
+                                            Class<?>[] messageTypes) {
+            return new Subscriptions(receivers, messageTypes, dispatchTable.keySet());
+        }
+
+        private int[] computeRoute(Class<?> messageClass) {
+            int numberOfReceivers = 0;
+            int[] route = new int[receivers.length];
+            for (int i = 0; i < receivers.length; i++) {
+                if (messageTypes[i].isAssignableFrom(messageClass)) {
+                    route[numberOfReceivers++] = i;
+                }
+            }
+            return Arrays.copyOf(route, numberOfReceivers);
+        }
+
+        /**
+         * Returns the indices of the receivers that subscribed to the message class.
+         */
+        private int[] getRoute(Class<?> messageClass) {
+            if (!typed) {
+                return allReceivers;
+            }
+            int[] route = dispatchTable.get(messageClass);
+            if (route == null) {
+                // Only happens for the first message of a class that this node has never sent.
+                route = computeRoute(messageClass);
+                dispatchTable.put(messageClass, route);
+            }
+            return route;
+        }
+    }
 
     public BeaconMessageStreamNode() {
 
@@ -56,7 +165,7 @@ public abstract class BeaconMessageStreamNode implements BeaconMessageStreamNode
 
     public void addSender(BeaconMessageStreamNode sender) {
         // Add the this instance as a receiver to the sender.
-        sender.addReceiver(this);
+        sender.addReceiver(getReceivedMessageType(), this);
         // Add it to the list of senders.
         this.senders.add(sender);
     }
@@ -68,20 +177,319 @@ public abstract class BeaconMessageStreamNode implements BeaconMessageStreamNode
         this.senders.remove(sender);
     }
 
+    /**
+     * Connects this node to a sender in place of another node. The sender switches from the
+     * other node to this node in one step, so that each message it sends is received by exactly
+     * one of both nodes, even while messages are being delivered.
+     * @param sender A sender of the replaced node.
+     * @param replacedNode The node that is disconnected from the sender.
+     */
+    public void replaceSender(BeaconMessageStreamNode sender,
+                              BeaconMessageStreamNode replacedNode) {
+        sender.replaceReceiver(replacedNode, getReceivedMessageType(), this);
+        this.senders.add(sender);
+        replacedNode.senders.remove(sender);
+    }
+
     public List<BeaconMessageStreamNode> getSenders() {
         return this.senders;
     }
 
+    /**
+     * Returns the type of messages this node wants to receive from its senders. Subclasses that
+     * only process a specific message type should override this method, so that senders do not
+     * deliver other messages to them. This method is called while the senders are added, which
+     * may happen before the constructor of the subclass has completed.
+     * @return the message type, by default {@link BeaconMessage}.
+     */
+    public Class<? extends BeaconMessage> getReceivedMessageType() {
+        return BeaconMessage.class;
+    }
+
     public void addReceiver(BeaconMessageStreamNodeReceiver receiver) {
-        this.receivers.add(receiver);
+        addReceiver(BeaconMessage.class, receiver);
+    }
+
+    /**
+     * Adds a receiver that will only receive messages of the passed type and its subtypes.
+     * @param messageType The type of messages the receiver is interested in.
+     * @param receiver The receiver to be added.
+     */
+    public void addReceiver(Class<? extends BeaconMessage> messageType,
+                            BeaconMessageStreamNodeReceiver receiver) {
+        synchronized (receiversLock) {
+            Subscriptions oldSubscriptions = this.subscriptions;
+            int length = oldSubscriptions.receivers.length;
+            BeaconMessageStreamNodeReceiver[] newReceivers
+                    = Arrays.copyOf(oldSubscriptions.receivers, length + 1);
+            Class<?>[] newMessageTypes = Arrays.copyOf(oldSubscriptions.messageTypes, length + 1);
+            newReceivers[length] = receiver;
+            newMessageTypes[length] = messageType;
+            this.subscriptions = oldSubscriptions.withReceivers(newReceivers, newMessageTypes);
+        }
     }
 
     public void removeReceiver(BeaconMessageStreamNodeReceiver receiver) {
-        this.receivers.remove(receiver);
+        synchronized (receiversLock) {
+            Subscriptions oldSubscriptions = this.subscriptions;
+            int index = indexOfReceiver(oldSubscriptions.receivers, receiver);
+            if (index < 0) {
+                return;
+            }
+            int length = oldSubscriptions.receivers.length;
+            BeaconMessageStreamNodeReceiver[] newReceivers
+                    = new BeaconMessageStreamNodeReceiver[length - 1];
+            Class<?>[] newMessageTypes = new Class<?>[length - 1];
+            System.arraycopy(oldSubscriptions.receivers, 0, newReceivers, 0, index);
+            System.arraycopy(oldSubscriptions.receivers, index + 1, newReceivers, index,
+                    length - index - 1);
+            System.arraycopy(oldSubscriptions.messageTypes, 0, newMessageTypes, 0, index);
+            System.arraycopy(oldSubscriptions.messageTypes, index + 1, newMessageTypes, index,
+                    length - index - 1);
+            this.subscriptions = oldSubscriptions.withReceivers(newReceivers, newMessageTypes);
+        }
+    }
+
+    private void replaceReceiver(BeaconMessageStreamNodeReceiver oldReceiver,
+                                 Class<? extends BeaconMessage> messageType,
+                                 BeaconMessageStreamNodeReceiver newReceiver) {
+        synchronized (receiversLock) {
+            Subscriptions oldSubscriptions = this.subscriptions;
+            int index = indexOfReceiver(oldSubscriptions.receivers, oldReceiver);
+            if (index < 0) {
+                addReceiver(messageType, newReceiver);
+                return;
+            }
+            BeaconMessageStreamNodeReceiver[] newReceivers = oldSubscriptions.receivers.clone();
+            Class<?>[] newMessageTypes = oldSubscriptions.messageTypes.clone();
+            newReceivers[index] = newReceiver;
+            newMessageTypes[index] = messageType;
+            this.subscriptions = oldSubscriptions.withReceivers(newReceivers, newMessageTypes);
+        }
+    }
+
+    private static int indexOfReceiver(BeaconMessageStreamNodeReceiver[] receivers,
+                                       BeaconMessageStreamNodeReceiver receiver) {
+        for (int i = 0; i < receivers.length; i++) {
+            if (receivers[i] == null ? receiver == null : receivers[i].equals(receiver)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
+    /**
+     * Returns an unmodifiable snapshot of the receivers. Later modifications of the receivers
+     * will not be reflected by the returned list.
+     * @return the receivers of this node.
+     */
     public List<BeaconMessageStreamNodeReceiver> getReceivers() {
-        return receivers;
+        return Collections.unmodifiableList(Arrays.asList(subscriptions.receivers));
+    }
+
+    /**
+     * Enables or disables the metrics of this node. Enabling the metrics resets them.
+     * @param enabled true, if the metrics should be collected.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        synchronized (metricsLock) {
+            if (enabled && this.metrics == null) {
+                this.metrics = new BeaconMessageStreamNodeMetrics();
+                instrumentedNodes.incrementAndGet();
+            } else if (!enabled && this.metrics != null) {
+                this.metrics = null;
+                instrumentedNodes.decrementAndGet();
+            }
+        }
+    }
+
+    public boolean isMetricsEnabled() {
+        return this.metrics != null;
+    }
+
+    /**
+     * Returns the metrics of this node.
+     * @return the metrics or null, if the metrics are disabled.
+     */
+    public BeaconMessageStreamNodeMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Subclasses should call this method, whenever they drop messages, e.g. because a queue is
+     * full or a message did not pass a filter.
+     * @param numberOfMessages The number of dropped messages.
+     */
+    protected void recordDroppedMessages(int numberOfMessages) {
+        BeaconMessageStreamNodeMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordDroppedMessages(numberOfMessages);
+        }
+    }
+
+    private static BeaconMessageStreamNodeMetrics getMetricsOfReceiver(
+            BeaconMessageStreamNodeReceiver receiver) {
+        if (receiver instanceof BeaconMessageStreamNode) {
+            return ((BeaconMessageStreamNode) receiver).metrics;
+        }
+        return null;
+    }
+
+    /**
+     * Passes the message to all receivers of this node that subscribed to its type.
+     * @param message The message to be delivered.
+     */
+    protected void sendMessageToReceivers(BeaconMessage message) {
+        // Read the volatile field only once so that the loop works on a consistent snapshot.
+        Subscriptions subscriptions = this.subscriptions;
+        BeaconMessageStreamNodeReceiver[] receivers = subscriptions.receivers;
+        int[] route = subscriptions.getRoute(message.getClass());
+        if (instrumentedNodes.get() == 0) {
+            for (int i = 0; i < route.length; i++) {
+                receivers[route[i]].onReceivedMessage(this, message);
+            }
+            return;
+        }
+        BeaconMessageStreamNodeMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordSentMessages(1);
+        }
+        for (int i = 0; i < route.length; i++) {
+            BeaconMessageStreamNodeReceiver receiver = receivers[route[i]];
+            BeaconMessageStreamNodeMetrics receiverMetrics = getMetricsOfReceiver(receiver);
+            if (receiverMetrics == null) {
+                receiver.onReceivedMessage(this, message);
+            } else {
+                receiverMetrics.recordReceivedMessages(1);
+                long startTime = System.nanoTime();
+                receiver.onReceivedMessage(this, message);
+                receiverMetrics.recordLatency(System.nanoTime() - startTime);
+            }
+        }
+    }
+
+    /**
+     * Passes a batch of messages to all receivers of this node. Receivers implementing {@link
+     * BeaconMessageStreamNodeBatchReceiver} receive the whole batch at once, all other
+     * receivers receive the messages one by one. Receivers that subscribed to a specific
+     * message type only receive the messages of this type.
+     * @param messages The messages to be delivered.
+     */
+    protected void sendMessagesToReceivers(List<BeaconMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Subscriptions subscriptions = this.subscriptions;
+        BeaconMessageStreamNodeReceiver[] receivers = subscriptions.receivers;
+        BeaconMessageStreamNodeMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordSentMessages(messages.size());
+        }
+        Class<?> messageClass = getCommonMessageClass(messages);
+        if (messageClass != null) {
+            // All messages take the same route, so that the batch is passed on as a whole.
+            int[] route = subscriptions.getRoute(messageClass);
+            for (int i = 0; i < route.length; i++) {
+                sendMessagesToReceiver(receivers[route[i]], messages);
+            }
+            return;
+        }
+        // Split the batch along the routes of its messages. Receivers that subscribed to all
+        // messages receive the whole batch.
+        @SuppressWarnings("unchecked")
+        List<BeaconMessage>[] messagesOfReceivers = new List[receivers.length];
+        Class<?> routedClass = null;
+        int[] route = null;
+        for (int j = 0; j < messages.size(); j++) {
+            BeaconMessage message = messages.get(j);
+            if (message.getClass() != routedClass) {
+                routedClass = message.getClass();
+                route = subscriptions.getRoute(routedClass);
+            }
+            for (int i = 0; i < route.length; i++) {
+                int index = route[i];
+                if (subscriptions.messageTypes[index] == BeaconMessage.class) {
+                    continue;
+                }
+                if (messagesOfReceivers[index] == null) {
+                    messagesOfReceivers[index] = new ArrayList<>(messages.size() - j);
+                }
+                messagesOfReceivers[index].add(message);
+            }
+        }
+        for (int i = 0; i < receivers.length; i++) {
+            if (subscriptions.messageTypes[i] == BeaconMessage.class) {
+                sendMessagesToReceiver(receivers[i], messages);
+            } else if (messagesOfReceivers[i] != null) {
+                sendMessagesToReceiver(receivers[i], messagesOfReceivers[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the class of all messages or null, if the messages are of different classes.
+     */
+    private static Class<?> getCommonMessageClass(List<BeaconMessage> messages) {
+        Class<?> messageClass = messages.get(0).getClass();
+        for (int i = 1; i < messages.size(); i++) {
+            if (messages.get(i).getClass() != messageClass) {
+                return null;
+            }
+        }
+        return messageClass;
+    }
+
+    private void sendMessagesToReceiver(BeaconMessageStreamNodeReceiver receiver,
+                                        List<BeaconMessage> messages) {
+        BeaconMessageStreamNodeMetrics receiverMetrics
+                = instrumentedNodes.get() == 0 ? null : getMetricsOfReceiver(receiver);
+        if (receiverMetrics == null) {
+            deliverMessages(receiver, messages);
+        } else {
+            receiverMetrics.recordReceivedMessages(messages.size());
+            long startTime = System.nanoTime();
+            deliverMessages(receiver, messages);
+            receiverMetrics.recordLatency(System.nanoTime() - startTime);
+        }
+    }
+
+    private void deliverMessages(BeaconMessageStreamNodeReceiver receiver,
+                                 List<BeaconMessage> messages) {
+        if (receiver instanceof BeaconMessageStreamNodeBatchReceiver) {
+            ((BeaconMessageStreamNodeBatchReceiver) receiver).onReceivedMessages(this, messages);
+        } else {
+            for (int j = 0; j < messages.size(); j++) {
+                receiver.onReceivedMessage(this, messages.get(j));
+            }
+        }
+    }
+
+    /**
+     * Notifies all receivers of this node that the mesh has become active.
+     */
+    protected void sendMeshActiveToReceivers() {
+        BeaconMessageStreamNodeReceiver[] receivers = this.subscriptions.receivers;
+        for (int i = 0; i < receivers.length; i++) {
+            receivers[i].onMeshActive(this);
+        }
+    }
+
+    /**
+     * Notifies all receivers of this node that the mesh has become inactive.
+     */
+    protected void sendMeshInactiveToReceivers() {
+        BeaconMessageStreamNodeReceiver[] receivers = this.subscriptions.receivers;
+        for (int i = 0; i < receivers.length; i++) {
+            receivers[i].onMeshInactive(this);
+        }
+    }
+
+    @Override
+    public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+        // Default implementation processes the messages one by one.
+        for (int i = 0; i < messages.size(); i++) {
+            onReceivedMessage(senderNode, messages.get(i));
+        }
     }
 
     @Override
@@ -0,0 +1,47 @@
+//
+//  BeaconMessageStreamNodeBatchReceiver.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.streaming;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+
+import java.util.List;
+
+/**
+ * A receiver implementing this interface is able to receive several messages at once, e.g. all
+ * messages of a scan cycle. Senders deliver a batch of messages by calling the {@link
+ * #onReceivedMessages} method, instead of calling {@link #onReceivedMessage} for each message.
+ * This allows the receiver to acquire locks or to access the disk only once per batch. Receivers
+ * that only implement {@link BeaconMessageStreamNodeReceiver} will receive the messages one by
+ * one.
+ */
+public interface BeaconMessageStreamNodeBatchReceiver extends BeaconMessageStreamNodeReceiver {
+    /**
+     * Called when a sender delivers several messages at once. The list must not be modified or
+     * retained by the receiver.
+     * @param senderNode The node that sent the messages.
+     * @param messages The messages in the order they were received by the sender.
+     */
+    void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages);
+}
@@ -25,12 +25,23 @@
 
 package com.mway.bluerange.android.sdk.core.streaming;
 
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+
+import java.util.List;
+
 /**
- * This class implements the {@link BeaconMessageStreamNodeReceiver} interface and provides empty
- * implementations for the {@link #onMeshActive} and {@link #onMeshInactive} methods for
- * convenience.
+ * This class implements the {@link BeaconMessageStreamNodeBatchReceiver} interface and provides
+ * empty implementations for the {@link #onMeshActive} and {@link #onMeshInactive} methods for
+ * convenience. Batches of messages are passed to {@link #onReceivedMessage} one by one.
  */
-public abstract class BeaconMessageStreamNodeDefaultReceiver implements BeaconMessageStreamNodeReceiver {
+public abstract class BeaconMessageStreamNodeDefaultReceiver implements BeaconMessageStreamNodeBatchReceiver {
+    @Override
+    public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            onReceivedMessage(senderNode, messages.get(i));
+        }
+    }
+
     @Override
     public void onMeshActive(BeaconMessageStreamNode senderNode) {
 
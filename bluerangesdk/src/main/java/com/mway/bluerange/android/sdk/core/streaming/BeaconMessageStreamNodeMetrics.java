@@ -0,0 +1,171 @@
+//
+//  BeaconMessageStreamNodeMetrics.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.streaming;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics of a single {@link BeaconMessageStreamNode}. They count the messages the node has
+ * received, sent and dropped and record the time spent in the message handling methods of the
+ * node, including the time spent in all downstream nodes. The latencies are collected in a
+ * histogram with logarithmic buckets, where bucket i contains all latencies from 2^(i-1) ns up
+ * to 2^i - 1 ns. Batches of messages are recorded as one latency sample per batch.<br>
+ *     All methods are thread-safe. A consistent view of the metrics can be obtained by calling
+ *     {@link #getSnapshot}.
+ */
+public class BeaconMessageStreamNodeMetrics {
+
+    public static final int NUMBER_OF_LATENCY_BUCKETS = 64;
+
+    private final AtomicLong receivedMessages = new AtomicLong();
+    private final AtomicLong sentMessages = new AtomicLong();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(NUMBER_OF_LATENCY_BUCKETS);
+
+    /**
+     * An immutable copy of the metrics of a node at a specific point in time.
+     */
+    public static class Snapshot {
+        private final long receivedMessages;
+        private final long sentMessages;
+        private final long droppedMessages;
+        private final long[] latencyHistogram;
+
+        private Snapshot(long receivedMessages, long sentMessages, long droppedMessages,
+                         long[] latencyHistogram) {
+            this.receivedMessages = receivedMessages;
+            this.sentMessages = sentMessages;
+            this.droppedMessages = droppedMessages;
+            this.latencyHistogram = latencyHistogram;
+        }
+
+        public long getReceivedMessages() {
+            return receivedMessages;
+        }
+
+        public long getSentMessages() {
+            return sentMessages;
+        }
+
+        public long getDroppedMessages() {
+            return droppedMessages;
+        }
+
+        /**
+         * Returns a copy of the latency histogram.
+         */
+        public long[] getLatencyHistogram() {
+            return latencyHistogram.clone();
+        }
+
+        public long getNumberOfLatencySamples() {
+            long samples = 0;
+            for (long count : latencyHistogram) {
+                samples += count;
+            }
+            return samples;
+        }
+
+        /**
+         * Returns an upper bound of the latency below which the passed fraction of all samples
+         * lies. The result is exact up to the resolution of the histogram buckets.
+         * @param percentile A value between 0 and 1, e.g. 0.99 for the 99th percentile.
+         * @return the latency in nanoseconds or 0, if no samples were recorded.
+         */
+        public long getLatencyPercentileInNs(double percentile) {
+            long samples = getNumberOfLatencySamples();
+            if (samples == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile * samples);
+            long count = 0;
+            for (int bucket = 0; bucket < latencyHistogram.length; bucket++) {
+                count += latencyHistogram[bucket];
+                if (count >= Math.max(1, rank)) {
+                    return getBucketUpperBoundInNs(bucket);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return "received: " + receivedMessages
+                    + ", sent: " + sentMessages
+                    + ", dropped: " + droppedMessages
+                    + ", p50: " + getLatencyPercentileInNs(0.5) + " ns"
+                    + ", p99: " + getLatencyPercentileInNs(0.99) + " ns";
+        }
+    }
+
+    public void recordReceivedMessages(int numberOfMessages) {
+        receivedMessages.addAndGet(numberOfMessages);
+    }
+
+    public void recordSentMessages(int numberOfMessages) {
+        sentMessages.addAndGet(numberOfMessages);
+    }
+
+    public void recordDroppedMessages(int numberOfMessages) {
+        droppedMessages.addAndGet(numberOfMessages);
+    }
+
+    public void recordLatency(long latencyInNs) {
+        latencyHistogram.incrementAndGet(getBucket(latencyInNs));
+    }
+
+    static int getBucket(long latencyInNs) {
+        if (latencyInNs <= 0) {
+            return 0;
+        }
+        return Math.min(NUMBER_OF_LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(latencyInNs));
+    }
+
+    /**
+     * Returns the largest latency in nanoseconds that is counted in the passed bucket.
+     */
+    public static long getBucketUpperBoundInNs(int bucket) {
+        return bucket >= NUMBER_OF_LATENCY_BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    public Snapshot getSnapshot() {
+        long[] histogram = new long[NUMBER_OF_LATENCY_BUCKETS];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = latencyHistogram.get(i);
+        }
+        return new Snapshot(receivedMessages.get(), sentMessages.get(), droppedMessages.get(),
+                histogram);
+    }
+
+    public void reset() {
+        receivedMessages.set(0);
+        sentMessages.set(0);
+        droppedMessages.set(0);
+        for (int i = 0; i < NUMBER_OF_LATENCY_BUCKETS; i++) {
+            latencyHistogram.set(i, 0);
+        }
+    }
+}
@@ -32,7 +32,8 @@ import com.mway.bluerange.android.sdk.core.filtering.IBeaconMessageFilter;
 import com.mway.bluerange.android.sdk.core.filtering.RelutionTagMessageFilter;
 import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessagePassingStreamNode;
-import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageQueuedStreamNode;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageCoalescingQueuedStreamNode;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamMetricsRegistry;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
 
 import com.mway.bluerange.android.sdk.core.triggering.rules.RunningFlag;
@@ -55,10 +56,10 @@ import java.util.ListIterator;
  *     iteratively pulls messages out of. Each message is then mapped to an action using the
  *     action registry, which can e.g. call a remote webservice. If the registry is not currently
  *     available, the trigger mechanism waits until the registry has become available. In this
- *     time the message queue will in most cases accumulate a lot of messages. Since the queue,
- *     however, has a limited size, these situations will not result in a memory leak. The
- *     advantage of this strategy, however, is, that actions can be executed at a later time, e.g
- *     . when internet has become available.<br> Before an action will be executed, it has to
+ *     time the message queue will accumulate messages. Since the queue keeps only the newest
+ *     message of each beacon and has a limited size, these situations will not result in a
+ *     memory leak. The advantage of this strategy, however, is, that actions can be executed at
+ *     a later time, e.g. when internet has become available.<br> Before an action will be executed, it has to
  *     pass a sequence of checks, since actions can be equipped with different time and location
  *     based parameters. One of these parameters is a distance threshold. The action executor
  *     first transforms the RSSI value of the action initiating message to a distance value and
@@ -82,10 +83,14 @@ public class BeaconMessageActionTrigger extends BeaconMessagePassingStreamNode i
     private List<BeaconActionDebugListener> debugActionListeners = new ArrayList<>();
 
     // Sender nodes
+    private IBeaconMessageFilter iBeaconMessageFilter;
+    private RelutionTagMessageFilter relutionTagMessageFilter;
     private BeaconMessageAggregator aggregator;
-    private BeaconMessageQueuedStreamNode queueNode;
+    private BeaconMessageCoalescingQueuedStreamNode queueNode;
     // Queue should not exceed 10 thousand messages.
     public static final int DEFAULT_MAXIMUM_QUEUE_SIZE = 10 * 1024;
+    // Maximum number of messages taken from the queue at once.
+    private static final int MAXIMUM_MESSAGES_PER_PULL = 256;
 
     // Message processing
     private RunningFlag running;
@@ -134,13 +139,13 @@ public class BeaconMessageActionTrigger extends BeaconMessagePassingStreamNode i
         // tag messages will then be transformed to dense packets of iBeacon and Relution tag
         // messages, so that actions will only be triggered, when the same message is
         // received multiple times in a small amount of time.
-        IBeaconMessageFilter iBeaconMessageFilter = new IBeaconMessageFilter(senderNode);
-        RelutionTagMessageFilter relutionTagMessageFilter = new RelutionTagMessageFilter(senderNode);
+        this.iBeaconMessageFilter = new IBeaconMessageFilter(senderNode);
+        this.relutionTagMessageFilter = new RelutionTagMessageFilter(senderNode);
         List<BeaconMessageStreamNode> filters = new ArrayList<>();
         filters.add(iBeaconMessageFilter);
         filters.add(relutionTagMessageFilter);
         this.aggregator = new BeaconMessageAggregator(tracer, filters);
-        this.queueNode = new BeaconMessageQueuedStreamNode(filters);
+        this.queueNode = new BeaconMessageCoalescingQueuedStreamNode(filters);
         this.queueNode.setMaximumSize(DEFAULT_MAXIMUM_QUEUE_SIZE);
         this.addSender(queueNode);
 
@@ -175,36 +180,15 @@ public class BeaconMessageActionTrigger extends BeaconMessagePassingStreamNode i
 
     @Override
     public void run() {
+        List<BeaconMessage> messages = new ArrayList<>();
         try {
             while (running.isRunning()) {
-                // 1. Pull the next message from the message queue.
-                BeaconMessage message = queueNode.pullBeaconMessage();
-                try {
-                    // 2. Wait until the action registry is available for this message.
-                    waitUntilActionRegistryIsAvailableForMessage(message);
-                    // 3. Get beacon actions from action registry.
-                    List<BeaconAction> actions = actionRegistry.getBeaconActionsForMessage(message);
-                    // 4. Configure actions
-                    configureActions(actions);
-                    // 5. Execute the actions if not expired
-                    executeActions(actions);
-                } catch (BeaconActionRegistry.UnsupportedMessageException e) {
-                    // We just skip messages that cannot be mapped to actions.
-                    tracer.logWarning(LOG_TAG, "Skipped action, because message is not supported!");
-                } catch (BeaconActionRegistry.RegistryNotAvailableException e) {
-                    // If the registry is not available the triggering
-                    // mechanism should not lead to an overflowing message queue.
-                    // Therefore, we discard these messages.
-                    tracer.logWarning(LOG_TAG, "Skipped action, because registry is currently not available!");
-                } catch (Throwable throwable) {
-                    // Log the unexpected exception and continue with the next action.
-                    if (!(throwable instanceof InterruptedException)) {
-                        tracer.logError(LOG_TAG, "Unexpected action!");
-                    } else {
-                        // Rethrow the interrupted exception.
-                        throw throwable;
-                    }
+                // 1. Pull all pending messages from the message queue at once.
+                queueNode.pullBeaconMessages(messages, MAXIMUM_MESSAGES_PER_PULL);
+                for (int i = 0; i < messages.size() && running.isRunning(); i++) {
+                    processMessage(messages.get(i));
                 }
+                messages.clear();
             }
         } catch (InterruptedException e) {
             // If an interrupt is thrown when we wait for the next
@@ -212,6 +196,33 @@ public class BeaconMessageActionTrigger extends BeaconMessagePassingStreamNode i
         }
     }
 
+    private void processMessage(BeaconMessage message) throws InterruptedException {
+        try {
+            // 2. Wait until the action registry is available for this message.
+            waitUntilActionRegistryIsAvailableForMessage(message);
+            // 3. Get beacon actions from action registry.
+            List<BeaconAction> actions = actionRegistry.getBeaconActionsForMessage(message);
+            // 4. Configure actions
+            configureActions(actions);
+            // 5. Execute the actions if not expired
+            executeActions(actions);
+        } catch (BeaconActionRegistry.UnsupportedMessageException e) {
+            // We just skip messages that cannot be mapped to actions.
+            tracer.logWarning(LOG_TAG, "Skipped action, because message is not supported!");
+        } catch (BeaconActionRegistry.RegistryNotAvailableException e) {
+            // If the registry is not available the triggering
+            // mechanism should not lead to an overflowing message queue.
+            // Therefore, we discard these messages.
+            tracer.logWarning(LOG_TAG, "Skipped action, because registry is currently not available!");
+        } catch (InterruptedException e) {
+            // Rethrow the interrupted exception.
+            throw e;
+        } catch (Throwable throwable) {
+            // Log the unexpected exception and continue with the next action.
+            tracer.logError(LOG_TAG, "Unexpected action!");
+        }
+    }
+
     private void waitUntilActionRegistryIsAvailableForMessage(BeaconMessage message)
             throws InterruptedException, BeaconActionRegistry.UnsupportedMessageException {
         while (!actionRegistry.isAvailable(message)) {
@@ -381,6 +392,20 @@ public class BeaconMessageActionTrigger extends BeaconMessagePassingStreamNode i
         this.distanceEstimator = distanceEstimator;
     }
 
+    // Metrics
+
+    /**
+     * Registers all nodes of this trigger, so that their metrics are reported.
+     * @param namePrefix The prefix of the names the nodes are registered with.
+     */
+    public void registerMetrics(BeaconMessageStreamMetricsRegistry registry, String namePrefix) {
+        registry.register(namePrefix + "iBeaconFilter", iBeaconMessageFilter);
+        registry.register(namePrefix + "relutionTagFilter", relutionTagMessageFilter);
+        registry.register(namePrefix + "aggregator", aggregator);
+        registry.register(namePrefix + "queue", queueNode);
+        registry.register(namePrefix + "trigger", this);
+    }
+
     // Aggregator
     public BeaconMessageAggregator getAggregator() {
         return aggregator;
@@ -34,7 +34,9 @@ import com.mway.bluerange.android.sdk.core.scanning.BeaconMessageScannerSimulato
 import com.mway.bluerange.android.sdk.core.scanning.IBeaconMessageScanner;
 import com.mway.bluerange.android.sdk.core.scanning.messages.IBeacon;
 import com.mway.bluerange.android.sdk.core.scanning.messages.RelutionTagMessageV1;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamMetricsRegistry;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeMetrics;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeDefaultReceiver;
 import com.mway.bluerange.android.sdk.core.triggering.BeaconAction;
 import com.mway.bluerange.android.sdk.core.triggering.BeaconActionDebugListener;
@@ -58,6 +60,7 @@ import com.mway.bluerange.android.sdk.utils.logging.Tracer;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This service class unites all features that are currently supported by the SDK and provides an
@@ -86,6 +89,8 @@ public class RelutionIoTService extends BlueRangeService {
     private static RelutionTagInfoRegistry relutionTagInfoRegistry;
     private static BeaconTrigger policyTrigger;
     private static RelutionHeatmapService heatmapService;
+    private static BeaconMessageStreamMetricsRegistry metricsRegistry
+            = new BeaconMessageStreamMetricsRegistry();
 
     // Login observer
     private static List<LoginObserver> loginObservers = new ArrayList<>();
@@ -320,6 +325,19 @@ public class RelutionIoTService extends BlueRangeService {
         return this;
     }
 
+    /**
+     * Enables/disables collecting metrics of the message processing components, e.g. the number
+     * of processed messages and the processing latency. The metrics can be read by calling
+     * {@link #getMetricsSnapshot}. Disabling metrics might increase the performance of your app.
+     * @param enabled true, if metrics should be collected.
+     * @return The same instance of this class.
+     */
+    public RelutionIoTService setMetricsEnabled(boolean enabled) {
+        RelutionIoTServiceConfig.metricsEnabled = enabled;
+        metricsRegistry.setEnabled(enabled);
+        return this;
+    }
+
     @Override
     protected void onStarted() {
         try {
@@ -327,6 +345,7 @@ public class RelutionIoTService extends BlueRangeService {
                 stopWithoutRemovingObservers();
             }
             initTracing();
+            initMetrics();
             login();
             publishLoginSucceeded();
             //scanner = createScannerSimulator();
@@ -350,6 +369,10 @@ public class RelutionIoTService extends BlueRangeService {
         return running;
     }
 
+    private void initMetrics() {
+        metricsRegistry.setEnabled(RelutionIoTServiceConfig.metricsEnabled);
+    }
+
     private void login() throws RelutionImpl.RelutionException, RelutionImpl.LoginException {
         if (RelutionIoTServiceConfig.offlineMode) {
             relution = new RelutionStub();
@@ -407,6 +430,7 @@ public class RelutionIoTService extends BlueRangeService {
         //scanner.setRepeatInterval(20000l);
         scanner.setRepeatInterval(500l);
         scanner.addRssiNoise();
+        metricsRegistry.register("scanner", scanner);
         scanner.addReceiver(new BeaconMessageStreamNodeDefaultReceiver() {
             @Override
             public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
@@ -418,20 +442,25 @@ public class RelutionIoTService extends BlueRangeService {
 
     private IBeaconMessageScanner createScanner() {
         final BeaconMessageScanner scanner = new BeaconMessageScanner(this.getContext());
+        metricsRegistry.register("scanner", scanner);
         scanner.addReceiver(new BeaconMessageStreamNodeDefaultReceiver() {
             @Override
             public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage
                     message) {
                 // Publish all messages
                 publishBeacons(message);
-
-                // Publish Relution Tag messages
-                if (message instanceof RelutionTagMessageV1) {
-                    RelutionTagMessageV1 relutionTagMessage = (RelutionTagMessageV1) message;
-                    List<Long> tags = relutionTagMessage.getTags();
-                    for (long tag : tags) {
-                        publishRelutionTag(tag, relutionTagMessage);
-                    }
+            }
+        });
+        // Publish Relution Tag messages. The scanner only delivers Relution Tag messages to
+        // this receiver.
+        scanner.addReceiver(RelutionTagMessageV1.class, new BeaconMessageStreamNodeDefaultReceiver() {
+            @Override
+            public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage
+                    message) {
+                RelutionTagMessageV1 relutionTagMessage = (RelutionTagMessageV1) message;
+                List<Long> tags = relutionTagMessage.getTags();
+                for (long tag : tags) {
+                    publishRelutionTag(tag, relutionTagMessage);
                 }
             }
         });
@@ -494,6 +523,7 @@ public class RelutionIoTService extends BlueRangeService {
                             RelutionIoTServiceConfig.reporterTimeBetweenStatusReportsInMs,
                             RelutionIoTServiceConfig.reporterPollingTimeToWaitForReceiverInMs);
             heatmapService.start();
+            heatmapService.registerMetrics(metricsRegistry, "heatmap.");
         }
     }
 
@@ -550,6 +580,7 @@ public class RelutionIoTService extends BlueRangeService {
 
                 }
             });
+            relutionCampaignService.registerMetrics(metricsRegistry, "campaigns.");
             relutionCampaignService.start();
         }
     }
@@ -557,6 +588,7 @@ public class RelutionIoTService extends BlueRangeService {
     private void startPolicyTrigger(IBeaconMessageScanner scanner) {
         if (RelutionIoTServiceConfig.policyTriggerEnabled) {
             policyTrigger = new BeaconTrigger(tracer, scanner, getContext());
+            policyTrigger.registerMetrics(metricsRegistry, "policyTrigger.");
             policyTrigger.addRelutionTagTrigger(1L);
             policyTrigger.addRelutionTagTrigger(2L);
             policyTrigger.addRelutionTagTrigger(3L);
@@ -775,6 +807,8 @@ public class RelutionIoTService extends BlueRangeService {
         stopPolicyTrigger();
         stopTrigger();
         stopReporter();
+        // The nodes of the next start are registered again.
+        metricsRegistry.clear();
     }
 
     private void removeObservers() {
@@ -833,4 +867,20 @@ public class RelutionIoTService extends BlueRangeService {
     public static IBeaconMessageScanner getScanner() {
         return scanner;
     }
+
+    /**
+     * Returns the registry containing the metrics of the message processing components. Apps
+     * may register their own message processing nodes to include them in the snapshots.
+     */
+    public static BeaconMessageStreamMetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * Returns the current metrics of all registered message processing components.
+     * @return the metrics by component name or an empty map, if metrics are disabled.
+     */
+    public static Map<String, BeaconMessageStreamNodeMetrics.Snapshot> getMetricsSnapshot() {
+        return metricsRegistry.getSnapshot();
+    }
 }
@@ -46,6 +46,7 @@ public class RelutionIoTServiceConfig {
     static boolean sendingAnalyticsDataEnabled = true;
     static boolean policyTriggerEnabled = true;
     static boolean relutionTagObservingEnabled = true;
+    static boolean metricsEnabled = false;
 
     // Scanner
     static long scanPeriodInMillis = 500L;
@@ -33,6 +33,7 @@ import com.mway.bluerange.android.sdk.core.reporting.BeaconMessageReporter;
 import com.mway.bluerange.android.sdk.core.scanning.BeaconMessageScannerConfig;
 import com.mway.bluerange.android.sdk.core.reporting.BeaconMessageReportSender;
 import com.mway.bluerange.android.sdk.core.scanning.IBeaconMessageScanner;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamMetricsRegistry;
 import com.mway.bluerange.android.sdk.services.relution.Relution;
 
 import org.json.JSONObject;
@@ -128,6 +129,16 @@ public class RelutionHeatmapService {
         reporter.startReporting();
     }
 
+    /**
+     * Registers the logger and the reporter, so that their metrics are reported. Must be called
+     * after {@link #start()}, since the nodes are created when the service is started.
+     * @param namePrefix The prefix of the names the nodes are registered with.
+     */
+    public void registerMetrics(BeaconMessageStreamMetricsRegistry registry, String namePrefix) {
+        registry.register(namePrefix + "logger", logger);
+        registry.register(namePrefix + "reporter", reporter);
+    }
+
     private void configureBeaconScanner() {
         BeaconMessageScannerConfig config = scanner.getConfig();
         config.scanJoinMeMessage();
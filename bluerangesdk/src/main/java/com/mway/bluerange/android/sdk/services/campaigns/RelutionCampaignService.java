@@ -29,6 +29,7 @@ import android.content.Context;
 
 import com.mway.bluerange.android.sdk.core.scanning.BeaconMessageScannerConfig;
 import com.mway.bluerange.android.sdk.core.scanning.IBeaconMessageScanner;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamMetricsRegistry;
 import com.mway.bluerange.android.sdk.core.triggering.BeaconActionDebugListener;
 import com.mway.bluerange.android.sdk.core.triggering.BeaconActionListener;
 import com.mway.bluerange.android.sdk.core.triggering.BeaconMessageActionTrigger;
@@ -118,6 +119,11 @@ public class RelutionCampaignService {
         trigger.addDebugActionListener(listener);
     }
 
+    // Metrics
+    public void registerMetrics(BeaconMessageStreamMetricsRegistry registry, String namePrefix) {
+        trigger.registerMetrics(registry, namePrefix);
+    }
+
     public void stop() {
         stopTrigger();
     }
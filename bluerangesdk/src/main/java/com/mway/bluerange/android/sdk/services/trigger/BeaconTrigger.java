@@ -36,6 +36,7 @@ import java.util.UUID;
 
 import com.mway.bluerange.android.sdk.core.aggregating.BeaconMessageAggregator;
 import com.mway.bluerange.android.sdk.core.distancing.DistanceEstimator;
+import com.mway.bluerange.android.sdk.core.distancing.DistanceEstimators;
 import com.mway.bluerange.android.sdk.core.distancing.ModelSpecificDistanceCalculator;
 import com.mway.bluerange.android.sdk.core.filtering.BeaconMessageFilter;
 import com.mway.bluerange.android.sdk.core.scanning.BeaconMessageScannerConfig;
@@ -45,6 +46,7 @@ import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 import com.mway.bluerange.android.sdk.core.scanning.messages.IBeacon;
 import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
 import com.mway.bluerange.android.sdk.core.scanning.messages.RelutionTagMessageV1;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamMetricsRegistry;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeDefaultReceiver;
 import com.mway.bluerange.android.sdk.utils.logging.ITracer;
@@ -136,6 +138,12 @@ public class BeaconTrigger {
                     message) {
                 onUpdateMessage(message);
             }
+
+            @Override
+            public void onReceivedMessages(BeaconMessageStreamNode senderNode,
+                                           List<BeaconMessage> messages) {
+                onUpdateMessages(messages);
+            }
         });
     }
 
@@ -147,6 +155,14 @@ public class BeaconTrigger {
         }
     }
 
+    /**
+     * Registers the aggregator of this trigger, so that its metrics are reported.
+     * @param namePrefix The prefix of the name the aggregator is registered with.
+     */
+    public void registerMetrics(BeaconMessageStreamMetricsRegistry registry, String namePrefix) {
+        registry.register(namePrefix + "aggregator", aggregator);
+    }
+
     private void initScanner(IBeaconMessageScanner scanner) {
         this.scanner = scanner;
     }
@@ -160,22 +176,48 @@ public class BeaconTrigger {
     }
 
     private void onUpdateMessage(BeaconMessage message) {
+        if (isTriggeringMessage(message)) {
+            updateMessage(message, estimateDistanceInMeters(message));
+        }
+    }
+
+    private void onUpdateMessages(List<BeaconMessage> messages) {
+        List<BeaconMessage> triggeringMessages = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            if (isTriggeringMessage(messages.get(i))) {
+                triggeringMessages.add(messages.get(i));
+            }
+        }
+        // The distances of all messages are estimated at once.
+        int numberOfMessages = triggeringMessages.size();
+        float[] rssis = new float[numberOfMessages];
+        float[] txPowers = new float[numberOfMessages];
+        float[] distancesInMeters = new float[numberOfMessages];
+        for (int i = 0; i < numberOfMessages; i++) {
+            rssis[i] = triggeringMessages.get(i).getRssi();
+            txPowers[i] = TX_POWER;
+        }
+        DistanceEstimators.getDistancesInMetres(
+                distanceEstimator, rssis, txPowers, distancesInMeters, numberOfMessages);
+        for (int i = 0; i < numberOfMessages; i++) {
+            updateMessage(triggeringMessages.get(i), distancesInMeters[i]);
+        }
+    }
+
+    private boolean isTriggeringMessage(BeaconMessage message) {
         if (message instanceof RelutionTagMessageV1) {
             RelutionTagMessageV1 relutionTagMessage = (RelutionTagMessageV1)message;
-            if (relutionTagMessageContainsAtLeastOneMatchingTag(relutionTagMessage, allowedRelutionTags)) {
-                updateMessage(message);
-            }
+            return relutionTagMessageContainsAtLeastOneMatchingTag(relutionTagMessage, allowedRelutionTags);
         } else if (message instanceof IBeaconMessage) {
             IBeaconMessage iBeaconMessage = (IBeaconMessage) message;
-            if (existsTriggeringIBeacon(iBeaconMessage, allowedIBeacons)) {
-                updateMessage(message);
-            }
+            return existsTriggeringIBeacon(iBeaconMessage, allowedIBeacons);
         } else if (message instanceof BeaconJoinMeMessage) {
             /*BeaconJoinMeMessage joinMeMessage = (BeaconJoinMeMessage)message;
             if (joinMeMessage.getNodeId() == 98) {
-                updateMessage(message);
+                return true;
             }*/
         }
+        return false;
     }
 
     private boolean relutionTagMessageContainsAtLeastOneMatchingTag(
@@ -201,9 +243,7 @@ public class BeaconTrigger {
         return false;
     }
 
-    private void updateMessage(BeaconMessage message) {
-        float distanceInMeters = estimateDistanceInMeters(message);
-
+    private void updateMessage(BeaconMessage message, float distanceInMeters) {
         // Save distance
         updateDistance(message, distanceInMeters);
         updateTimestamp(message);
@@ -407,6 +447,27 @@ public class BeaconTrigger {
         return this.aggregator.getAggregateDurationInMs();
     }
 
+    /**
+     * In sliding window mode, a beacon is only reevaluated, if its averaged RSSI changed by at
+     * least this value or if the maximum silence interval has elapsed. If an inactivation
+     * duration is used, the maximum silence interval should be shorter than this duration.
+     */
+    public void setMinimumRssiChange(float minimumRssiChange) {
+        this.aggregator.setMinimumRssiChange(minimumRssiChange);
+    }
+
+    public float getMinimumRssiChange() {
+        return this.aggregator.getMinimumRssiChange();
+    }
+
+    public void setMaximumSilenceIntervalInMs(long maximumSilenceIntervalInMs) {
+        this.aggregator.setMaximumSilenceIntervalInMs(maximumSilenceIntervalInMs);
+    }
+
+    public long getMaximumSilenceIntervalInMs() {
+        return this.aggregator.getMaximumSilenceIntervalInMs();
+    }
+
     public void setReactionMode(ReactionMode reactionMode) {
         if (reactionMode == ReactionMode.SLIDING_WINDOW) {
             this.aggregator.setAggregationMode(BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
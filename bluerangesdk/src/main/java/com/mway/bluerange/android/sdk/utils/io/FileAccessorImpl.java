@@ -27,7 +27,9 @@ package com.mway.bluerange.android.sdk.utils.io;
 
 import android.content.Context;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
@@ -36,7 +38,7 @@ import java.util.List;
 /**
  *
  */
-public class FileAccessorImpl implements FileAccessor {
+public class FileAccessorImpl implements RenamingFileAccessor {
 
     private static final String kLogTag = "DefaultFileAccessor";
     private Context context;
@@ -64,4 +66,13 @@ public class FileAccessorImpl implements FileAccessor {
     public void deleteFile(String fileName) {
         this.context.deleteFile(fileName);
     }
+
+    @Override
+    public void renameFile(String oldFileName, String newFileName) throws IOException {
+        File oldFile = this.context.getFileStreamPath(oldFileName);
+        File newFile = this.context.getFileStreamPath(newFileName);
+        if (!oldFile.renameTo(newFile)) {
+            throw new IOException("Could not rename " + oldFileName + " to " + newFileName);
+        }
+    }
 }
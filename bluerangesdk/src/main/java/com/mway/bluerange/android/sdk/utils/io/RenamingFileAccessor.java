@@ -0,0 +1,36 @@
+//
+//  RenamingFileAccessor.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.utils.io;
+
+import java.io.IOException;
+
+/**
+ * A file accessor that can also rename files. Renaming replaces an existing file with the same
+ * name, so that a file can be written to a temporary file first and then replace the old file
+ * in one step.
+ */
+public interface RenamingFileAccessor extends FileAccessor {
+    void renameFile(String oldFileName, String newFileName) throws IOException;
+}
@@ -0,0 +1,226 @@
+//
+//  HashSlotTable.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.utils.structs;
+
+import java.util.Arrays;
+
+/**
+ * A hash slot table assigns a stable slot number to each distinct key, where keys are compared
+ * by using {@link Object#equals} and {@link Object#hashCode}. A slot number stays valid until the
+ * key is removed, even if the table grows. Callers can, therefore, store per-key state in
+ * primitive arrays indexed by slot number instead of allocating an object for each key. These
+ * arrays have to be at least as large as {@link #capacity()}, which changes only when a key is
+ * added.<br>
+ *     Internally, the keys are found by open addressing with linear probing. This class is not
+ *     thread-safe.
+ */
+public class HashSlotTable<K> {
+
+    private static final int EMPTY = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Per slot
+    private Object[] keys;
+    private int[] hashes;
+    // Unused slots below the high water mark.
+    private int[] freeSlots;
+    private int numberOfFreeSlots = 0;
+    private int highWaterMark = 0;
+    // Maps hash buckets to slots. Its length is a power of two and at least twice the capacity.
+    private int[] buckets;
+    private int size = 0;
+
+    public HashSlotTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public HashSlotTable(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.keys = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.freeSlots = new int[capacity];
+        this.buckets = createBuckets(capacity);
+    }
+
+    private static int[] createBuckets(int capacity) {
+        int numberOfBuckets = Integer.highestOneBit(capacity) << 2;
+        int[] buckets = new int[numberOfBuckets];
+        Arrays.fill(buckets, EMPTY);
+        return buckets;
+    }
+
+    private static int spread(int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    /**
+     * Returns the slot of the key.
+     * @return the slot or -1, if the key is not contained.
+     */
+    public int getSlot(K key) {
+        int bucket = findBucket(key, spread(key.hashCode()));
+        return bucket == EMPTY ? EMPTY : buckets[bucket];
+    }
+
+    /**
+     * Returns the slot of the key and adds the key, if it is not contained yet.
+     * @return the slot of the key.
+     */
+    public int addKey(K key) {
+        int hash = spread(key.hashCode());
+        int bucket = findBucket(key, hash);
+        if (bucket != EMPTY) {
+            return buckets[bucket];
+        }
+        if (numberOfFreeSlots == 0 && highWaterMark == keys.length) {
+            grow();
+        }
+        int slot = numberOfFreeSlots > 0 ? freeSlots[--numberOfFreeSlots] : highWaterMark++;
+        keys[slot] = key;
+        hashes[slot] = hash;
+        insertIntoBuckets(slot);
+        size++;
+        return slot;
+    }
+
+    /**
+     * Removes the key from the table.
+     * @return the slot the key was assigned to or -1, if the key was not contained.
+     */
+    public int removeKey(K key) {
+        int bucket = findBucket(key, spread(key.hashCode()));
+        if (bucket == EMPTY) {
+            return EMPTY;
+        }
+        int slot = buckets[bucket];
+        removeFromBuckets(bucket);
+        keys[slot] = null;
+        freeSlots[numberOfFreeSlots++] = slot;
+        size--;
+        return slot;
+    }
+
+    /**
+     * Removes the key of the passed slot from the table.
+     */
+    @SuppressWarnings("unchecked")
+    public void removeSlot(int slot) {
+        if (keys[slot] != null) {
+            removeKey((K) keys[slot]);
+        }
+    }
+
+    /**
+     * Returns the key of a slot.
+     * @return the key or null, if the slot is unused.
+     */
+    @SuppressWarnings("unchecked")
+    public K getKey(int slot) {
+        return (K) keys[slot];
+    }
+
+    /**
+     * Returns an exclusive upper bound of all slots currently in use. Iterating from 0 up to this
+     * value and skipping unused slots visits all keys.
+     */
+    public int getSlotLimit() {
+        return highWaterMark;
+    }
+
+    /**
+     * Returns the number of slots. Arrays indexed by slot must have at least this length.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(buckets, EMPTY);
+        numberOfFreeSlots = 0;
+        highWaterMark = 0;
+        size = 0;
+    }
+
+    private int findBucket(Object key, int hash) {
+        int mask = buckets.length - 1;
+        int bucket = hash & mask;
+        while (buckets[bucket] != EMPTY) {
+            int slot = buckets[bucket];
+            if (hashes[slot] == hash && keys[slot].equals(key)) {
+                return bucket;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    private void insertIntoBuckets(int slot) {
+        int mask = buckets.length - 1;
+        int bucket = hashes[slot] & mask;
+        while (buckets[bucket] != EMPTY) {
+            bucket = (bucket + 1) & mask;
+        }
+        buckets[bucket] = slot;
+    }
+
+    private void removeFromBuckets(int bucket) {
+        // Move following entries back, so that no entry becomes unreachable.
+        int mask = buckets.length - 1;
+        int gap = bucket;
+        int next = (gap + 1) & mask;
+        while (buckets[next] != EMPTY) {
+            int home = hashes[buckets[next]] & mask;
+            // An entry can be moved into the gap, if its home bucket
+            // is not located cyclically between the gap and the entry.
+            boolean homeBetweenGapAndNext = gap <= next
+                    ? (gap < home && home <= next)
+                    : (gap < home || home <= next);
+            if (!homeBetweenGapAndNext) {
+                buckets[gap] = buckets[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        buckets[gap] = EMPTY;
+    }
+
+    private void grow() {
+        int capacity = keys.length * 2;
+        this.keys = Arrays.copyOf(keys, capacity);
+        this.hashes = Arrays.copyOf(hashes, capacity);
+        this.freeSlots = Arrays.copyOf(freeSlots, capacity);
+        this.buckets = createBuckets(capacity);
+        for (int slot = 0; slot < highWaterMark; slot++) {
+            if (keys[slot] != null) {
+                insertIntoBuckets(slot);
+            }
+        }
+    }
+}
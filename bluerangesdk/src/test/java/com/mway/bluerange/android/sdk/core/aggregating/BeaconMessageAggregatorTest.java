@@ -30,18 +30,29 @@ import com.mway.bluerange.android.sdk.helper.TestBlocker;
 import com.mway.bluerange.android.sdk.core.aggregating.averaging.SimpleMovingAverageFilter;
 import com.mway.bluerange.android.sdk.core.scanning.BeaconMessageScannerSimulator;
 import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeDefaultReceiver;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeReceiver;
 import com.mway.bluerange.android.sdk.utils.logging.ITracer;
 
 import junit.framework.Assert;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class BeaconMessageAggregatorTest {
 
     private ITracer tracer;
@@ -64,6 +75,11 @@ public class BeaconMessageAggregatorTest {
         testBlocker = new TestBlocker();
     }
 
+    @After
+    public void tearDown() {
+        aggregator.stop();
+    }
+
     @Test
     public void testOneIncomingMessageShouldResultInOneAggregate() {
         simulator.simulateIBeaconWithRssi("b9407f30-f5f8-466e-aff9-25556b57fe6d", 1, 1, -50);
@@ -150,4 +166,432 @@ public class BeaconMessageAggregatorTest {
         Assert.assertEquals(-50, argument.getAllValues().get(0).getRssi());
         Assert.assertEquals(-55, argument.getAllValues().get(1).getRssi());
     }
+
+    @Test
+    public void testSmallRssiChangesShouldNotBePublished() {
+        aggregator.setAggregationMode(BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        aggregator.setAggregateDurationInMs(60 * 1000);
+        aggregator.setMinimumRssiChange(5);
+        long time = System.currentTimeMillis();
+        int[] rssis = new int[]{-60, -61, -59, -62, -60, -90};
+        for (int i = 0; i < rssis.length; i++) {
+            BeaconMessage message = createMessage(0, time + i);
+            message.setRssi(rssis[i]);
+            aggregator.onReceivedMessage(null, message);
+        }
+
+        // Only the first message and the outlier, which moves the average to -65, are published.
+        ArgumentCaptor<BeaconMessage> argument = ArgumentCaptor.forClass(BeaconMessage.class);
+        Mockito.verify(receiver, Mockito.times(2)).onReceivedMessage(
+                Mockito.any(BeaconMessageStreamNode.class), argument.capture());
+        Assert.assertEquals(-60, argument.getAllValues().get(0).getRssi());
+        Assert.assertEquals(-65, argument.getAllValues().get(1).getRssi());
+    }
+
+    @Test
+    public void testMessageShouldBePublishedAfterMaximumSilenceInterval() {
+        aggregator.setAggregationMode(BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        aggregator.setAggregateDurationInMs(60 * 1000);
+        aggregator.setMinimumRssiChange(5);
+        aggregator.setMaximumSilenceIntervalInMs(1000);
+        long time = System.currentTimeMillis();
+        for (int i = 0; i <= 10; i++) {
+            aggregator.onReceivedMessage(null, createMessage(0, time + i * 250));
+        }
+
+        // Published at 0, 1000 and 2000 ms.
+        Mockito.verify(receiver, Mockito.times(3)).onReceivedMessage(
+                Mockito.any(BeaconMessageStreamNode.class), Mockito.any(BeaconMessage.class));
+    }
+
+    @Test
+    public void testAggregatedMessagesShouldBeClonedByDefault() {
+        aggregator.setAggregationMode(BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        long time = System.currentTimeMillis();
+        aggregator.onReceivedMessage(null, createMessage(0, time));
+        aggregator.onReceivedMessage(null, createMessage(0, time + 1));
+
+        ArgumentCaptor<BeaconMessage> argument = ArgumentCaptor.forClass(BeaconMessage.class);
+        Mockito.verify(receiver, Mockito.times(2)).onReceivedMessage(
+                Mockito.any(BeaconMessageStreamNode.class), argument.capture());
+        Assert.assertNotSame(argument.getAllValues().get(0), argument.getAllValues().get(1));
+        Assert.assertEquals(1, argument.getAllValues().get(0).getNumberOfAggregatedMessages());
+        Assert.assertEquals(2, argument.getAllValues().get(1).getNumberOfAggregatedMessages());
+    }
+
+    @Test
+    public void testReusedAggregatedMessageShouldBeUpdated() {
+        aggregator.setAggregationMode(BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        aggregator.setReuseAggregatedMessages(true);
+        long time = System.currentTimeMillis();
+        BeaconMessage firstMessage = createMessage(0, time);
+        firstMessage.setRssi(-50);
+        BeaconMessage secondMessage = createMessage(0, time + 1);
+        secondMessage.setRssi(-60);
+        final List<Integer> publishedRssis = new ArrayList<>();
+        final List<BeaconMessage> publishedMessages = new ArrayList<>();
+        aggregator.addReceiver(new BeaconMessageStreamNodeDefaultReceiver() {
+            @Override
+            public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+                publishedRssis.add(message.getRssi());
+                publishedMessages.add(message);
+            }
+        });
+
+        aggregator.onReceivedMessage(null, firstMessage);
+        aggregator.onReceivedMessage(null, secondMessage);
+
+        Assert.assertSame(publishedMessages.get(0), publishedMessages.get(1));
+        Assert.assertNotSame(firstMessage, publishedMessages.get(0));
+        Assert.assertEquals(-50, (int) publishedRssis.get(0));
+        Assert.assertEquals(-55, (int) publishedRssis.get(1));
+        Assert.assertEquals(2, publishedMessages.get(1).getNumberOfAggregatedMessages());
+        Assert.assertSame(secondMessage.getTimestamp(), publishedMessages.get(1).getTimestamp());
+        // The received messages are not modified.
+        Assert.assertEquals(-60, secondMessage.getRssi());
+    }
+
+    @Test
+    public void testReusedAggregatedMessageShouldBePublishedOncePerBatch() {
+        aggregator.setAggregationMode(BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        aggregator.setReuseAggregatedMessages(true);
+        long time = System.currentTimeMillis();
+        List<BeaconMessage> batch = new ArrayList<>();
+        batch.add(createMessage(0, time));
+        batch.add(createMessage(1, time));
+        batch.add(createMessage(0, time + 1));
+        final List<BeaconMessage> publishedMessages = new ArrayList<>();
+        aggregator.addReceiver(new BeaconMessageStreamNodeDefaultReceiver() {
+            @Override
+            public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+                publishedMessages.add(message);
+            }
+        });
+
+        aggregator.onReceivedMessages(null, batch);
+
+        Assert.assertEquals(2, publishedMessages.size());
+        Assert.assertNotSame(publishedMessages.get(0), publishedMessages.get(1));
+        Assert.assertEquals(2, publishedMessages.get(1).getNumberOfAggregatedMessages());
+        Assert.assertSame(batch.get(2).getTimestamp(), publishedMessages.get(1).getTimestamp());
+    }
+
+    @Test
+    public void testPacketAggregatesShouldNotStartThreadPerAggregate() {
+        final int numberOfBeacons = 200;
+        int threadsBefore = Thread.activeCount();
+        for (int i = 0; i < numberOfBeacons; i++) {
+            aggregator.onReceivedMessage(null, new IBeaconMessage(
+                    UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, i));
+        }
+        int threadsAfter = Thread.activeCount();
+        testBlocker.blockTest(500);
+
+        Assert.assertTrue(threadsAfter - threadsBefore <= 1);
+        Mockito.verify(receiver, Mockito.times(numberOfBeacons)).onReceivedMessage(
+                Mockito.any(BeaconMessageStreamNode.class), Mockito.any(BeaconMessage.class));
+    }
+
+    @Test
+    public void testPacketAggregatesWithZeroDurationShouldBePublished() {
+        final int numberOfBeacons = 100;
+        aggregator.setAggregateDurationInMs(0);
+        for (int i = 0; i < numberOfBeacons; i++) {
+            aggregator.onReceivedMessage(null, createMessage(i, System.currentTimeMillis()));
+        }
+        testBlocker.blockTest(500);
+
+        Mockito.verify(receiver, Mockito.times(numberOfBeacons)).onReceivedMessage(
+                Mockito.any(BeaconMessageStreamNode.class), Mockito.any(BeaconMessage.class));
+        Assert.assertEquals(0, aggregator.getNumberOfAggregates());
+    }
+
+    @Test
+    public void testObserverAddedAfterCompletionShouldBeNotified() {
+        BeaconMessagePacketAggregate aggregate = new BeaconMessagePacketAggregate(
+                createMessage(0, System.currentTimeMillis()), 0);
+        testBlocker.blockTest(100);
+        final AtomicInteger completions = new AtomicInteger();
+        aggregate.addObserver(new BeaconMessagePacketAggregate.BeaconMessagePacketAggregateObserver() {
+            @Override
+            public void onAggregateCompleted(BeaconMessagePacketAggregate aggregate) {
+                completions.incrementAndGet();
+            }
+        });
+
+        Assert.assertEquals(1, completions.get());
+    }
+
+    @Test
+    public void testExpiredSlidingWindowAggregatesShouldBeRemovedOnArrival() {
+        aggregator.setAggregationMode(BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        // Timestamps in the future, so that the expiry timer does not remove the aggregates.
+        long time = System.currentTimeMillis() + 60 * 60 * 1000;
+        // Expiry on arrival only affects the shard of the arriving message.
+        int[] beacons = findBeaconsInSameShard(10);
+        for (int beacon : beacons) {
+            aggregator.onReceivedMessage(null, createMessage(beacon, time));
+        }
+        Assert.assertEquals(10, aggregator.getNumberOfAggregates());
+
+        aggregator.onReceivedMessage(null, createMessage(beacons[0], time + 301));
+
+        Assert.assertEquals(1, aggregator.getNumberOfAggregates());
+    }
+
+    @Test
+    public void testExpiredSlidingWindowAggregatesShouldBeRemovedByTimer() {
+        aggregator.setAggregationMode(BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        for (int i = 0; i < 10; i++) {
+            aggregator.onReceivedMessage(null, createMessage(i, System.currentTimeMillis()));
+        }
+        Assert.assertEquals(10, aggregator.getNumberOfAggregates());
+
+        testBlocker.blockTest(500);
+
+        Assert.assertEquals(0, aggregator.getNumberOfAggregates());
+    }
+
+    @Test
+    public void testLeastRecentlyUpdatedAggregateShouldBeDiscardedIfLimitIsExceeded() {
+        aggregator.setAggregationMode(BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        aggregator.setMaximumNumberOfAggregates(2);
+        long time = System.currentTimeMillis() + 60 * 60 * 1000;
+        int[] beacons = findBeaconsInSameShard(3);
+        aggregator.onReceivedMessage(null, createMessage(beacons[0], time));
+        aggregator.onReceivedMessage(null, createMessage(beacons[1], time));
+        aggregator.onReceivedMessage(null, createMessage(beacons[0], time));
+        aggregator.onReceivedMessage(null, createMessage(beacons[2], time));
+        Assert.assertEquals(2, aggregator.getNumberOfAggregates());
+
+        // The aggregate of the first beacon still contains both messages.
+        aggregator.onReceivedMessage(null, createMessage(beacons[0], time));
+
+        ArgumentCaptor<BeaconMessage> argument = ArgumentCaptor.forClass(BeaconMessage.class);
+        Mockito.verify(receiver, Mockito.times(5)).onReceivedMessage(
+                Mockito.any(BeaconMessageStreamNode.class), argument.capture());
+        Assert.assertEquals(2, aggregator.getNumberOfAggregates());
+    }
+
+    @Test
+    public void testAggregateOfOtherShardShouldBeDiscardedIfShardIsEmpty() {
+        aggregator.setAggregationMode(BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        aggregator.setMaximumNumberOfAggregates(2);
+        long time = System.currentTimeMillis() + 60 * 60 * 1000;
+        int[] beacons = findBeaconsInSameShard(2);
+        int otherBeacon = 0;
+        while (BeaconMessageAggregator.getShardIndex(createMessage(otherBeacon, 0))
+                == BeaconMessageAggregator.getShardIndex(createMessage(beacons[0], 0))) {
+            otherBeacon++;
+        }
+        aggregator.onReceivedMessage(null, createMessage(beacons[0], time));
+        aggregator.onReceivedMessage(null, createMessage(beacons[1], time));
+        aggregator.onReceivedMessage(null, createMessage(otherBeacon, time));
+
+        Assert.assertEquals(2, aggregator.getNumberOfAggregates());
+    }
+
+    @Test
+    public void testDefaultLimitShouldKeepAllAggregatesOfThatManyBeacons() {
+        aggregator.setAggregationMode(BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        int numberOfBeacons = BeaconMessageAggregator.DEFAULT_MAXIMUM_NUMBER_OF_AGGREGATES;
+        long time = System.currentTimeMillis() + 60 * 60 * 1000;
+        // Random UUIDs are distributed unevenly over the shards.
+        Random random = new Random(1);
+        UUID[] uuids = new UUID[numberOfBeacons + 1];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        for (int beacon = 0; beacon < numberOfBeacons; beacon++) {
+            aggregator.onReceivedMessage(null, createMessage(uuids[beacon], time));
+        }
+        Assert.assertEquals(numberOfBeacons, aggregator.getNumberOfAggregates());
+
+        // A second message of each beacon is added to its existing aggregate.
+        for (int beacon = 0; beacon < numberOfBeacons; beacon++) {
+            aggregator.onReceivedMessage(null, createMessage(uuids[beacon], time));
+        }
+        Assert.assertEquals(numberOfBeacons, aggregator.getNumberOfAggregates());
+        ArgumentCaptor<BeaconMessage> argument = ArgumentCaptor.forClass(BeaconMessage.class);
+        Mockito.verify(receiver, Mockito.times(2 * numberOfBeacons)).onReceivedMessage(
+                Mockito.any(BeaconMessageStreamNode.class), argument.capture());
+        List<BeaconMessage> messages = argument.getAllValues();
+        for (int i = numberOfBeacons; i < messages.size(); i++) {
+            Assert.assertEquals(2, messages.get(i).getNumberOfAggregatedMessages());
+        }
+
+        // One more beacon exceeds the limit.
+        aggregator.onReceivedMessage(null, createMessage(uuids[numberOfBeacons], time));
+        Assert.assertEquals(numberOfBeacons, aggregator.getNumberOfAggregates());
+    }
+
+    @Test
+    public void testIdleAggregatorShouldNotKeepThread() {
+        aggregator.onReceivedMessage(null, createMessage(0, System.currentTimeMillis()));
+        testBlocker.blockTest(500);
+        Assert.assertTrue(isThreadAlive("BeaconMessageAggregator-CompletionTimer"));
+
+        testBlocker.blockTest(1500);
+
+        Assert.assertFalse(isThreadAlive("BeaconMessageAggregator-CompletionTimer"));
+    }
+
+    private static BeaconMessage createMessage(int beacon, long time) {
+        BeaconMessage message = new IBeaconMessage(
+                UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, beacon);
+        message.setTimestamp(new Date(time));
+        return message;
+    }
+
+    private static BeaconMessage createMessage(UUID uuid, long time) {
+        BeaconMessage message = new IBeaconMessage(uuid, 1, 1);
+        message.setTimestamp(new Date(time));
+        return message;
+    }
+
+    private static int[] findBeaconsInSameShard(int numberOfBeacons) {
+        int[] beacons = new int[numberOfBeacons];
+        int shardIndex = BeaconMessageAggregator.getShardIndex(createMessage(0, 0));
+        int found = 0;
+        for (int beacon = 0; found < numberOfBeacons; beacon++) {
+            if (BeaconMessageAggregator.getShardIndex(createMessage(beacon, 0)) == shardIndex) {
+                beacons[found++] = beacon;
+            }
+        }
+        return beacons;
+    }
+
+    @Test
+    public void testConcurrentProducersShouldAggregateAllMessages() throws Exception {
+        final int numberOfProducers = 4;
+        final int beaconsPerProducer = 50;
+        final int messagesPerBeacon = 200;
+        final BeaconMessageAggregator concurrentAggregator
+                = new BeaconMessageAggregator(new SilentTracer(), new BeaconMessageScannerSimulator());
+        concurrentAggregator.setAggregationMode(
+                BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        concurrentAggregator.setAggregateDurationInMs(60 * 60 * 1000);
+        concurrentAggregator.setAverageFilter(new SimpleMovingAverageFilter());
+        final AtomicInteger aggregatedMessages = new AtomicInteger();
+        final AtomicInteger wrongRssis = new AtomicInteger();
+        concurrentAggregator.addReceiver(new BeaconMessageStreamNodeDefaultReceiver() {
+            @Override
+            public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+                aggregatedMessages.incrementAndGet();
+                // Each beacon sends a constant RSSI that identifies its producer.
+                int producer = ((IBeaconMessage) message).getMinor() / beaconsPerProducer;
+                if (message.getRssi() != -50 - producer) {
+                    wrongRssis.incrementAndGet();
+                }
+            }
+        });
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final long time = System.currentTimeMillis();
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < numberOfProducers; i++) {
+            final int producer = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startSignal.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < messagesPerBeacon * beaconsPerProducer; j++) {
+                        int beacon = producer * beaconsPerProducer + j % beaconsPerProducer;
+                        BeaconMessage message = createMessage(beacon, time + j / beaconsPerProducer);
+                        message.setRssi(-50 - producer);
+                        concurrentAggregator.onReceivedMessage(null, message);
+                    }
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+        startSignal.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        int numberOfAggregates = concurrentAggregator.getNumberOfAggregates();
+        concurrentAggregator.stop();
+
+        Assert.assertEquals(numberOfProducers * beaconsPerProducer * messagesPerBeacon,
+                aggregatedMessages.get());
+        Assert.assertEquals(0, wrongRssis.get());
+        Assert.assertEquals(numberOfProducers * beaconsPerProducer, numberOfAggregates);
+    }
+
+    private static boolean isThreadAlive(String threadName) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(threadName) && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    @Ignore("Benchmark, run manually.")
+    public void testCostPerMessageForDifferentNumbersOfBeacons() {
+        final int messagesPerRun = 100000;
+        int[] numbersOfBeacons = new int[]{10, 100, 1000, 5000};
+        // Warm up
+        measureCostPerMessage(1000, messagesPerRun);
+        for (int numberOfBeacons : numbersOfBeacons) {
+            float costInNs = measureCostPerMessage(numberOfBeacons, messagesPerRun);
+            System.out.println(numberOfBeacons + " beacons: " + costInNs + " ns per message");
+        }
+    }
+
+    private float measureCostPerMessage(int numberOfBeacons, int numberOfMessages) {
+        // Each beacon sends one message per second, so that the sliding window
+        // of each aggregate contains only one message.
+        List<BeaconMessage> messages = new ArrayList<>();
+        for (int i = 0; i < numberOfMessages; i++) {
+            int beacon = i % numberOfBeacons;
+            BeaconMessage message = new IBeaconMessage(
+                    UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"),
+                    beacon / 1000, beacon % 1000);
+            message.setTimestamp(new Date((i / numberOfBeacons) * 1000L));
+            messages.add(message);
+        }
+        // The sliding window mode does not start a timer for each aggregate.
+        BeaconMessageAggregator benchmarkedAggregator
+                = new BeaconMessageAggregator(new SilentTracer(), new BeaconMessageScannerSimulator());
+        benchmarkedAggregator.setAggregationMode(
+                BeaconMessageAggregator.AggregationMode.SLIDING_WINDOW);
+        benchmarkedAggregator.setAggregateDurationInMs(500);
+        benchmarkedAggregator.addReceiver(new BeaconMessageStreamNodeDefaultReceiver() {
+            @Override
+            public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+                // Discard aggregated messages.
+            }
+        });
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < messages.size(); i++) {
+            benchmarkedAggregator.onReceivedMessage(null, messages.get(i));
+        }
+        long durationInNs = System.nanoTime() - startTime;
+        benchmarkedAggregator.stop();
+        return (float) durationInNs / numberOfMessages;
+    }
+
+    /**
+     * Tracing would dominate the measured time.
+     */
+    private static class SilentTracer implements ITracer {
+        @Override
+        public void logInfo(String tag, String message) {}
+
+        @Override
+        public void logDebug(String tag, String message) {}
+
+        @Override
+        public void logWarning(String tag, String message) {}
+
+        @Override
+        public void logError(String tag, String message) {}
+    }
 }
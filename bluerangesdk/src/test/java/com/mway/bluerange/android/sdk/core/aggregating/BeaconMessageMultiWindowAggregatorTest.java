@@ -0,0 +1,155 @@
+//
+//  BeaconMessageMultiWindowAggregatorTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating;
+
+import com.mway.bluerange.android.sdk.core.aggregating.averaging.SimpleMovingAverageFilter;
+import com.mway.bluerange.android.sdk.core.logging.dummys.DummyTracer;
+import com.mway.bluerange.android.sdk.core.scanning.BeaconMessageScannerSimulator;
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeDefaultReceiver;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+public class BeaconMessageMultiWindowAggregatorTest {
+
+    private BeaconMessageMultiWindowAggregator aggregator;
+    private List<List<BeaconMessage>> receivedMessages;
+
+    @Before
+    public void setUp() {
+        aggregator = new BeaconMessageMultiWindowAggregator(new DummyTracer(),
+                new BeaconMessageScannerSimulator(), 1000, 5000);
+        aggregator.setAverageFilter(new SimpleMovingAverageFilter());
+        receivedMessages = new ArrayList<>();
+        for (int window = 0; window < aggregator.getNumberOfWindows(); window++) {
+            final List<BeaconMessage> windowMessages = new ArrayList<>();
+            receivedMessages.add(windowMessages);
+            aggregator.getPort(window).addReceiver(new BeaconMessageStreamNodeDefaultReceiver() {
+                @Override
+                public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+                    windowMessages.add(message);
+                }
+            });
+        }
+    }
+
+    private static BeaconMessage createMessage(int beacon, long time, int rssi) {
+        BeaconMessage message = new IBeaconMessage(
+                UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, beacon);
+        message.setTimestamp(new Date(time));
+        message.setRssi(rssi);
+        return message;
+    }
+
+    @Test
+    public void testEachPortShouldPublishOneMessagePerIncomingMessage() {
+        aggregator.onReceivedMessage(null, createMessage(0, 0, -50));
+        aggregator.onReceivedMessage(null, createMessage(1, 0, -60));
+
+        Assert.assertEquals(2, receivedMessages.get(0).size());
+        Assert.assertEquals(2, receivedMessages.get(1).size());
+        Assert.assertEquals(-60, receivedMessages.get(1).get(1).getRssi());
+        Assert.assertEquals(2, aggregator.getNumberOfAggregates());
+    }
+
+    @Test
+    public void testWindowsShouldAverageDifferentNumbersOfMessages() {
+        aggregator.onReceivedMessage(null, createMessage(0, 0, -80));
+        aggregator.onReceivedMessage(null, createMessage(0, 1000, -80));
+        aggregator.onReceivedMessage(null, createMessage(0, 2000, -60));
+        aggregator.onReceivedMessage(null, createMessage(0, 3000, -60));
+
+        BeaconMessage shortWindowMessage = receivedMessages.get(0).get(3);
+        BeaconMessage longWindowMessage = receivedMessages.get(1).get(3);
+        Assert.assertEquals(-60, shortWindowMessage.getRssi());
+        Assert.assertEquals(2, shortWindowMessage.getNumberOfAggregatedMessages());
+        Assert.assertEquals(-70, longWindowMessage.getRssi());
+        Assert.assertEquals(4, longWindowMessage.getNumberOfAggregatedMessages());
+    }
+
+    @Test
+    public void testBatchShouldBePublishedAtOnce() {
+        aggregator.onReceivedMessages(null, Arrays.asList(
+                createMessage(0, 0, -50), createMessage(0, 500, -70)));
+
+        Assert.assertEquals(2, receivedMessages.get(0).size());
+        Assert.assertEquals(-60, receivedMessages.get(0).get(1).getRssi());
+    }
+
+    @Test
+    public void testReusedMessagesShouldBePublishedOncePerWindowAndBatch() {
+        aggregator.setReuseAggregatedMessages(true);
+        aggregator.onReceivedMessage(null, createMessage(0, 0, -50));
+        aggregator.onReceivedMessages(null, Arrays.asList(
+                createMessage(0, 500, -70), createMessage(1, 500, -80),
+                createMessage(0, 2000, -90)));
+
+        List<BeaconMessage> shortWindowMessages = receivedMessages.get(0);
+        List<BeaconMessage> longWindowMessages = receivedMessages.get(1);
+        Assert.assertEquals(3, shortWindowMessages.size());
+        Assert.assertEquals(3, longWindowMessages.size());
+        Assert.assertSame(shortWindowMessages.get(0), shortWindowMessages.get(2));
+        Assert.assertNotSame(shortWindowMessages.get(2), longWindowMessages.get(2));
+        Assert.assertEquals(-80, shortWindowMessages.get(1).getRssi());
+        Assert.assertEquals(-90, shortWindowMessages.get(2).getRssi());
+        Assert.assertEquals(1, shortWindowMessages.get(2).getNumberOfAggregatedMessages());
+        Assert.assertEquals(-70, longWindowMessages.get(2).getRssi());
+        Assert.assertEquals(3, longWindowMessages.get(2).getNumberOfAggregatedMessages());
+        Assert.assertEquals(2000, longWindowMessages.get(2).getTimestamp().getTime());
+    }
+
+    @Test
+    public void testAggregatesOutsideOfLongestWindowShouldBeRemovedOnArrival() {
+        aggregator.onReceivedMessage(null, createMessage(0, 0, -50));
+        aggregator.onReceivedMessage(null, createMessage(1, 0, -50));
+        aggregator.onReceivedMessage(null, createMessage(2, 5001, -50));
+
+        Assert.assertEquals(1, aggregator.getNumberOfAggregates());
+    }
+
+    @Test
+    public void testLeastRecentlyUpdatedAggregateShouldBeDiscardedIfLimitIsExceeded() {
+        aggregator.setMaximumNumberOfAggregates(2);
+        aggregator.onReceivedMessage(null, createMessage(0, 0, -50));
+        aggregator.onReceivedMessage(null, createMessage(1, 0, -50));
+        aggregator.onReceivedMessage(null, createMessage(0, 1, -60));
+        aggregator.onReceivedMessage(null, createMessage(2, 2, -50));
+        aggregator.onReceivedMessage(null, createMessage(0, 3, -70));
+
+        Assert.assertEquals(2, aggregator.getNumberOfAggregates());
+        Assert.assertEquals(3, receivedMessages.get(1).get(4).getNumberOfAggregatedMessages());
+    }
+}
@@ -0,0 +1,108 @@
+//
+//  BeaconMessageSlidingWindowAggregateTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating;
+
+import com.mway.bluerange.android.sdk.core.aggregating.averaging.IncrementalSimpleMovingAverageFilter;
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+public class BeaconMessageSlidingWindowAggregateTest {
+
+    private static BeaconMessage createIBeaconMessage(int rssi, long timePoint) {
+        BeaconMessage message = new IBeaconMessage(
+                UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, 1);
+        message.setRssi(rssi);
+        message.setTimestamp(new Date(timePoint));
+        return message;
+    }
+
+    @Test
+    public void testOldMessagesShouldBeRemoved() {
+        BeaconMessageSlidingWindowAggregate aggregate
+                = new BeaconMessageSlidingWindowAggregate(createIBeaconMessage(-50, 0), 1000);
+        aggregate.add(createIBeaconMessage(-60, 500));
+        aggregate.add(createIBeaconMessage(-70, 1200));
+        aggregate.removeOldMessages();
+
+        Assert.assertEquals(2, aggregate.getNumberOfMessages());
+        Assert.assertEquals(500, aggregate.getTimePoint(0));
+        Assert.assertEquals(-70, aggregate.getRssi(1));
+        Assert.assertEquals(-70, aggregate.getPrototypeMessage().getRssi());
+        Assert.assertEquals(200, aggregate.getStartDate().getTime());
+        Assert.assertEquals(1200, aggregate.getStopDate().getTime());
+        Assert.assertEquals(200, aggregate.getStartTimeInMs());
+        Assert.assertEquals(1200, aggregate.getStopTimeInMs());
+    }
+
+    @Test
+    public void testMessagesShouldOnlyBeStoredInRing() {
+        BeaconMessageSlidingWindowAggregate aggregate
+                = new BeaconMessageSlidingWindowAggregate(createIBeaconMessage(-50, 0), 1000);
+        aggregate.add(createIBeaconMessage(-60, 500));
+
+        Assert.assertNull(aggregate.messages);
+        Assert.assertEquals(1, aggregate.getMessages().size());
+    }
+
+    @Test
+    public void testRingShouldKeepOrderWhenGrowingAfterWrapAround() {
+        BeaconMessageSlidingWindowAggregate aggregate
+                = new BeaconMessageSlidingWindowAggregate(createIBeaconMessage(0, 0), 50);
+        for (int i = 1; i < 100; i++) {
+            aggregate.add(createIBeaconMessage(-i, i * 10));
+            aggregate.removeOldMessages();
+        }
+        // Fill the ring beyond its capacity while its oldest entry is not at index 0.
+        for (int i = 100; i < 150; i++) {
+            aggregate.add(createIBeaconMessage(-i, 990));
+        }
+
+        Assert.assertEquals(56, aggregate.getNumberOfMessages());
+        Assert.assertEquals(940, aggregate.getTimePoint(0));
+        for (int i = 0; i < 56; i++) {
+            Assert.assertEquals(-(94 + i), aggregate.getRssi(i));
+        }
+    }
+
+    @Test
+    public void testAverageFilterShouldFollowWindow() {
+        BeaconMessageSlidingWindowAggregate aggregate
+                = new BeaconMessageSlidingWindowAggregate(createIBeaconMessage(-50, 0), 1000);
+        aggregate.setAverageFilter(new IncrementalSimpleMovingAverageFilter());
+        aggregate.add(createIBeaconMessage(-60, 500));
+        aggregate.add(createIBeaconMessage(-70, 1200));
+        aggregate.removeOldMessages();
+
+        Assert.assertEquals(2, aggregate.getAverageFilter().getNumberOfSamples());
+        Assert.assertEquals(-65f, aggregate.getAverageFilter().getCurrentAverage(200, 1200));
+    }
+}
@@ -0,0 +1,84 @@
+//
+//  ExponentialMovingAverageFilterTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExponentialMovingAverageFilterTest {
+
+    @Test
+    public void testAverageWithOneValue() {
+        ExponentialMovingAverageFilter filter = new ExponentialMovingAverageFilter(1000);
+        List<Long> timePoints = new ArrayList<>();
+        List<Float> values = new ArrayList<>();
+        timePoints.add(0l);
+        values.add(-50f);
+
+        Assert.assertEquals(-50f, filter.getAverage(0, 1, timePoints, values));
+    }
+
+    @Test
+    public void testValueAfterHalfLifeShouldHaveHalfWeight() {
+        IncrementalMovingAverageFilter filter
+                = new ExponentialMovingAverageFilter(1000).createIncrementalFilter();
+        filter.addSample(0, -50f);
+        filter.addSample(1000, -70f);
+
+        Assert.assertEquals(-60f, filter.getCurrentAverage(0, 1000), 0.0001f);
+    }
+
+    @Test
+    public void testBurstShouldHaveLittleInfluence() {
+        IncrementalMovingAverageFilter filter
+                = new ExponentialMovingAverageFilter(1000).createIncrementalFilter();
+        for (int i = 0; i < 10; i++) {
+            filter.addSample(i * 1000, -50f);
+        }
+        // Ten values within 10 ms.
+        for (int i = 0; i < 10; i++) {
+            filter.addSample(9001 + i, -90f);
+        }
+
+        Assert.assertTrue(filter.getCurrentAverage(0, 9010) > -51f);
+    }
+
+    @Test
+    public void testEvictedValuesShouldNotChangeAverage() {
+        IncrementalMovingAverageFilter filter
+                = new ExponentialMovingAverageFilter(1000).createIncrementalFilter();
+        filter.addSample(0, -50f);
+        filter.addSample(500, -60f);
+        float average = filter.getCurrentAverage(0, 500);
+        filter.evictSample(0, -50f);
+
+        Assert.assertEquals(average, filter.getCurrentAverage(0, 500));
+        Assert.assertEquals(1, filter.getNumberOfSamples());
+    }
+}
@@ -0,0 +1,91 @@
+//
+//  IncrementalLinearWeightedMovingAverageFilterTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class IncrementalLinearWeightedMovingAverageFilterTest {
+
+    @Test
+    public void testAverageWithOneValue() {
+        IncrementalMovingAverageFilter filter = new IncrementalLinearWeightedMovingAverageFilter(0.0f);
+        filter.addSample(0, 10f);
+
+        Assert.assertEquals(10f, filter.getCurrentAverage(0, 1));
+    }
+
+    @Test
+    public void testAverageWithNonZeroC() {
+        IncrementalMovingAverageFilter filter = new IncrementalLinearWeightedMovingAverageFilter(0.5f);
+        filter.addSample(0, 1.0f);
+        filter.addSample(2, 2.0f);
+
+        Assert.assertEquals(((1f/3)*1f) + ((2f/3)*2f), filter.getCurrentAverage(0, 2), 0.0001f);
+    }
+
+    @Test
+    public void testEmptyWindowShouldHaveNoAverage() {
+        IncrementalMovingAverageFilter filter = new IncrementalLinearWeightedMovingAverageFilter(0.3f);
+        filter.addSample(1000, -50f);
+        filter.evictSample(1000, -50f);
+
+        Assert.assertEquals(0, filter.getNumberOfSamples());
+        Assert.assertTrue(Float.isNaN(filter.getCurrentAverage(0, 1000)));
+    }
+
+    @Test
+    public void testSlidingWindowShouldMatchNonIncrementalFilter() {
+        final long windowDurationInMs = 1000;
+        LinearWeightedMovingAverageFilter filter = new LinearWeightedMovingAverageFilter(0.3f);
+        IncrementalMovingAverageFilter incrementalFilter = filter.createIncrementalFilter();
+        List<Long> timePoints = new ArrayList<>();
+        List<Float> values = new ArrayList<>();
+        Random random = new Random(0);
+        // The non-incremental filter converts time points to float. Therefore,
+        // small time points are used, which are represented exactly.
+        long time = 0;
+        for (int i = 0; i < 1000; i++) {
+            time += random.nextInt(200);
+            float value = -40 - random.nextInt(60);
+            timePoints.add(time);
+            values.add(value);
+            incrementalFilter.addSample(time, value);
+            while (time - timePoints.get(0) > windowDurationInMs) {
+                incrementalFilter.evictSample(timePoints.remove(0), values.remove(0));
+            }
+
+            long startTime = time - windowDurationInMs;
+            float expectedAverage = filter.getAverage(startTime, time, timePoints, values);
+            Assert.assertEquals(expectedAverage,
+                    incrementalFilter.getCurrentAverage(startTime, time), 0.001f);
+        }
+    }
+}
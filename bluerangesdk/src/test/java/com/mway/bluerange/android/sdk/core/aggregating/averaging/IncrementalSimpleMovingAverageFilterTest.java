@@ -0,0 +1,55 @@
+//
+//  IncrementalSimpleMovingAverageFilterTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class IncrementalSimpleMovingAverageFilterTest {
+
+    @Test
+    public void testAverageOfAddedValues() {
+        IncrementalMovingAverageFilter filter = new SimpleMovingAverageFilter().createIncrementalFilter();
+        filter.addSample(0, -50f);
+        filter.addSample(10, -60f);
+        filter.addSample(20, -70f);
+
+        Assert.assertEquals(-60f, filter.getCurrentAverage(0, 20));
+        Assert.assertEquals(3, filter.getNumberOfSamples());
+    }
+
+    @Test
+    public void testEvictedValuesShouldNotContributeToAverage() {
+        IncrementalMovingAverageFilter filter = new IncrementalSimpleMovingAverageFilter();
+        filter.addSample(0, -50f);
+        filter.addSample(10, -60f);
+        filter.addSample(20, -70f);
+        filter.evictSample(0, -50f);
+
+        Assert.assertEquals(-65f, filter.getCurrentAverage(10, 20));
+        Assert.assertEquals(2, filter.getNumberOfSamples());
+    }
+}
@@ -0,0 +1,124 @@
+//
+//  KalmanRssiFilterTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class KalmanRssiFilterTest {
+
+    private static final long SAMPLE_INTERVAL_IN_MS = 100;
+    private static final long WINDOW_DURATION_IN_MS = 1000;
+
+    /**
+     * Simulates a beacon that is approached, passed and left again, while the RSSI is
+     * disturbed by Gaussian noise with a standard deviation of 6 dBm.
+     */
+    private static float[][] createNoisyTrace(long seed) {
+        Random random = new Random(seed);
+        int numberOfSamples = 600;
+        float[] trueRssis = new float[numberOfSamples];
+        float[] measuredRssis = new float[numberOfSamples];
+        for (int i = 0; i < numberOfSamples; i++) {
+            float position = (i - numberOfSamples / 2f) / 50f;
+            trueRssis[i] = -55 - 25 * Math.min(1, Math.abs(position) / 4);
+            measuredRssis[i] = trueRssis[i] + (float) random.nextGaussian() * 6;
+        }
+        return new float[][]{trueRssis, measuredRssis};
+    }
+
+    @Test
+    public void testFirstValueShouldBeEstimate() {
+        IncrementalMovingAverageFilter filter = new KalmanRssiFilter().createIncrementalFilter();
+        filter.addSample(0, -60f);
+
+        Assert.assertEquals(-60f, filter.getCurrentAverage(0, 0));
+    }
+
+    @Test
+    public void testConstantSignalShouldBeEstimatedExactly() {
+        IncrementalMovingAverageFilter filter = new KalmanRssiFilter().createIncrementalFilter();
+        for (int i = 0; i < 100; i++) {
+            filter.addSample(i, -70f);
+        }
+
+        Assert.assertEquals(-70f, filter.getCurrentAverage(0, 100), 0.0001f);
+    }
+
+    @Test
+    public void testBatchAndIncrementalEstimatesShouldBeEqual() {
+        KalmanRssiFilter filter = new KalmanRssiFilter();
+        IncrementalMovingAverageFilter incrementalFilter = filter.createIncrementalFilter();
+        float[] measuredRssis = createNoisyTrace(0)[1];
+        List<Long> timePoints = new ArrayList<>();
+        List<Float> values = new ArrayList<>();
+        for (int i = 0; i < measuredRssis.length; i++) {
+            timePoints.add(i * SAMPLE_INTERVAL_IN_MS);
+            values.add(measuredRssis[i]);
+            incrementalFilter.addSample(i * SAMPLE_INTERVAL_IN_MS, measuredRssis[i]);
+        }
+        long endTime = measuredRssis.length * SAMPLE_INTERVAL_IN_MS;
+
+        Assert.assertEquals(filter.getAverage(0, endTime, timePoints, values),
+                incrementalFilter.getCurrentAverage(0, endTime));
+    }
+
+    @Test
+    public void testErrorOnNoisyTracesShouldBeLowerThanLinearWeightedFilter() {
+        double kalmanError = 0;
+        double linearError = 0;
+        for (long seed = 0; seed < 10; seed++) {
+            float[][] trace = createNoisyTrace(seed);
+            float[] trueRssis = trace[0];
+            float[] measuredRssis = trace[1];
+
+            IncrementalMovingAverageFilter kalmanFilter = new KalmanRssiFilter().createIncrementalFilter();
+            LinearWeightedMovingAverageFilter linearFilter = new LinearWeightedMovingAverageFilter(0.3f);
+            List<Long> timePoints = new ArrayList<>();
+            List<Float> values = new ArrayList<>();
+            for (int i = 0; i < measuredRssis.length; i++) {
+                long time = i * SAMPLE_INTERVAL_IN_MS;
+                kalmanFilter.addSample(time, measuredRssis[i]);
+                timePoints.add(time);
+                values.add(measuredRssis[i]);
+                while (time - timePoints.get(0) > WINDOW_DURATION_IN_MS) {
+                    timePoints.remove(0);
+                    values.remove(0);
+                }
+                float kalmanEstimate = kalmanFilter.getCurrentAverage(0, time);
+                float linearEstimate = linearFilter.getAverage(
+                        time - WINDOW_DURATION_IN_MS, time, timePoints, values);
+                kalmanError += Math.abs(kalmanEstimate - trueRssis[i]);
+                linearError += Math.abs(linearEstimate - trueRssis[i]);
+            }
+        }
+        Assert.assertTrue(kalmanError < linearError);
+    }
+}
@@ -0,0 +1,234 @@
+//
+//  TrimmedMeanRssiFilterTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.aggregating.averaging;
+
+import junit.framework.Assert;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TrimmedMeanRssiFilterTest {
+
+    @Test
+    public void testMedianWithOddNumberOfValues() {
+        IncrementalMovingAverageFilter filter = TrimmedMeanRssiFilter.median(5).createIncrementalFilter();
+        filter.addSample(0, -60f);
+        filter.addSample(1, -40f);
+        filter.addSample(2, -50f);
+
+        Assert.assertEquals(-50f, filter.getCurrentAverage(0, 2));
+    }
+
+    @Test
+    public void testMedianWithEvenNumberOfValues() {
+        IncrementalMovingAverageFilter filter = TrimmedMeanRssiFilter.median(5).createIncrementalFilter();
+        filter.addSample(0, -60f);
+        filter.addSample(1, -40f);
+        filter.addSample(2, -50f);
+        filter.addSample(3, -70f);
+
+        Assert.assertEquals(-55f, filter.getCurrentAverage(0, 3));
+    }
+
+    @Test
+    public void testSpikeShouldNotChangeMedian() {
+        IncrementalMovingAverageFilter filter = TrimmedMeanRssiFilter.median(5).createIncrementalFilter();
+        for (int i = 0; i < 10; i++) {
+            filter.addSample(i, -70f);
+        }
+        filter.addSample(10, -30f);
+
+        Assert.assertEquals(-70f, filter.getCurrentAverage(0, 10));
+    }
+
+    @Test
+    public void testTrimmedMeanShouldDiscardSmallestAndLargestValues() {
+        TrimmedMeanRssiFilter filter = new TrimmedMeanRssiFilter(10, 0.1f);
+        List<Long> timePoints = new ArrayList<>();
+        List<Float> values = new ArrayList<>();
+        float[] rssis = new float[]{-20, -60, -61, -62, -63, -64, -65, -66, -67, -100};
+        for (int i = 0; i < rssis.length; i++) {
+            timePoints.add((long) i);
+            values.add(rssis[i]);
+        }
+
+        Assert.assertEquals(-63.5f, filter.getAverage(0, 9, timePoints, values), 0.0001f);
+    }
+
+    @Test
+    public void testFullWindowShouldDropOldestValue() {
+        IncrementalMovingAverageFilter filter = TrimmedMeanRssiFilter.median(3).createIncrementalFilter();
+        filter.addSample(0, -90f);
+        filter.addSample(1, -50f);
+        filter.addSample(2, -50f);
+        filter.addSample(3, -40f);
+
+        Assert.assertEquals(3, filter.getNumberOfSamples());
+        Assert.assertEquals(-50f, filter.getCurrentAverage(0, 3));
+    }
+
+    @Test
+    public void testEvictionOfAutomaticallyDroppedValueShouldBeIgnored() {
+        IncrementalMovingAverageFilter filter = TrimmedMeanRssiFilter.median(2).createIncrementalFilter();
+        filter.addSample(0, -90f);
+        filter.addSample(1, -60f);
+        filter.addSample(2, -50f);
+        // The first value was already dropped by the filter itself.
+        filter.evictSample(0, -90f);
+        Assert.assertEquals(2, filter.getNumberOfSamples());
+        filter.evictSample(1, -60f);
+
+        Assert.assertEquals(1, filter.getNumberOfSamples());
+        Assert.assertEquals(-50f, filter.getCurrentAverage(2, 2));
+    }
+
+    @Test
+    public void testIncrementalFilterShouldMatchFilter() {
+        TrimmedMeanRssiFilter filter = new TrimmedMeanRssiFilter(8, 0.25f);
+        IncrementalMovingAverageFilter incrementalFilter = filter.createIncrementalFilter();
+        List<Long> timePoints = new ArrayList<>();
+        List<Float> values = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            float rssi = -70 + random.nextInt(20);
+            timePoints.add((long) i);
+            values.add(rssi);
+            incrementalFilter.addSample(i, rssi);
+            if (values.size() > 5) {
+                incrementalFilter.evictSample(timePoints.remove(0), values.remove(0));
+            }
+
+            Assert.assertEquals(filter.getAverage(0, i, timePoints, values),
+                    incrementalFilter.getCurrentAverage(0, i), 0.0001f);
+        }
+    }
+
+    @Test
+    public void testIncrementalMedianOfLargeWindowShouldMatchMedian() {
+        TrimmedMeanRssiFilter filter = TrimmedMeanRssiFilter.median(200);
+        IncrementalMovingAverageFilter incrementalFilter = filter.createIncrementalFilter();
+        List<Long> timePoints = new ArrayList<>();
+        List<Float> values = new ArrayList<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            float rssi = -100 + random.nextInt(70);
+            timePoints.add((long) i);
+            values.add(rssi);
+            incrementalFilter.addSample(i, rssi);
+
+            Assert.assertEquals(filter.getAverage(0, i, timePoints, values),
+                    incrementalFilter.getCurrentAverage(0, i), 0.0001f);
+        }
+    }
+
+    @Test
+    public void testValuesOutsideOfRssiRangeShouldBeAveraged() {
+        IncrementalMovingAverageFilter filter = new TrimmedMeanRssiFilter(4, 0.25f)
+                .createIncrementalFilter();
+        filter.addSample(0, 10f);
+        filter.addSample(1, 20f);
+        filter.addSample(2, -60f);
+        filter.addSample(3, -200f);
+
+        // 10 and 20 share the last bucket, so that their mean replaces the smaller value.
+        Assert.assertEquals((-60f + 15f) / 2, filter.getCurrentAverage(0, 3), 0.0001f);
+    }
+
+    @Test
+    @Ignore("Benchmark, run manually.")
+    public void testCostPerSampleForDifferentWindowSizes() {
+        int[] windowSizes = new int[]{10, 50, 200};
+        for (int windowSize : windowSizes) {
+            MovingAverageFilter[] filters = new MovingAverageFilter[]{
+                    new SimpleMovingAverageFilter(),
+                    new LinearWeightedMovingAverageFilter(0.3f),
+                    new KalmanRssiFilter(),
+                    new TrimmedMeanRssiFilter(windowSize, TrimmedMeanRssiFilter.DEFAULT_TRIM_FRACTION),
+                    TrimmedMeanRssiFilter.median(windowSize)
+            };
+            for (MovingAverageFilter filter : filters) {
+                // Warm up
+                measureCostPerSample(filter, windowSize, false);
+                float costInNs = measureCostPerSample(filter, windowSize, false);
+                System.out.println("Window size " + windowSize + ", "
+                        + getName(filter) + ": " + costInNs + " ns per sample");
+                if (filter instanceof IncrementalMovingAverageFilterFactory) {
+                    measureCostPerSample(filter, windowSize, true);
+                    costInNs = measureCostPerSample(filter, windowSize, true);
+                    System.out.println("Window size " + windowSize + ", incremental "
+                            + getName(filter) + ": " + costInNs + " ns per sample");
+                }
+            }
+        }
+    }
+
+    private static String getName(MovingAverageFilter filter) {
+        if (filter instanceof TrimmedMeanRssiFilter
+                && ((TrimmedMeanRssiFilter) filter).getTrimFraction() == 0.5f) {
+            return "median";
+        }
+        return filter.getClass().getSimpleName();
+    }
+
+    private float measureCostPerSample(MovingAverageFilter filter, int windowSize, boolean incremental) {
+        final int numberOfSamples = 20000;
+        Random random = new Random(1);
+        float[] rssis = new float[numberOfSamples];
+        for (int i = 0; i < numberOfSamples; i++) {
+            rssis[i] = -70 + random.nextInt(20);
+        }
+        List<Long> timePoints = new ArrayList<>();
+        List<Float> values = new ArrayList<>();
+        IncrementalMovingAverageFilter incrementalFilter = incremental
+                ? ((IncrementalMovingAverageFilterFactory) filter).createIncrementalFilter() : null;
+        float checksum = 0;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < numberOfSamples; i++) {
+            float rssi = rssis[i];
+            if (incremental) {
+                incrementalFilter.addSample(i, rssi);
+                if (i >= windowSize) {
+                    incrementalFilter.evictSample(i - windowSize, rssis[i - windowSize]);
+                }
+                checksum += incrementalFilter.getCurrentAverage(0, i);
+            } else {
+                timePoints.add((long) i);
+                values.add(rssi);
+                if (values.size() > windowSize) {
+                    timePoints.remove(0);
+                    values.remove(0);
+                }
+                checksum += filter.getAverage(0, i, timePoints, values);
+            }
+        }
+        long durationInNs = System.nanoTime() - startTime;
+        Assert.assertFalse(Float.isNaN(checksum));
+        return (float) durationInNs / numberOfSamples;
+    }
+}
@@ -0,0 +1,174 @@
+//
+//  BeaconMessageDecimatorTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.decimating;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeDefaultReceiver;
+import com.mway.bluerange.android.sdk.helper.TestBlocker;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+public class BeaconMessageDecimatorTest {
+
+    // The timestamps lie in the future, so that windows cannot be completed by the wall-clock
+    // time. Pending windows are completed about one window duration after their first message.
+    private static final long BASE_TIME = System.currentTimeMillis() + 3600 * 1000;
+
+    private BeaconMessageDecimator decimator;
+    private CollectingReceiver receiver;
+
+    private static class SourceNode extends BeaconMessageStreamNode {
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            sendMessageToReceivers(message);
+        }
+    }
+
+    private static class CollectingReceiver extends BeaconMessageStreamNodeDefaultReceiver {
+        private final List<BeaconMessage> receivedMessages = new ArrayList<>();
+
+        @Override
+        public synchronized void onReceivedMessage(BeaconMessageStreamNode senderNode,
+                                                   BeaconMessage message) {
+            receivedMessages.add(message);
+        }
+
+        synchronized int getNumberOfReceivedMessages() {
+            return receivedMessages.size();
+        }
+    }
+
+    private void createDecimator(int maximumMessagesPerSecond,
+                                 BeaconMessageDecimator.SelectionMode selectionMode) {
+        this.decimator = new BeaconMessageDecimator(
+                new SourceNode(), maximumMessagesPerSecond, selectionMode);
+        this.receiver = new CollectingReceiver();
+        decimator.addReceiver(receiver);
+    }
+
+    @After
+    public void tearDown() {
+        decimator.stop();
+    }
+
+    private static BeaconMessage createIBeaconMessage(int minor, int rssi, long timeOffsetInMs) {
+        BeaconMessage message = new IBeaconMessage(
+                UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, minor);
+        message.setRssi(rssi);
+        message.setTimestamp(new Date(BASE_TIME + timeOffsetInMs));
+        return message;
+    }
+
+    @Test
+    public void testFirstModeShouldPassFirstMessageOfEachWindow() {
+        createDecimator(2, BeaconMessageDecimator.SelectionMode.FIRST);
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -50, 0));
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -60, 100));
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -70, 499));
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -80, 500));
+
+        Assert.assertEquals(2, receiver.receivedMessages.size());
+        Assert.assertEquals(-50, receiver.receivedMessages.get(0).getRssi());
+        Assert.assertEquals(-80, receiver.receivedMessages.get(1).getRssi());
+    }
+
+    @Test
+    public void testLastModeShouldPassLastMessageOfEachWindow() {
+        createDecimator(2, BeaconMessageDecimator.SelectionMode.LAST);
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -50, 0));
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -60, 100));
+        Assert.assertEquals(0, receiver.receivedMessages.size());
+
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -70, 500));
+        Assert.assertEquals(1, receiver.receivedMessages.size());
+        Assert.assertEquals(-60, receiver.receivedMessages.get(0).getRssi());
+
+        decimator.completeWindows(BASE_TIME + 1000);
+        Assert.assertEquals(2, receiver.receivedMessages.size());
+        Assert.assertEquals(-70, receiver.receivedMessages.get(1).getRssi());
+    }
+
+    @Test
+    public void testStrongestModeShouldPassStrongestMessageOfEachWindow() {
+        createDecimator(1, BeaconMessageDecimator.SelectionMode.STRONGEST);
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -70, 0));
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -50, 300));
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -60, 600));
+        decimator.completeWindows(BASE_TIME + 1000);
+
+        Assert.assertEquals(1, receiver.receivedMessages.size());
+        Assert.assertEquals(-50, receiver.receivedMessages.get(0).getRssi());
+    }
+
+    @Test
+    public void testBeaconsShouldBeDecimatedIndependently() {
+        createDecimator(1, BeaconMessageDecimator.SelectionMode.FIRST);
+        List<BeaconMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            messages.add(createIBeaconMessage(1, -50, i * 10));
+            messages.add(createIBeaconMessage(2, -50, i * 10));
+        }
+        decimator.onReceivedMessages(null, messages);
+
+        Assert.assertEquals(2, receiver.receivedMessages.size());
+        Assert.assertEquals(2, decimator.getNumberOfBeacons());
+    }
+
+    @Test
+    public void testIdleBeaconsShouldBeRemoved() {
+        createDecimator(10, BeaconMessageDecimator.SelectionMode.LAST);
+        for (int i = 0; i < 100; i++) {
+            decimator.onReceivedMessage(null, createIBeaconMessage(i, -50, 0));
+        }
+        Assert.assertEquals(100, decimator.getNumberOfBeacons());
+
+        decimator.completeWindows(BASE_TIME + BeaconMessageDecimator.IDLE_WINDOWS * 100);
+        Assert.assertEquals(0, decimator.getNumberOfBeacons());
+        Assert.assertEquals(100, receiver.receivedMessages.size());
+    }
+
+    @Test
+    public void testPendingWindowShouldBeCompletedWithoutFurtherMessages() {
+        createDecimator(20, BeaconMessageDecimator.SelectionMode.LAST);
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -50, 0));
+        decimator.onReceivedMessage(null, createIBeaconMessage(1, -60, 10));
+
+        TestBlocker testBlocker = new TestBlocker();
+        for (int i = 0; i < 100 && receiver.getNumberOfReceivedMessages() == 0; i++) {
+            testBlocker.blockTest(10);
+        }
+        Assert.assertEquals(1, receiver.getNumberOfReceivedMessages());
+    }
+}
@@ -0,0 +1,160 @@
+//
+//  BatchDistanceEstimatorTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.distancing;
+
+import junit.framework.Assert;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class BatchDistanceEstimatorTest {
+
+    private static final int NUMBER_OF_VALUES = 1024;
+
+    @Test
+    public void testBatchEstimationShouldMatchSingleEstimation() {
+        float[] rssis = createRssis(NUMBER_OF_VALUES);
+        float[] txPowers = createTxPowers(NUMBER_OF_VALUES);
+        DistanceEstimator[] estimators = new DistanceEstimator[]{
+                new AnalyticalDistanceEstimator(),
+                new EmpiricalDistanceEstimator(),
+                new CachingDistanceEstimator(new AnalyticalDistanceEstimator())
+        };
+        for (DistanceEstimator estimator : estimators) {
+            float[] distances = new float[NUMBER_OF_VALUES];
+            DistanceEstimators.getDistancesInMetres(
+                    estimator, rssis, txPowers, distances, NUMBER_OF_VALUES);
+            for (int i = 0; i < NUMBER_OF_VALUES; i++) {
+                float distance = estimator.getDistanceInMetres(rssis[i], txPowers[i]);
+                Assert.assertEquals(distance, distances[i], Math.abs(distance) * 1e-5f);
+            }
+        }
+    }
+
+    @Test
+    public void testEstimatorWithoutBatchSupportShouldBeCalledPerValue() {
+        DistanceEstimator estimator = new DistanceEstimator() {
+            @Override
+            public float getDistanceInMetres(float rssi, float txPower) {
+                return txPower - rssi;
+            }
+        };
+        float[] rssis = new float[]{-60, -70, -80};
+        float[] txPowers = new float[]{-55, -55, -50};
+        float[] distances = new float[3];
+        DistanceEstimators.getDistancesInMetres(estimator, rssis, txPowers, distances, 3);
+
+        Assert.assertEquals(5.0f, distances[0]);
+        Assert.assertEquals(15.0f, distances[1]);
+        Assert.assertEquals(30.0f, distances[2]);
+    }
+
+    @Test
+    public void testOnlyPassedLengthShouldBeEstimated() {
+        float[] rssis = new float[]{-60, -70, -80};
+        float[] txPowers = new float[]{-55, -55, -55};
+        float[] distances = new float[3];
+        DistanceEstimators.getDistancesInMetres(
+                new AnalyticalDistanceEstimator(), rssis, txPowers, distances, 2);
+
+        Assert.assertTrue(distances[1] > 0);
+        Assert.assertEquals(0.0f, distances[2]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooShortArrayShouldBeRejected() {
+        DistanceEstimators.getDistancesInMetres(new AnalyticalDistanceEstimator(),
+                new float[3], new float[2], new float[3], 3);
+    }
+
+    @Test
+    @Ignore("Benchmark, run manually.")
+    public void testCostPerEstimationOfBatchAndSingleEstimation() {
+        final int numberOfRounds = 1000;
+        float[] rssis = createRssis(NUMBER_OF_VALUES);
+        float[] txPowers = new float[NUMBER_OF_VALUES];
+        for (int i = 0; i < NUMBER_OF_VALUES; i++) {
+            txPowers[i] = -55;
+        }
+        float[] distances = new float[NUMBER_OF_VALUES];
+        DistanceEstimator[] estimators = new DistanceEstimator[]{
+                new AnalyticalDistanceEstimator(),
+                new EmpiricalDistanceEstimator(),
+                new CachingDistanceEstimator(new AnalyticalDistanceEstimator())
+        };
+        for (DistanceEstimator estimator : estimators) {
+            for (boolean batch : new boolean[]{false, true}) {
+                // Warm up
+                measureCostPerEstimation(estimator, batch, rssis, txPowers, distances,
+                        numberOfRounds);
+                float costInNs = measureCostPerEstimation(estimator, batch, rssis, txPowers,
+                        distances, numberOfRounds);
+                System.out.println(estimator.getClass().getSimpleName()
+                        + (batch ? " batch: " : ": ") + costInNs + " ns per estimation");
+            }
+        }
+    }
+
+    private float measureCostPerEstimation(DistanceEstimator estimator, boolean batch,
+                                           float[] rssis, float[] txPowers, float[] distances,
+                                           int numberOfRounds) {
+        float checksum = 0;
+        long startTime = System.nanoTime();
+        for (int round = 0; round < numberOfRounds; round++) {
+            if (batch) {
+                DistanceEstimators.getDistancesInMetres(
+                        estimator, rssis, txPowers, distances, rssis.length);
+            } else {
+                for (int i = 0; i < rssis.length; i++) {
+                    distances[i] = estimator.getDistanceInMetres(rssis[i], txPowers[i]);
+                }
+            }
+            checksum += distances[round & (distances.length - 1)];
+        }
+        long durationInNs = System.nanoTime() - startTime;
+        Assert.assertTrue(checksum > 0);
+        return (float) durationInNs / (numberOfRounds * rssis.length);
+    }
+
+    private float[] createRssis(int length) {
+        float[] rssis = new float[length];
+        Random random = new Random(1);
+        for (int i = 0; i < length; i++) {
+            rssis[i] = -100 + random.nextFloat() * 60;
+        }
+        return rssis;
+    }
+
+    private float[] createTxPowers(int length) {
+        float[] txPowers = new float[length];
+        Random random = new Random(2);
+        for (int i = 0; i < length; i++) {
+            txPowers[i] = -70 + random.nextInt(31);
+        }
+        return txPowers;
+    }
+}
@@ -0,0 +1,122 @@
+//
+//  CachingDistanceEstimatorTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.distancing;
+
+import junit.framework.Assert;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class CachingDistanceEstimatorTest {
+
+    @Test
+    public void testIntegerRssiShouldMatchEstimator() {
+        DistanceEstimator estimator = new AnalyticalDistanceEstimator();
+        CachingDistanceEstimator cachingEstimator = new CachingDistanceEstimator(estimator);
+        for (int txPower = -70; txPower <= -40; txPower++) {
+            for (int rssi = CachingDistanceEstimator.MIN_RSSI;
+                 rssi <= CachingDistanceEstimator.MAX_RSSI; rssi++) {
+                Assert.assertEquals(estimator.getDistanceInMetres(rssi, txPower),
+                        cachingEstimator.getDistanceInMetres(rssi, txPower));
+            }
+        }
+    }
+
+    @Test
+    public void testFractionalRssiShouldBeInterpolated() {
+        DistanceEstimator estimator = new AnalyticalDistanceEstimator();
+        CachingDistanceEstimator cachingEstimator = new CachingDistanceEstimator(estimator);
+        for (float rssi = -100; rssi < -30; rssi += 0.1f) {
+            float distance = estimator.getDistanceInMetres(rssi, -55);
+            float cachedDistance = cachingEstimator.getDistanceInMetres(rssi, -55);
+            Assert.assertEquals(distance, cachedDistance, distance * 0.005f);
+        }
+    }
+
+    @Test
+    public void testValuesOutsideOfTablesShouldBePassedToEstimator() {
+        DistanceEstimator estimator = new EmpiricalDistanceEstimator();
+        CachingDistanceEstimator cachingEstimator = new CachingDistanceEstimator(estimator);
+
+        Assert.assertEquals(-1.0f, cachingEstimator.getDistanceInMetres(0, -55));
+        Assert.assertEquals(estimator.getDistanceInMetres(-60, -55.5f),
+                cachingEstimator.getDistanceInMetres(-60, -55.5f));
+        Assert.assertEquals(estimator.getDistanceInMetres(-200, -55),
+                cachingEstimator.getDistanceInMetres(-200, -55));
+    }
+
+    @Test
+    public void testClearShouldApplyChangedParameters() {
+        AnalyticalDistanceEstimator estimator = new AnalyticalDistanceEstimator();
+        CachingDistanceEstimator cachingEstimator = new CachingDistanceEstimator(estimator);
+        cachingEstimator.getDistanceInMetres(-70, -55);
+        estimator.setN(3);
+        cachingEstimator.clear();
+
+        Assert.assertEquals(estimator.getDistanceInMetres(-70, -55),
+                cachingEstimator.getDistanceInMetres(-70, -55));
+    }
+
+    @Test
+    @Ignore("Benchmark, run manually.")
+    public void testCostPerEstimationOfCachedAndDirectComputation() {
+        final int numberOfEstimations = 1000000;
+        float[] rssis = new float[1024];
+        Random random = new Random(1);
+        for (int i = 0; i < rssis.length; i++) {
+            rssis[i] = -100 + random.nextFloat() * 60;
+        }
+        DistanceEstimator[] estimators = new DistanceEstimator[]{
+                new AnalyticalDistanceEstimator(),
+                new EmpiricalDistanceEstimator()
+        };
+        for (DistanceEstimator estimator : estimators) {
+            for (boolean cached : new boolean[]{false, true}) {
+                DistanceEstimator measuredEstimator = cached
+                        ? new CachingDistanceEstimator(estimator) : estimator;
+                // Warm up
+                measureCostPerEstimation(measuredEstimator, rssis, numberOfEstimations);
+                float costInNs = measureCostPerEstimation(
+                        measuredEstimator, rssis, numberOfEstimations);
+                System.out.println(estimator.getClass().getSimpleName()
+                        + (cached ? " cached: " : ": ") + costInNs + " ns per estimation");
+            }
+        }
+    }
+
+    private float measureCostPerEstimation(DistanceEstimator estimator, float[] rssis,
+                                           int numberOfEstimations) {
+        float checksum = 0;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < numberOfEstimations; i++) {
+            checksum += estimator.getDistanceInMetres(rssis[i & (rssis.length - 1)], -55);
+        }
+        long durationInNs = System.nanoTime() - startTime;
+        Assert.assertTrue(checksum > 0);
+        return (float) durationInNs / numberOfEstimations;
+    }
+}
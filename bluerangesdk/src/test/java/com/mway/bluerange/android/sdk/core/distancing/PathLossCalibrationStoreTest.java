@@ -0,0 +1,282 @@
+//
+//  PathLossCalibrationStoreTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.distancing;
+
+import com.mway.bluerange.android.sdk.core.logging.dummys.DummyFileAccessor;
+import com.mway.bluerange.android.sdk.utils.io.FileAccessor;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+
+public class PathLossCalibrationStoreTest {
+
+    private static final String BEACON_1 = "beacon1";
+    private static final String BEACON_2 = "beacon2";
+
+    private DummyFileAccessor fileAccessor;
+    private PathLossCalibrationStore store;
+    private AnalyticalDistanceEstimator model;
+
+    @Before
+    public void setUp() {
+        this.fileAccessor = new DummyFileAccessor();
+        this.store = new PathLossCalibrationStore(fileAccessor);
+        this.model = new AnalyticalDistanceEstimator();
+    }
+
+    @Test
+    public void testExactSamplesShouldYieldModelParameters() {
+        addModelSamples(BEACON_1, -60, 2.5f, 0);
+        PathLossCalibration calibration = store.getCalibration(BEACON_1);
+
+        Assert.assertEquals(-60, calibration.getA(), 0.001f);
+        Assert.assertEquals(2.5f, calibration.getN(), 0.001f);
+    }
+
+    @Test
+    public void testNoisySamplesShouldApproximateModelParameters() {
+        addModelSamples(BEACON_1, -65, 3.0f, 2);
+        PathLossCalibration calibration = store.getCalibration(BEACON_1);
+
+        Assert.assertEquals(-65, calibration.getA(), 0.5f);
+        Assert.assertEquals(3.0f, calibration.getN(), 0.2f);
+    }
+
+    @Test
+    public void testSamplesAtOneDistanceShouldOnlyFitA() {
+        store.addSample(BEACON_1, -70, 1);
+        store.addSample(BEACON_1, -72, 1);
+        PathLossCalibration calibration = store.getCalibration(BEACON_1);
+
+        Assert.assertEquals(-71, calibration.getA(), 0.001f);
+        Assert.assertEquals(AnalyticalDistanceEstimator.kDefaultN, calibration.getN());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveDistanceShouldBeRejected() {
+        store.addSample(BEACON_1, -70, 0);
+    }
+
+    @Test
+    public void testBeaconsShouldBeCalibratedIndependently() {
+        addModelSamples(BEACON_1, -60, 2.0f, 0);
+        addModelSamples(BEACON_2, -70, 3.0f, 0);
+        DistanceEstimator estimator1 = new CalibratedDistanceEstimator(store, BEACON_1);
+        DistanceEstimator estimator2 = new CalibratedDistanceEstimator(store, BEACON_2);
+
+        Assert.assertEquals(2, store.getNumberOfCalibrations());
+        Assert.assertEquals(1.0f, estimator1.getDistanceInMetres(-60, -55), 0.001f);
+        Assert.assertEquals(1.0f, estimator2.getDistanceInMetres(-70, -55), 0.001f);
+        Assert.assertEquals(10.0f, estimator2.getDistanceInMetres(-100, -55), 0.01f);
+    }
+
+    @Test
+    public void testUncalibratedBeaconShouldUseFallbackEstimator() {
+        DistanceEstimator estimator = new CalibratedDistanceEstimator(store, BEACON_1, model);
+
+        Assert.assertEquals(model.getDistanceInMetres(-70, -55),
+                estimator.getDistanceInMetres(-70, -55));
+    }
+
+    @Test
+    public void testLoadedStoreShouldEqualSavedStore() throws Exception {
+        addModelSamples(BEACON_1, -60, 2.0f, 1);
+        addModelSamples(BEACON_2, -70, 3.0f, 1);
+        store.save();
+        // Saving twice must replace the file.
+        store.save();
+
+        PathLossCalibrationStore loadedStore = new PathLossCalibrationStore(fileAccessor);
+        loadedStore.load();
+
+        Assert.assertEquals(2, loadedStore.getNumberOfCalibrations());
+        for (String beaconId : new String[]{BEACON_1, BEACON_2}) {
+            PathLossCalibration calibration = store.getCalibration(beaconId);
+            PathLossCalibration loadedCalibration = loadedStore.getCalibration(beaconId);
+            Assert.assertEquals(calibration.getNumberOfSamples(),
+                    loadedCalibration.getNumberOfSamples());
+            Assert.assertEquals(calibration.getA(), loadedCalibration.getA());
+            Assert.assertEquals(calibration.getN(), loadedCalibration.getN());
+        }
+    }
+
+    @Test
+    public void testFailedSaveShouldKeepSavedStore() throws Exception {
+        FailingFileAccessor fileAccessor = new FailingFileAccessor();
+        PathLossCalibrationStore store = new PathLossCalibrationStore(fileAccessor);
+        store.addSample(BEACON_1, -70, 1);
+        store.save();
+
+        store.addSample(BEACON_2, -70, 1);
+        fileAccessor.failing = true;
+        try {
+            store.save();
+            Assert.fail();
+        } catch (IOException e) {
+            // expected
+        }
+        fileAccessor.failing = false;
+
+        PathLossCalibrationStore loadedStore = new PathLossCalibrationStore(fileAccessor);
+        loadedStore.load();
+        Assert.assertEquals(1, loadedStore.getNumberOfCalibrations());
+    }
+
+    @Test
+    public void testInterruptedCopyShouldLoadTemporaryFile() throws Exception {
+        NonRenamingFileAccessor fileAccessor = new NonRenamingFileAccessor();
+        PathLossCalibrationStore store = new PathLossCalibrationStore(fileAccessor);
+        store.addSample(BEACON_1, -70, 1);
+        store.save();
+        Assert.assertEquals(1, fileAccessor.getFileNames().size());
+
+        store.addSample(BEACON_2, -70, 1);
+        fileAccessor.truncatedFileName = PathLossCalibrationStore.DEFAULT_FILE_NAME;
+        try {
+            store.save();
+            Assert.fail();
+        } catch (IOException e) {
+            // expected
+        }
+        fileAccessor.truncatedFileName = null;
+
+        PathLossCalibrationStore loadedStore = new PathLossCalibrationStore(fileAccessor);
+        loadedStore.load();
+        Assert.assertEquals(2, loadedStore.getNumberOfCalibrations());
+    }
+
+    @Test
+    public void testInterruptedWriteOfTemporaryFileShouldLoadOldFile() throws Exception {
+        NonRenamingFileAccessor fileAccessor = new NonRenamingFileAccessor();
+        PathLossCalibrationStore store = new PathLossCalibrationStore(fileAccessor);
+        store.addSample(BEACON_1, -70, 1);
+        store.save();
+
+        store.addSample(BEACON_2, -70, 1);
+        fileAccessor.truncatedFileName = PathLossCalibrationStore.DEFAULT_FILE_NAME + ".tmp";
+        try {
+            store.save();
+            Assert.fail();
+        } catch (IOException e) {
+            // expected
+        }
+        fileAccessor.truncatedFileName = null;
+
+        PathLossCalibrationStore loadedStore = new PathLossCalibrationStore(fileAccessor);
+        loadedStore.load();
+        Assert.assertEquals(1, loadedStore.getNumberOfCalibrations());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptFileShouldBeRejected() throws Exception {
+        store.addSample(BEACON_1, -70, 1);
+        store.save();
+        fileAccessor.corruptAllFiles();
+
+        new PathLossCalibrationStore(fileAccessor).load();
+    }
+
+    @Test
+    public void testLoadingWithoutFileShouldKeepStore() throws Exception {
+        store.addSample(BEACON_1, -70, 1);
+        store.load();
+
+        Assert.assertEquals(1, store.getNumberOfCalibrations());
+    }
+
+    private static class FailingFileAccessor extends DummyFileAccessor {
+        private boolean failing = false;
+
+        @Override
+        public OutputStream openFileOutputStream(String fileName) throws FileNotFoundException {
+            if (failing) {
+                throw new FileNotFoundException();
+            }
+            return super.openFileOutputStream(fileName);
+        }
+    }
+
+    /**
+     * A file accessor that cannot rename files and that can truncate a file while it is written.
+     */
+    private static class NonRenamingFileAccessor implements FileAccessor {
+        private final DummyFileAccessor files = new DummyFileAccessor();
+        private String truncatedFileName;
+
+        @Override
+        public List<String> getFileNames() {
+            return files.getFileNames();
+        }
+
+        @Override
+        public InputStream openFileInputStream(String fileName) throws FileNotFoundException {
+            return files.openFileInputStream(fileName);
+        }
+
+        @Override
+        public OutputStream openFileOutputStream(String fileName) throws FileNotFoundException {
+            OutputStream out = files.openFileOutputStream(fileName);
+            if (!fileName.equals(truncatedFileName)) {
+                return out;
+            }
+            return new FilterOutputStream(out) {
+                private int writtenBytes = 0;
+
+                @Override
+                public void write(int b) throws IOException {
+                    if (writtenBytes++ >= 8) {
+                        throw new IOException("Disk full");
+                    }
+                    super.write(b);
+                }
+            };
+        }
+
+        @Override
+        public void deleteFile(String fileName) {
+            files.deleteFile(fileName);
+        }
+    }
+
+    private void addModelSamples(String beaconId, float A, float n, float noise) {
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            float distance = 0.5f + random.nextFloat() * 10;
+            float rssi = model.distanceToRssiWithNAndA(distance, n, A)
+                    + (float) random.nextGaussian() * noise;
+            store.addSample(beaconId, rssi, distance);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+//
+//  BeaconMessageDuplicateFilterTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.filtering;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeDefaultReceiver;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+public class BeaconMessageDuplicateFilterTest {
+
+    private SourceNode source;
+    private BeaconMessageDuplicateFilter filter;
+    private CountingReceiver receiver;
+
+    private static class SourceNode extends BeaconMessageStreamNode {
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            sendMessageToReceivers(message);
+        }
+
+        void sendMessages(List<BeaconMessage> messages) {
+            sendMessagesToReceivers(messages);
+        }
+    }
+
+    private static class CountingReceiver extends BeaconMessageStreamNodeDefaultReceiver {
+        private int receivedMessages = 0;
+
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            receivedMessages++;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.source = new SourceNode();
+        this.filter = new BeaconMessageDuplicateFilter(source, 2000, 1000, 16);
+        this.receiver = new CountingReceiver();
+        filter.addReceiver(receiver);
+    }
+
+    private static BeaconMessage createIBeaconMessage(int minor, int rssi, long time) {
+        BeaconMessage message = new IBeaconMessage(
+                UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, minor);
+        message.setRssi(rssi);
+        message.setTimestamp(new Date(time));
+        return message;
+    }
+
+    @Test
+    public void testDuplicatesShouldBeDropped() {
+        source.onReceivedMessage(null, createIBeaconMessage(1, -50, 10000));
+        source.onReceivedMessage(null, createIBeaconMessage(1, -50, 10010));
+
+        Assert.assertEquals(1, receiver.receivedMessages);
+        Assert.assertEquals(1, filter.getDroppedMessages());
+    }
+
+    @Test
+    public void testMessagesWithDifferentIdentityOrRssiShouldPass() {
+        source.onReceivedMessage(null, createIBeaconMessage(1, -50, 10000));
+        source.onReceivedMessage(null, createIBeaconMessage(2, -50, 10000));
+        source.onReceivedMessage(null, createIBeaconMessage(1, -51, 10000));
+
+        Assert.assertEquals(3, receiver.receivedMessages);
+    }
+
+    @Test
+    public void testBeaconsWithCollidingHashCodesShouldPass() {
+        BeaconMessage message1 = new IBeaconMessage(
+                UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, 2);
+        BeaconMessage message2 = new IBeaconMessage(
+                UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 2, 1);
+        for (BeaconMessage message : new BeaconMessage[]{message1, message2}) {
+            message.setRssi(-50);
+            message.setTimestamp(new Date(10000));
+        }
+        Assert.assertEquals(message1.hashCode(), message2.hashCode());
+
+        source.onReceivedMessage(null, message1);
+        source.onReceivedMessage(null, message2);
+
+        Assert.assertEquals(2, receiver.receivedMessages);
+        Assert.assertEquals(0, filter.getDroppedMessages());
+    }
+
+    @Test
+    public void testMessagesInOtherTimestampBucketsShouldPass() {
+        source.onReceivedMessage(null, createIBeaconMessage(1, -50, 10000));
+        source.onReceivedMessage(null, createIBeaconMessage(1, -50, 11000));
+
+        Assert.assertEquals(2, receiver.receivedMessages);
+    }
+
+    @Test
+    public void testDuplicatesInBatchesShouldBeDropped() {
+        List<BeaconMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            messages.add(createIBeaconMessage(i % 5, -50, 10000));
+        }
+        source.sendMessages(messages);
+
+        Assert.assertEquals(5, receiver.receivedMessages);
+    }
+
+    @Test
+    public void testFingerprintsShouldExpireAfterWindow() {
+        source = new SourceNode();
+        filter = new BeaconMessageDuplicateFilter(source, 500, 1000, 16);
+        filter.addReceiver(receiver);
+
+        source.onReceivedMessage(null, createIBeaconMessage(1, -50, 10000));
+        source.onReceivedMessage(null, createIBeaconMessage(1, -50, 10400));
+        source.onReceivedMessage(null, createIBeaconMessage(1, -50, 10500));
+
+        Assert.assertEquals(2, receiver.receivedMessages);
+    }
+
+    @Test
+    public void testOldestFingerprintsShouldBeForgottenWhenRingIsFull() {
+        for (int i = 0; i < 100; i++) {
+            source.onReceivedMessage(null, createIBeaconMessage(i, -50, 10000));
+        }
+        // The first beacon was forgotten, the last one is still remembered.
+        source.onReceivedMessage(null, createIBeaconMessage(0, -50, 10000));
+        source.onReceivedMessage(null, createIBeaconMessage(99, -50, 10000));
+
+        Assert.assertEquals(101, receiver.receivedMessages);
+    }
+}
@@ -0,0 +1,127 @@
+//
+//  BeaconMessageFilterTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.filtering;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeDefaultReceiver;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class BeaconMessageFilterTest {
+
+    private SourceNode source;
+    private CollectingReceiver receiver;
+
+    private static class SourceNode extends BeaconMessageStreamNode {
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            sendMessageToReceivers(message);
+        }
+
+        void sendMessages(List<BeaconMessage> messages) {
+            sendMessagesToReceivers(messages);
+        }
+    }
+
+    private static class CollectingReceiver extends BeaconMessageStreamNodeDefaultReceiver {
+        private final List<BeaconMessage> messages = new ArrayList<>();
+
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            messages.add(message);
+        }
+    }
+
+    // A filter written before accepts existed, which filters in onReceivedMessage.
+    private static class EvenMinorFilter extends BeaconMessageFilter {
+        EvenMinorFilter(BeaconMessageStreamNode sender) {
+            super(sender);
+        }
+
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            if (((IBeaconMessage) message).getMinor() % 2 == 0) {
+                sendMessageToReceivers(message);
+            }
+        }
+    }
+
+    private static class OddMinorFilter extends BeaconMessageFilter {
+        OddMinorFilter(BeaconMessageStreamNode sender) {
+            super(sender);
+        }
+
+        @Override
+        public boolean accepts(BeaconMessage message) {
+            return ((IBeaconMessage) message).getMinor() % 2 == 1;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.source = new SourceNode();
+        this.receiver = new CollectingReceiver();
+    }
+
+    private static List<BeaconMessage> createMessages(int numberOfMessages) {
+        List<BeaconMessage> messages = new ArrayList<>();
+        for (int i = 0; i < numberOfMessages; i++) {
+            messages.add(new IBeaconMessage(
+                    UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, i));
+        }
+        return messages;
+    }
+
+    @Test
+    public void testBatchesShouldBeSplitForFiltersWithoutAccepts() {
+        new EvenMinorFilter(source).addReceiver(receiver);
+        source.sendMessages(createMessages(6));
+
+        Assert.assertEquals(3, receiver.messages.size());
+        for (BeaconMessage message : receiver.messages) {
+            Assert.assertEquals(0, ((IBeaconMessage) message).getMinor() % 2);
+        }
+    }
+
+    @Test
+    public void testBatchesShouldBeFilteredWithAccepts() {
+        new OddMinorFilter(source).addReceiver(receiver);
+        source.sendMessages(createMessages(6));
+
+        Assert.assertEquals(3, receiver.messages.size());
+        for (BeaconMessage message : receiver.messages) {
+            Assert.assertEquals(1, ((IBeaconMessage) message).getMinor() % 2);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+//
+//  BeaconMessageFusedFilterTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.filtering;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.RelutionTagMessageV1;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
+import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNodeDefaultReceiver;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.UUID;
+
+public class BeaconMessageFusedFilterTest {
+
+    private SourceNode source;
+    private CountingReceiver receiver;
+
+    private static class SourceNode extends BeaconMessageStreamNode {
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            sendMessageToReceivers(message);
+        }
+    }
+
+    private static class CountingReceiver extends BeaconMessageStreamNodeDefaultReceiver {
+        private int receivedMessages = 0;
+
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            receivedMessages++;
+        }
+    }
+
+    /**
+     * A filter that does more than accepting messages and, therefore, must not be fused.
+     */
+    private static class CountingFilter extends IBeaconMessageFilter {
+        private int receivedMessages = 0;
+
+        CountingFilter(BeaconMessageStreamNode senderNode) {
+            super(senderNode);
+        }
+
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            receivedMessages++;
+            super.onReceivedMessage(senderNode, message);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.source = new SourceNode();
+        this.receiver = new CountingReceiver();
+    }
+
+    private static BeaconMessage createIBeaconMessage() {
+        return new IBeaconMessage(UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, 1);
+    }
+
+    private BeaconMessageFilter createChain(BeaconMessageStreamNode sender, int length) {
+        BeaconMessageFilter filter = new IBeaconMessageFilter(sender);
+        for (int i = 1; i < length; i++) {
+            filter = new IBeaconMessageFilter(filter);
+        }
+        return filter;
+    }
+
+    @Test
+    public void testFusedChainPassesSameMessages() {
+        BeaconMessageFilter iBeaconFilter = new IBeaconMessageFilter(source);
+        BeaconMessageFilter tagFilter = new RelutionTagMessageFilter(iBeaconFilter);
+        tagFilter.addReceiver(receiver);
+        BeaconMessageFilter fusedFilter = BeaconMessageFusedFilter.fuse(tagFilter);
+
+        source.onReceivedMessage(null, createIBeaconMessage());
+        source.onReceivedMessage(null, new RelutionTagMessageV1(new long[]{1}));
+
+        Assert.assertTrue(fusedFilter instanceof BeaconMessageFusedFilter);
+        Assert.assertEquals(0, receiver.receivedMessages);
+    }
+
+    @Test
+    public void testFusedChainReplacesFiltersInGraph() {
+        BeaconMessageFilter lastFilter = createChain(source, 3);
+        lastFilter.addReceiver(receiver);
+
+        BeaconMessageFilter fusedFilter = BeaconMessageFusedFilter.fuse(lastFilter);
+        source.onReceivedMessage(null, createIBeaconMessage());
+
+        Assert.assertEquals(3, ((BeaconMessageFusedFilter) fusedFilter).getNumberOfFusedFilters());
+        Assert.assertEquals(1, source.getReceivers().size());
+        Assert.assertSame(fusedFilter, source.getReceivers().get(0));
+        Assert.assertEquals(0, lastFilter.getReceivers().size());
+        Assert.assertEquals(1, receiver.receivedMessages);
+    }
+
+    @Test
+    public void testFusedFilterTakesOverPositionOfFirstFilter() {
+        CountingReceiver firstReceiver = new CountingReceiver();
+        source.addReceiver(firstReceiver);
+        BeaconMessageFilter lastFilter = createChain(source, 2);
+        BeaconMessageStreamNode firstFilter = lastFilter.getSenders().get(0);
+        source.addReceiver(receiver);
+
+        BeaconMessageFilter fusedFilter = BeaconMessageFusedFilter.fuse(lastFilter);
+
+        Assert.assertEquals(3, source.getReceivers().size());
+        Assert.assertSame(firstReceiver, source.getReceivers().get(0));
+        Assert.assertSame(fusedFilter, source.getReceivers().get(1));
+        Assert.assertSame(receiver, source.getReceivers().get(2));
+        Assert.assertEquals(1, fusedFilter.getSenders().size());
+        Assert.assertSame(source, fusedFilter.getSenders().get(0));
+        Assert.assertEquals(0, firstFilter.getSenders().size());
+    }
+
+    @Test
+    public void testReceivingNodeIsReconnected() {
+        BeaconMessageFilter lastFilter = createChain(source, 2);
+        IBeaconMessageFilter receiverNode = new IBeaconMessageFilter(lastFilter);
+        receiverNode.addReceiver(receiver);
+
+        BeaconMessageFilter fusedFilter = BeaconMessageFusedFilter.fuse(lastFilter);
+        source.onReceivedMessage(null, createIBeaconMessage());
+
+        Assert.assertEquals(1, receiverNode.getSenders().size());
+        Assert.assertSame(fusedFilter, receiverNode.getSenders().get(0));
+        Assert.assertEquals(1, receiver.receivedMessages);
+    }
+
+    @Test
+    public void testChainStopsAtBranches() {
+        CountingFilter countingFilter = new CountingFilter(source);
+        BeaconMessageFilter branchingFilter = new IBeaconMessageFilter(countingFilter);
+        BeaconMessageFilter otherBranch = new IBeaconMessageFilter(branchingFilter);
+        BeaconMessageFilter lastFilter = createChain(branchingFilter, 2);
+        lastFilter.addReceiver(receiver);
+
+        BeaconMessageFilter fusedFilter = BeaconMessageFusedFilter.fuse(lastFilter);
+        source.onReceivedMessage(null, createIBeaconMessage());
+
+        Assert.assertEquals(2, ((BeaconMessageFusedFilter) fusedFilter).getNumberOfFusedFilters());
+        Assert.assertEquals(2, branchingFilter.getReceivers().size());
+        Assert.assertTrue(branchingFilter.getReceivers().contains(otherBranch));
+        Assert.assertEquals(1, countingFilter.receivedMessages);
+        Assert.assertEquals(1, receiver.receivedMessages);
+    }
+
+    @Test
+    public void testFiltersOverridingMessageHandlingAreNotFused() {
+        CountingFilter countingFilter = new CountingFilter(source);
+        BeaconMessageFilter lastFilter = new IBeaconMessageFilter(countingFilter);
+
+        Assert.assertSame(lastFilter, BeaconMessageFusedFilter.fuse(lastFilter));
+        source.onReceivedMessage(null, createIBeaconMessage());
+        Assert.assertEquals(1, countingFilter.receivedMessages);
+    }
+
+    @Test
+    public void testSingleFilterIsNotFused() {
+        BeaconMessageFilter filter = new IBeaconMessageFilter(source);
+        Assert.assertSame(filter, BeaconMessageFusedFilter.fuse(filter));
+    }
+
+    @Test
+    @Ignore("Benchmark, run manually.")
+    public void testCostPerMessageOfChainedAndFusedFilters() {
+        final int warmUpMessages = 100000;
+        final int measuredMessages = 1000000;
+        BeaconMessage message = createIBeaconMessage();
+        int[] chainLengths = new int[]{1, 3, 6};
+        for (int chainLength : chainLengths) {
+            for (boolean fused : new boolean[]{false, true}) {
+                SourceNode node = new SourceNode();
+                BeaconMessageFilter lastFilter = createChain(node, chainLength);
+                CountingReceiver counter = new CountingReceiver();
+                lastFilter.addReceiver(counter);
+                if (fused) {
+                    BeaconMessageFusedFilter.fuse(lastFilter);
+                }
+                for (int i = 0; i < warmUpMessages; i++) {
+                    node.onReceivedMessage(null, message);
+                }
+                long startTime = System.nanoTime();
+                for (int i = 0; i < measuredMessages; i++) {
+                    node.onReceivedMessage(null, message);
+                }
+                long durationInNs = System.nanoTime() - startTime;
+                System.out.println(chainLength + " " + (fused ? "fused" : "chained")
+                        + " filters: " + ((float) durationInNs / measuredMessages) + " ns per message");
+
+                Assert.assertEquals(warmUpMessages + measuredMessages, counter.receivedMessages);
+            }
+        }
+    }
+}
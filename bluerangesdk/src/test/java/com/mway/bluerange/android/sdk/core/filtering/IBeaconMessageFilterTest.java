@@ -26,6 +26,7 @@
 package com.mway.bluerange.android.sdk.core.filtering;
 
 import com.mway.bluerange.android.sdk.core.scanning.BeaconMessageScannerSimulator;
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
 import com.mway.bluerange.android.sdk.core.streaming.BeaconMessageStreamNode;
 
@@ -46,6 +47,10 @@ public class IBeaconMessageFilterTest {
         this.iIBeaconMessageFilter = new IBeaconMessageFilter(scanner);
         // Configure receiver
         this.receiverNode = Mockito.mock(BeaconMessageStreamNode.class);
+        // Batches are split into single messages like in a real node.
+        Mockito.doCallRealMethod().when(receiverNode).onReceivedMessages(
+                Mockito.any(BeaconMessageStreamNode.class),
+                Mockito.anyListOf(BeaconMessage.class));
         this.iIBeaconMessageFilter.addReceiver(receiverNode);
     }
 
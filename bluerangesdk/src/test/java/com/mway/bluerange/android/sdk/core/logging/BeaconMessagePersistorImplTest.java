@@ -173,6 +173,33 @@ public class BeaconMessagePersistorImplTest extends BeaconMessagePersistorTest {
         Assert.assertEquals(writtenMessages.subList(0,1), readMessages);
     }
 
+    @Test
+    public void testWriteMessagesFillsChunksUpToMaxLogSize() {
+        // 1. Write a batch that exceeds the maximum log size
+        int chunkSize = 3;
+        int maxLogSize = 7;
+        BeaconMessagePersistorImpl p = new BeaconMessagePersistorImpl(fileAccessor, chunkSize);
+        p.setTracer(tracer);
+        p.setMaxLogSize(maxLogSize);
+        p.writeMessage(getRelutionTagMessage());
+        List<BeaconMessage> writtenMessages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            writtenMessages.add(new IBeaconMessage(
+                    UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 45, i));
+        }
+        p.writeMessages(writtenMessages);
+
+        // 2. The log should contain two chunks and the remaining messages in the cache
+        Assert.assertEquals(maxLogSize, p.getTotalMessages());
+        List<BeaconMessage> readMessages = new ArrayList<>();
+        for (Iterator<BeaconMessage> iterator = p.getLogIterator(); iterator.hasNext();) {
+            readMessages.add(iterator.next());
+        }
+        Assert.assertEquals(getRelutionTagMessage(), readMessages.get(0));
+        Assert.assertEquals(writtenMessages.subList(0, maxLogSize - 1),
+                readMessages.subList(1, readMessages.size()));
+    }
+
 
     private BeaconMessage getIBeacon() {
         String uuid = "b9407f30-f5f8-466e-aff9-25556b57fe6d";
@@ -31,12 +31,12 @@ import java.util.List;
 
 import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 import com.mway.bluerange.android.sdk.core.logging.BeaconMessageLog;
-import com.mway.bluerange.android.sdk.core.logging.BeaconMessagePersistor;
+import com.mway.bluerange.android.sdk.core.logging.BeaconMessageBatchPersistor;
 
 /**
  *
  */
-public class DummyBeaconMessagePersistor implements BeaconMessagePersistor {
+public class DummyBeaconMessagePersistor extends BeaconMessageBatchPersistor {
 
     private List<BeaconMessage> beaconMessages = new ArrayList<>();
 
@@ -72,6 +72,11 @@ public class DummyBeaconMessagePersistor implements BeaconMessagePersistor {
         this.beaconMessages.add(beaconMessage);
     }
 
+    @Override
+    public void writeMessages(List<BeaconMessage> beaconMessages) {
+        this.beaconMessages.addAll(beaconMessages);
+    }
+
     @Override
     public BeaconMessageLog readLog() {
         return new BeaconMessageLog(this.beaconMessages);
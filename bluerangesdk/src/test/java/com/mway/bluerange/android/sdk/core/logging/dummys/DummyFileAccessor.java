@@ -34,12 +34,12 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.mway.bluerange.android.sdk.utils.io.FileAccessor;
+import com.mway.bluerange.android.sdk.utils.io.RenamingFileAccessor;
 
 /**
  *
  */
-public class DummyFileAccessor implements FileAccessor {
+public class DummyFileAccessor implements RenamingFileAccessor {
 
     private List<String> fileNames = new ArrayList<String>();
     private List<ByteArrayOutputStream> files = new ArrayList<>();
@@ -88,4 +88,19 @@ public class DummyFileAccessor implements FileAccessor {
         fileNames.remove(index);
         files.remove(index);
     }
+
+    @Override
+    public void renameFile(String oldFileName, String newFileName) throws IOException {
+        int index = fileNames.indexOf(oldFileName);
+        if (index == -1) {
+            throw new FileNotFoundException();
+        }
+        int newIndex = fileNames.indexOf(newFileName);
+        if (newIndex != -1) {
+            files.set(newIndex, files.get(index));
+            deleteFile(oldFileName);
+        } else {
+            fileNames.set(index, newFileName);
+        }
+    }
 }
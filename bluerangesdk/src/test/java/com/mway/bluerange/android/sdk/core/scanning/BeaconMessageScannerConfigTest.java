@@ -82,4 +82,20 @@ public class BeaconMessageScannerConfigTest {
         Assert.assertEquals(UUID.fromString(uuid1), messages.get(0).getUUID());
         Assert.assertEquals(UUID.fromString(uuid2), messages.get(1).getUUID());
     }
+
+    @Test
+    public void shouldOnlyDeliverSubscribedMessageType() {
+        BeaconMessageScannerSimulator scanner = new BeaconMessageScannerSimulator();
+        BeaconMessageStreamNodeReceiver mockReceiver = Mockito.mock(BeaconMessageStreamNodeReceiver.class);
+        scanner.addReceiver(IBeaconMessage.class, mockReceiver);
+
+        scanner.simulateIBeacon("b2407f30-f5f8-466e-aff9-25556b57fe6d", 1, 1);
+        scanner.simulateRelutionTagsV1(new long[]{1, 2});
+        scanner.startScanning();
+
+        ArgumentCaptor<BeaconMessage> messageArgument = ArgumentCaptor.forClass(BeaconMessage.class);
+        Mockito.verify(mockReceiver, Mockito.times(1)).onReceivedMessage(
+                Mockito.any(BeaconMessageStreamNode.class), messageArgument.capture());
+        Assert.assertTrue(messageArgument.getValue() instanceof IBeaconMessage);
+    }
 }
@@ -25,6 +25,14 @@
 
 package com.mway.bluerange.android.sdk.core.scanning.messages;
 
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.UUID;
 
 /**
@@ -35,4 +43,20 @@ public class IBeaconMessageTest extends BeaconMessageTest {
     public BeaconMessage getCut() {
         return new IBeaconMessage(UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 45, 1);
     }
+
+    @Test
+    public void testDeserializedMessageShouldCountAsOneMessage() throws Exception {
+        BeaconMessage message = getCut();
+        message.setNumberOfAggregatedMessages(5);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(byteArrayOutputStream);
+        out.writeObject(message);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(byteArrayOutputStream.toByteArray()));
+        BeaconMessage deserializedMessage = (BeaconMessage) in.readObject();
+
+        Assert.assertEquals(message, deserializedMessage);
+        Assert.assertEquals(1, deserializedMessage.getNumberOfAggregatedMessages());
+    }
 }
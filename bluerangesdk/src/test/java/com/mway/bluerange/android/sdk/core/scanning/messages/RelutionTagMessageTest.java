@@ -25,12 +25,28 @@
 
 package com.mway.bluerange.android.sdk.core.scanning.messages;
 
+import junit.framework.Assert;
+
+import org.junit.Test;
+
 /**
  *
  */
 public class RelutionTagMessageTest extends BeaconMessageTest {
     @Override
     public BeaconMessage getCut() {
-        return new RelutionTagMessageV1(null);
+        return new RelutionTagMessageV1(new long[]{1, 2});
+    }
+
+    @Test
+    public void testEqualMessagesShouldHaveEqualHashCodes() {
+        BeaconMessage message = new RelutionTagMessageV1(new long[]{1, 2, 3});
+        BeaconMessage reorderedMessage = new RelutionTagMessageV1(new long[]{3, 1, 2});
+        BeaconMessage duplicateTagMessage = new RelutionTagMessageV1(new long[]{2, 1, 3, 1});
+
+        Assert.assertEquals(message, reorderedMessage);
+        Assert.assertEquals(message.hashCode(), reorderedMessage.hashCode());
+        Assert.assertEquals(message, duplicateTagMessage);
+        Assert.assertEquals(message.hashCode(), duplicateTagMessage.hashCode());
     }
 }
@@ -0,0 +1,284 @@
+//
+//  BeaconMessageAsyncStreamNodeTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.streaming;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
+import com.mway.bluerange.android.sdk.helper.TestBlocker;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BeaconMessageAsyncStreamNodeTest {
+
+    private static final UUID UUID_1 = UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d");
+
+    private SourceNode source;
+    private BlockingReceiver receiver;
+    private BeaconMessageAsyncStreamNode asyncNode;
+
+    private static class SourceNode extends BeaconMessageStreamNode {
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            sendMessageToReceivers(message);
+        }
+    }
+
+    /**
+     * Blocks the delivery of the first message until it is released.
+     */
+    private static class BlockingReceiver extends BeaconMessageStreamNodeDefaultReceiver {
+        private final CountDownLatch firstMessageReceived = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final List<BeaconMessage> messages = new ArrayList<>();
+        private final List<Thread> threads = new ArrayList<>();
+
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            synchronized (messages) {
+                messages.add(message);
+                threads.add(Thread.currentThread());
+            }
+            firstMessageReceived.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                // Stop waiting.
+            }
+        }
+
+        void awaitFirstMessage() throws InterruptedException {
+            Assert.assertTrue(firstMessageReceived.await(1, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        List<BeaconMessage> awaitMessages(int count) {
+            TestBlocker testBlocker = new TestBlocker();
+            for (int i = 0; i < 100; i++) {
+                synchronized (messages) {
+                    if (messages.size() >= count) {
+                        return new ArrayList<>(messages);
+                    }
+                }
+                testBlocker.blockTest(10);
+            }
+            synchronized (messages) {
+                return new ArrayList<>(messages);
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.source = new SourceNode();
+        this.receiver = new BlockingReceiver();
+    }
+
+    @After
+    public void tearDown() {
+        receiver.release();
+        if (asyncNode != null) {
+            asyncNode.stop();
+        }
+    }
+
+    private void createAsyncNode(int capacity, BeaconMessageAsyncStreamNode.OverflowPolicy policy)
+            throws InterruptedException {
+        asyncNode = new BeaconMessageAsyncStreamNode(source, capacity, policy);
+        asyncNode.addReceiver(receiver);
+        // Occupy the consumer thread, so that all following messages stay in the buffer.
+        source.onReceivedMessage(null, createMessage(0, -50));
+        receiver.awaitFirstMessage();
+    }
+
+    private static BeaconMessage createMessage(int minor, int rssi) {
+        BeaconMessage message = new IBeaconMessage(UUID_1, 1, minor);
+        message.setRssi(rssi);
+        return message;
+    }
+
+    @Test
+    public void testMessagesAreDeliveredOnConsumerThread() throws InterruptedException {
+        createAsyncNode(4, BeaconMessageAsyncStreamNode.OverflowPolicy.DROP_NEWEST);
+        source.onReceivedMessage(null, createMessage(1, -50));
+        receiver.release();
+
+        List<BeaconMessage> messages = receiver.awaitMessages(2);
+        Assert.assertEquals(2, messages.size());
+        Assert.assertNotSame(Thread.currentThread(), receiver.threads.get(0));
+        Assert.assertEquals(0, asyncNode.getDroppedMessages());
+    }
+
+    @Test
+    public void testDeliveredBatchesCanBeKeptButNotModified() throws InterruptedException {
+        final List<List<BeaconMessage>> batches = new ArrayList<>();
+        createAsyncNode(4, BeaconMessageAsyncStreamNode.OverflowPolicy.DROP_NEWEST);
+        asyncNode.addReceiver(new BeaconMessageStreamNodeDefaultReceiver() {
+            @Override
+            public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+                // Single messages are not kept.
+            }
+
+            @Override
+            public void onReceivedMessages(BeaconMessageStreamNode senderNode,
+                                           List<BeaconMessage> messages) {
+                synchronized (batches) {
+                    batches.add(messages);
+                }
+            }
+        });
+        source.onReceivedMessage(null, createMessage(1, -50));
+        source.onReceivedMessage(null, createMessage(2, -50));
+        receiver.release();
+        receiver.awaitMessages(3);
+        // The next message must not be delivered in the list of the previous batch.
+        source.onReceivedMessage(null, createMessage(3, -50));
+        receiver.awaitMessages(4);
+
+        List<BeaconMessage> batch;
+        synchronized (batches) {
+            Assert.assertEquals(1, batches.size());
+            batch = batches.get(0);
+        }
+        Assert.assertEquals(2, batch.size());
+        Assert.assertEquals(createMessage(2, -50), batch.get(1));
+        try {
+            batch.clear();
+            Assert.fail("The batch must not be modifiable.");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testDropNewestKeepsBufferedMessages() throws InterruptedException {
+        createAsyncNode(2, BeaconMessageAsyncStreamNode.OverflowPolicy.DROP_NEWEST);
+        source.onReceivedMessage(null, createMessage(1, -50));
+        source.onReceivedMessage(null, createMessage(2, -50));
+        source.onReceivedMessage(null, createMessage(3, -50));
+        Assert.assertEquals(1, asyncNode.getDroppedMessages());
+        receiver.release();
+
+        List<BeaconMessage> messages = receiver.awaitMessages(3);
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals(createMessage(1, -50), messages.get(1));
+        Assert.assertEquals(createMessage(2, -50), messages.get(2));
+    }
+
+    @Test
+    public void testDropOldestKeepsNewestMessages() throws InterruptedException {
+        createAsyncNode(2, BeaconMessageAsyncStreamNode.OverflowPolicy.DROP_OLDEST);
+        source.onReceivedMessage(null, createMessage(1, -50));
+        source.onReceivedMessage(null, createMessage(2, -50));
+        source.onReceivedMessage(null, createMessage(3, -50));
+        Assert.assertEquals(1, asyncNode.getDroppedMessages());
+        receiver.release();
+
+        List<BeaconMessage> messages = receiver.awaitMessages(3);
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals(createMessage(2, -50), messages.get(1));
+        Assert.assertEquals(createMessage(3, -50), messages.get(2));
+    }
+
+    @Test
+    public void testCoalesceReplacesMessageOfSameBeacon() throws InterruptedException {
+        createAsyncNode(2, BeaconMessageAsyncStreamNode.OverflowPolicy.COALESCE);
+        source.onReceivedMessage(null, createMessage(1, -50));
+        source.onReceivedMessage(null, createMessage(2, -50));
+        source.onReceivedMessage(null, createMessage(1, -70));
+        Assert.assertEquals(0, asyncNode.getDroppedMessages());
+        Assert.assertEquals(1, asyncNode.getCoalescedMessages());
+        receiver.release();
+
+        List<BeaconMessage> messages = receiver.awaitMessages(3);
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals(createMessage(1, -70), messages.get(1));
+        Assert.assertEquals(-70, messages.get(1).getRssi());
+        Assert.assertEquals(createMessage(2, -50), messages.get(2));
+    }
+
+    @Test
+    public void testCoalesceReplacesMessageAfterOldestMessageWasDropped()
+            throws InterruptedException {
+        createAsyncNode(2, BeaconMessageAsyncStreamNode.OverflowPolicy.COALESCE);
+        source.onReceivedMessage(null, createMessage(1, -50));
+        source.onReceivedMessage(null, createMessage(2, -50));
+        // Drops the message of beacon 1, so that the message of beacon 2 moves to the front.
+        source.onReceivedMessage(null, createMessage(3, -50));
+        source.onReceivedMessage(null, createMessage(2, -70));
+        source.onReceivedMessage(null, createMessage(3, -80));
+        Assert.assertEquals(1, asyncNode.getDroppedMessages());
+        Assert.assertEquals(2, asyncNode.getCoalescedMessages());
+        receiver.release();
+
+        List<BeaconMessage> messages = receiver.awaitMessages(3);
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals(-70, messages.get(1).getRssi());
+        Assert.assertEquals(createMessage(3, -80), messages.get(2));
+        Assert.assertEquals(-80, messages.get(2).getRssi());
+    }
+
+    @Test
+    public void testConsumerThreadShouldBeDaemon() throws InterruptedException {
+        createAsyncNode(1, BeaconMessageAsyncStreamNode.OverflowPolicy.DROP_NEWEST);
+
+        Assert.assertTrue(receiver.threads.get(0).isDaemon());
+    }
+
+    @Test
+    public void testBlockWaitsUntilBufferHasFreeSlot() throws InterruptedException {
+        createAsyncNode(1, BeaconMessageAsyncStreamNode.OverflowPolicy.BLOCK);
+        source.onReceivedMessage(null, createMessage(1, -50));
+        Thread blockedSender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                source.onReceivedMessage(null, createMessage(2, -50));
+            }
+        });
+        blockedSender.start();
+        blockedSender.join(100);
+        Assert.assertTrue(blockedSender.isAlive());
+
+        receiver.release();
+        blockedSender.join(1000);
+        Assert.assertFalse(blockedSender.isAlive());
+
+        List<BeaconMessage> messages = receiver.awaitMessages(3);
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals(0, asyncNode.getDroppedMessages());
+    }
+}
@@ -0,0 +1,127 @@
+//
+//  BeaconMessageCoalescingQueuedStreamNodeTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.streaming;
+
+import com.mway.bluerange.android.sdk.core.scanning.BeaconMessageScannerSimulator;
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconJoinMeMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.RelutionTagMessageV1;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+public class BeaconMessageCoalescingQueuedStreamNodeTest {
+
+    private BeaconMessageCoalescingQueuedStreamNode queue;
+
+    @Before
+    public void setUp() {
+        this.queue = new BeaconMessageCoalescingQueuedStreamNode(new BeaconMessageScannerSimulator());
+    }
+
+    private static BeaconMessage createIBeaconMessage(int minor, int rssi) {
+        BeaconMessage message = new IBeaconMessage(
+                UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, minor);
+        message.setRssi(rssi);
+        return message;
+    }
+
+    private static BeaconMessage createJoinMeMessage(int nodeId) {
+        return new BeaconJoinMeMessage(nodeId, 0, (short) 0, (short) 0, (short) 0, (short) 0,
+                (short) 0, (short) 0, 0, 0, 0);
+    }
+
+    @Test
+    public void testShouldKeepOnlyNewestMessageOfEachBeacon() throws InterruptedException {
+        queue.onReceivedMessage(null, createIBeaconMessage(1, -50));
+        queue.onReceivedMessage(null, createIBeaconMessage(1, -60));
+        queue.onReceivedMessage(null, createIBeaconMessage(1, -70));
+
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(2, queue.getCoalescedMessages());
+        Assert.assertEquals(-70, queue.pullBeaconMessage().getRssi());
+    }
+
+    @Test
+    public void testShouldPullBeaconsInOrderOfFirstArrival() throws InterruptedException {
+        queue.onReceivedMessage(null, createIBeaconMessage(1, -50));
+        queue.onReceivedMessage(null, createIBeaconMessage(2, -50));
+        queue.onReceivedMessage(null, createIBeaconMessage(1, -60));
+
+        BeaconMessage message1 = queue.pullBeaconMessage();
+        BeaconMessage message2 = queue.pullBeaconMessage();
+
+        Assert.assertEquals(createIBeaconMessage(1, -60), message1);
+        Assert.assertEquals(-60, message1.getRssi());
+        Assert.assertEquals(createIBeaconMessage(2, -50), message2);
+    }
+
+    @Test
+    public void testShouldDistinguishMessageTypes() {
+        List<BeaconMessage> messages = new ArrayList<>();
+        messages.add(createIBeaconMessage(1, -50));
+        messages.add(createJoinMeMessage(1));
+        messages.add(createJoinMeMessage(1));
+        messages.add(new RelutionTagMessageV1(new long[]{1, 2}));
+        messages.add(new RelutionTagMessageV1(new long[]{2, 1}));
+        queue.onReceivedMessages(null, messages);
+
+        Assert.assertEquals(3, queue.size());
+    }
+
+    @Test
+    public void testShouldNotExceedMaximumSize() {
+        queue.setMaximumSize(10);
+        for (int i = 0; i < 100; i++) {
+            queue.onReceivedMessage(null, createIBeaconMessage(i, -50));
+        }
+        // Messages of queued beacons are still accepted.
+        queue.onReceivedMessage(null, createIBeaconMessage(0, -60));
+
+        Assert.assertEquals(10, queue.size());
+        Assert.assertEquals(1, queue.getCoalescedMessages());
+    }
+
+    @Test
+    public void testPullMessagesShouldRemoveAllMessages() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            queue.onReceivedMessage(null, createIBeaconMessage(i, -50));
+        }
+        List<BeaconMessage> messages = new ArrayList<>();
+        int pulledMessages = queue.pullBeaconMessages(messages, Integer.MAX_VALUE);
+
+        Assert.assertEquals(10, pulledMessages);
+        Assert.assertEquals(createIBeaconMessage(0, -50), messages.get(0));
+        Assert.assertNull(queue.pollBeaconMessage(10, TimeUnit.MILLISECONDS));
+    }
+}
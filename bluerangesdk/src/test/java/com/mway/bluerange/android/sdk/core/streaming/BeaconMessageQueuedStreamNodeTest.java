@@ -28,14 +28,20 @@ package com.mway.bluerange.android.sdk.core.streaming;
 import com.mway.bluerange.android.sdk.helper.TestBlocker;
 import com.mway.bluerange.android.sdk.helper.TestFailure;
 import com.mway.bluerange.android.sdk.core.scanning.BeaconMessageScannerSimulator;
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
 import com.mway.bluerange.android.sdk.core.scanning.messages.IBeacon;
 import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
 
 import junit.framework.Assert;
 
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -117,4 +123,133 @@ public class BeaconMessageQueuedStreamNodeTest {
 
         Assert.assertFalse(failure.isFailed());
     }
+
+    @Test
+    public void testShouldNotExceedMaximumSize() {
+        queue.setMaximumSize(100);
+        for (int i = 0; i < 1000; i++) {
+            queue.onReceivedMessage(null, createMessage(i));
+        }
+        Assert.assertEquals(100, queue.size());
+    }
+
+    @Test
+    public void testPollShouldReturnNullAfterTimeout() throws InterruptedException {
+        BeaconMessage message = queue.pollBeaconMessage(50, TimeUnit.MILLISECONDS);
+        Assert.assertNull(message);
+    }
+
+    @Test
+    public void testPollShouldReturnQueuedMessage() throws InterruptedException {
+        queue.onReceivedMessage(null, createMessage(1));
+        BeaconMessage message = queue.pollBeaconMessage(50, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(createMessage(1), message);
+    }
+
+    @Test
+    public void testDrainShouldRemoveOldestMessagesInOrder() {
+        for (int i = 0; i < 10; i++) {
+            queue.onReceivedMessage(null, createMessage(i));
+        }
+        List<BeaconMessage> messages = new ArrayList<>();
+        int drainedMessages = queue.drainTo(messages, 4);
+
+        Assert.assertEquals(4, drainedMessages);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(createMessage(i), messages.get(i));
+        }
+        Assert.assertEquals(6, queue.size());
+    }
+
+    @Test
+    public void testPullMessagesShouldReturnAllPendingMessages() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            queue.onReceivedMessage(null, createMessage(i));
+        }
+        List<BeaconMessage> messages = new ArrayList<>();
+        int pulledMessages = queue.pullBeaconMessages(messages, Integer.MAX_VALUE);
+
+        Assert.assertEquals(10, pulledMessages);
+        Assert.assertEquals(0, queue.size());
+    }
+
+    @Test
+    @Ignore("Benchmark, run manually.")
+    public void testThroughputWithTenThousandQueuedMessages() throws InterruptedException {
+        final int queuedMessages = 10 * 1024;
+        final int rounds = 20;
+        List<BeaconMessage> messages = new ArrayList<>();
+        for (int i = 0; i < queuedMessages; i++) {
+            messages.add(createMessage(i));
+        }
+
+        long arrayListDurationInNs = 0;
+        long ringBufferDurationInNs = 0;
+        long drainDurationInNs = 0;
+        for (int round = 0; round < rounds; round++) {
+            // Previous implementation
+            ArrayListQueue arrayListQueue = new ArrayListQueue();
+            for (BeaconMessage message : messages) {
+                arrayListQueue.push(message);
+            }
+            long startTime = System.nanoTime();
+            for (int i = 0; i < queuedMessages; i++) {
+                arrayListQueue.pull();
+            }
+            arrayListDurationInNs += System.nanoTime() - startTime;
+
+            // Ring buffer, one message per pull
+            BeaconMessageQueuedStreamNode ringBufferQueue = new BeaconMessageQueuedStreamNode(scanner);
+            ringBufferQueue.onReceivedMessages(null, messages);
+            startTime = System.nanoTime();
+            for (int i = 0; i < queuedMessages; i++) {
+                ringBufferQueue.pullBeaconMessage();
+            }
+            ringBufferDurationInNs += System.nanoTime() - startTime;
+
+            // Ring buffer, all messages at once
+            ringBufferQueue.onReceivedMessages(null, messages);
+            List<BeaconMessage> batch = new ArrayList<>(queuedMessages);
+            startTime = System.nanoTime();
+            ringBufferQueue.pullBeaconMessages(batch, Integer.MAX_VALUE);
+            drainDurationInNs += System.nanoTime() - startTime;
+            Assert.assertEquals(queuedMessages, batch.size());
+        }
+
+        System.out.println("Pulling " + queuedMessages + " messages (ArrayList): "
+                + (arrayListDurationInNs / rounds / 1000) + " us");
+        System.out.println("Pulling " + queuedMessages + " messages (ring buffer): "
+                + (ringBufferDurationInNs / rounds / 1000) + " us");
+        System.out.println("Pulling " + queuedMessages + " messages (ring buffer, batch): "
+                + (drainDurationInNs / rounds / 1000) + " us");
+    }
+
+    private static BeaconMessage createMessage(int minor) {
+        return new IBeaconMessage(UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, minor);
+    }
+
+    /**
+     * The queue used by this node before the ring buffer was introduced.
+     */
+    private static class ArrayListQueue {
+        private final List<BeaconMessage> messageQueue = new ArrayList<>();
+
+        void push(BeaconMessage message) {
+            synchronized (messageQueue) {
+                messageQueue.add(message);
+                messageQueue.notifyAll();
+            }
+        }
+
+        BeaconMessage pull() throws InterruptedException {
+            synchronized (messageQueue) {
+                while (messageQueue.isEmpty()) {
+                    messageQueue.wait();
+                }
+                BeaconMessage message = messageQueue.get(0);
+                messageQueue.remove(0);
+                return message;
+            }
+        }
+    }
 }
@@ -0,0 +1,200 @@
+//
+//  BeaconMessageStreamNodeMetricsTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.streaming;
+
+import com.mway.bluerange.android.sdk.core.filtering.BeaconMessageFilter;
+import com.mway.bluerange.android.sdk.core.filtering.IBeaconMessageFilter;
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.RelutionTagMessageV1;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class BeaconMessageStreamNodeMetricsTest {
+
+    private SourceNode source;
+    private IBeaconMessageFilter filter;
+    private CountingReceiver receiver;
+    private BeaconMessageStreamMetricsRegistry registry;
+
+    private static class SourceNode extends BeaconMessageStreamNode {
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            sendMessageToReceivers(message);
+        }
+
+        void sendMessages(List<BeaconMessage> messages) {
+            sendMessagesToReceivers(messages);
+        }
+    }
+
+    private static class CountingReceiver extends BeaconMessageStreamNodeDefaultReceiver {
+        private int receivedMessages = 0;
+
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            receivedMessages++;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.source = new SourceNode();
+        this.filter = new IBeaconMessageFilter(source);
+        this.receiver = new CountingReceiver();
+        filter.addReceiver(receiver);
+        this.registry = new BeaconMessageStreamMetricsRegistry();
+        registry.register("source", source);
+        registry.register("filter", filter);
+    }
+
+    @After
+    public void tearDown() {
+        registry.clear();
+    }
+
+    private static BeaconMessage createIBeaconMessage() {
+        return new IBeaconMessage(UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, 1);
+    }
+
+    @Test
+    public void testMetricsShouldBeDisabledByDefault() {
+        source.onReceivedMessage(null, createIBeaconMessage());
+
+        Assert.assertFalse(filter.isMetricsEnabled());
+        Assert.assertNull(filter.getMetrics());
+        Assert.assertTrue(registry.getSnapshot().isEmpty());
+        Assert.assertEquals(1, receiver.receivedMessages);
+    }
+
+    @Test
+    public void testMessagesShouldBeCounted() {
+        registry.setEnabled(true);
+        source.onReceivedMessage(null, createIBeaconMessage());
+        source.onReceivedMessage(null, new RelutionTagMessageV1(new long[]{1}));
+        List<BeaconMessage> messages = new ArrayList<>();
+        messages.add(createIBeaconMessage());
+        messages.add(createIBeaconMessage());
+        messages.add(new RelutionTagMessageV1(new long[]{1}));
+        source.sendMessages(messages);
+
+        Map<String, BeaconMessageStreamNodeMetrics.Snapshot> snapshot = registry.getSnapshot();
+        BeaconMessageStreamNodeMetrics.Snapshot sourceMetrics = snapshot.get("source");
+        BeaconMessageStreamNodeMetrics.Snapshot filterMetrics = snapshot.get("filter");
+
+        Assert.assertEquals(5, sourceMetrics.getSentMessages());
+        // The filter only subscribed to iBeacon messages.
+        Assert.assertEquals(3, filterMetrics.getReceivedMessages());
+        Assert.assertEquals(3, filterMetrics.getSentMessages());
+        Assert.assertEquals(0, filterMetrics.getDroppedMessages());
+        // One sample per single message and one per batch.
+        Assert.assertEquals(2, filterMetrics.getNumberOfLatencySamples());
+    }
+
+    @Test
+    public void testRejectedMessagesShouldBeCountedAsDropped() {
+        BeaconMessageFilterStub rejectingFilter = new BeaconMessageFilterStub(source);
+        registry.register("rejectingFilter", rejectingFilter);
+        registry.setEnabled(true);
+        source.onReceivedMessage(null, createIBeaconMessage());
+
+        BeaconMessageStreamNodeMetrics.Snapshot metrics
+                = registry.getSnapshot().get("rejectingFilter");
+        Assert.assertEquals(1, metrics.getReceivedMessages());
+        Assert.assertEquals(1, metrics.getDroppedMessages());
+        Assert.assertEquals(0, metrics.getSentMessages());
+    }
+
+    private static class BeaconMessageFilterStub extends BeaconMessageFilter {
+        BeaconMessageFilterStub(BeaconMessageStreamNode senderNode) {
+            super(senderNode);
+        }
+
+        @Override
+        public boolean accepts(BeaconMessage message) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testDisablingRegistryShouldDisableMetrics() {
+        registry.setEnabled(true);
+        registry.setEnabled(false);
+        source.onReceivedMessage(null, createIBeaconMessage());
+
+        Assert.assertNull(filter.getMetrics());
+        Assert.assertTrue(registry.getSnapshot().isEmpty());
+    }
+
+    @Test
+    public void testLatencyHistogramBuckets() {
+        BeaconMessageStreamNodeMetrics metrics = new BeaconMessageStreamNodeMetrics();
+        metrics.recordLatency(0);
+        metrics.recordLatency(1);
+        metrics.recordLatency(1000);
+        metrics.recordLatency(1023);
+        metrics.recordLatency(1024);
+        long[] histogram = metrics.getSnapshot().getLatencyHistogram();
+
+        Assert.assertEquals(1, histogram[0]);
+        Assert.assertEquals(1, histogram[1]);
+        Assert.assertEquals(2, histogram[10]);
+        Assert.assertEquals(1, histogram[11]);
+        Assert.assertEquals(1023, metrics.getSnapshot().getLatencyPercentileInNs(0.8));
+        Assert.assertEquals(2047, metrics.getSnapshot().getLatencyPercentileInNs(1.0));
+    }
+
+    @Test
+    @Ignore("Benchmark, run manually.")
+    public void testCostPerMessageWithAndWithoutMetrics() {
+        final int warmUpMessages = 100000;
+        final int measuredMessages = 1000000;
+        BeaconMessage message = createIBeaconMessage();
+        for (boolean enabled : new boolean[]{false, true}) {
+            registry.setEnabled(enabled);
+            for (int i = 0; i < warmUpMessages; i++) {
+                source.onReceivedMessage(null, message);
+            }
+            long startTime = System.nanoTime();
+            for (int i = 0; i < measuredMessages; i++) {
+                source.onReceivedMessage(null, message);
+            }
+            long durationInNs = System.nanoTime() - startTime;
+            System.out.println("Metrics " + (enabled ? "enabled" : "disabled") + ": "
+                    + ((float) durationInNs / measuredMessages) + " ns per message");
+        }
+        Assert.assertEquals(2 * (warmUpMessages + measuredMessages), receiver.receivedMessages);
+    }
+}
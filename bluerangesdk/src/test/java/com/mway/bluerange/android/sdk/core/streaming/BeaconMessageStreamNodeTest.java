@@ -0,0 +1,279 @@
+//
+//  BeaconMessageStreamNodeTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.core.streaming;
+
+import com.mway.bluerange.android.sdk.core.scanning.messages.BeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.EddystoneUidMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.IBeaconMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.RelutionTagMessage;
+import com.mway.bluerange.android.sdk.core.scanning.messages.RelutionTagMessageV1;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+public class BeaconMessageStreamNodeTest {
+
+    private SourceNode source;
+    private BeaconMessage message;
+
+    private static class SourceNode extends BeaconMessageStreamNode {
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            sendMessageToReceivers(message);
+        }
+
+        @Override
+        public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+            sendMessagesToReceivers(messages);
+        }
+    }
+
+    private static class CountingReceiver extends BeaconMessageStreamNodeDefaultReceiver {
+        private int receivedMessages = 0;
+        private int receivedBatches = 0;
+
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            receivedMessages++;
+        }
+
+        @Override
+        public void onReceivedMessages(BeaconMessageStreamNode senderNode, List<BeaconMessage> messages) {
+            receivedBatches++;
+            receivedMessages += messages.size();
+        }
+    }
+
+    private static class SingleMessageReceiver implements BeaconMessageStreamNodeReceiver {
+        private int receivedMessages = 0;
+
+        @Override
+        public void onMeshActive(BeaconMessageStreamNode senderNode) {}
+
+        @Override
+        public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+            receivedMessages++;
+        }
+
+        @Override
+        public void onMeshInactive(BeaconMessageStreamNode senderNode) {}
+    }
+
+    @Before
+    public void setUp() {
+        this.source = new SourceNode();
+        this.message = new IBeaconMessage(
+                UUID.fromString("b9407f30-f5f8-466e-aff9-25556b57fe6d"), 1, 1);
+    }
+
+    @Test
+    public void testMessageIsDeliveredToAllReceivers() {
+        CountingReceiver receiver1 = new CountingReceiver();
+        CountingReceiver receiver2 = new CountingReceiver();
+        source.addReceiver(receiver1);
+        source.addReceiver(receiver2);
+
+        source.onReceivedMessage(null, message);
+
+        Assert.assertEquals(1, receiver1.receivedMessages);
+        Assert.assertEquals(1, receiver2.receivedMessages);
+    }
+
+    @Test
+    public void testRemovedReceiverDoesNotReceiveMessages() {
+        CountingReceiver receiver1 = new CountingReceiver();
+        CountingReceiver receiver2 = new CountingReceiver();
+        source.addReceiver(receiver1);
+        source.addReceiver(receiver2);
+        source.removeReceiver(receiver1);
+
+        source.onReceivedMessage(null, message);
+
+        Assert.assertEquals(0, receiver1.receivedMessages);
+        Assert.assertEquals(1, receiver2.receivedMessages);
+        Assert.assertEquals(1, source.getReceivers().size());
+    }
+
+    @Test
+    public void testReceiversCanBeModifiedWhileDeliveringMessages() {
+        final CountingReceiver lateReceiver = new CountingReceiver();
+        source.addReceiver(new BeaconMessageStreamNodeDefaultReceiver() {
+            @Override
+            public void onReceivedMessage(BeaconMessageStreamNode senderNode, BeaconMessage message) {
+                // Modifying the receivers during delivery must not affect the running delivery.
+                source.addReceiver(lateReceiver);
+                source.removeReceiver(this);
+            }
+        });
+
+        source.onReceivedMessage(null, message);
+        Assert.assertEquals(0, lateReceiver.receivedMessages);
+
+        source.onReceivedMessage(null, message);
+        Assert.assertEquals(1, lateReceiver.receivedMessages);
+    }
+
+    @Test
+    public void testGetReceiversReturnsSnapshot() {
+        source.addReceiver(new CountingReceiver());
+        List<BeaconMessageStreamNodeReceiver> receivers = source.getReceivers();
+
+        source.addReceiver(new CountingReceiver());
+
+        Assert.assertEquals(1, receivers.size());
+        Assert.assertEquals(2, source.getReceivers().size());
+    }
+
+    @Test
+    public void testBatchIsDeliveredAsOneCallToBatchReceivers() {
+        CountingReceiver batchReceiver = new CountingReceiver();
+        SingleMessageReceiver singleMessageReceiver = new SingleMessageReceiver();
+        source.addReceiver(batchReceiver);
+        source.addReceiver(singleMessageReceiver);
+
+        source.onReceivedMessages(null, Arrays.asList(message, message, message));
+
+        Assert.assertEquals(1, batchReceiver.receivedBatches);
+        Assert.assertEquals(3, batchReceiver.receivedMessages);
+        Assert.assertEquals(3, singleMessageReceiver.receivedMessages);
+    }
+
+    @Test
+    public void testEmptyBatchIsNotDelivered() {
+        CountingReceiver batchReceiver = new CountingReceiver();
+        source.addReceiver(batchReceiver);
+
+        source.onReceivedMessages(null, new ArrayList<BeaconMessage>());
+
+        Assert.assertEquals(0, batchReceiver.receivedBatches);
+    }
+
+    @Test
+    public void testTypedReceiverOnlyReceivesMessagesOfItsType() {
+        CountingReceiver iBeaconReceiver = new CountingReceiver();
+        CountingReceiver tagReceiver = new CountingReceiver();
+        CountingReceiver allMessagesReceiver = new CountingReceiver();
+        source.addReceiver(IBeaconMessage.class, iBeaconReceiver);
+        source.addReceiver(RelutionTagMessageV1.class, tagReceiver);
+        source.addReceiver(allMessagesReceiver);
+
+        source.onReceivedMessage(null, message);
+        source.onReceivedMessage(null, message);
+        source.onReceivedMessage(null, new RelutionTagMessageV1(new long[]{1}));
+
+        Assert.assertEquals(2, iBeaconReceiver.receivedMessages);
+        Assert.assertEquals(1, tagReceiver.receivedMessages);
+        Assert.assertEquals(3, allMessagesReceiver.receivedMessages);
+    }
+
+    @Test
+    public void testTypedReceiverReceivesSubtypes() throws Exception {
+        CountingReceiver eddystoneReceiver = new CountingReceiver();
+        source.addReceiver(EddystoneUidMessage.class, eddystoneReceiver);
+
+        source.onReceivedMessage(null, new RelutionTagMessage("65AC11A8F8C51FF6476F", new int[]{1}));
+        source.onReceivedMessage(null, message);
+
+        Assert.assertEquals(1, eddystoneReceiver.receivedMessages);
+    }
+
+    @Test
+    public void testTypedReceiverReceivesOnlyMatchingPartOfBatch() {
+        CountingReceiver tagReceiver = new CountingReceiver();
+        CountingReceiver removedReceiver = new CountingReceiver();
+        source.addReceiver(RelutionTagMessageV1.class, tagReceiver);
+        source.addReceiver(IBeaconMessage.class, removedReceiver);
+        source.removeReceiver(removedReceiver);
+
+        source.onReceivedMessages(null, Arrays.asList(message,
+                new RelutionTagMessageV1(new long[]{1}), message));
+        source.onReceivedMessages(null, Arrays.asList(message, message));
+
+        Assert.assertEquals(1, tagReceiver.receivedBatches);
+        Assert.assertEquals(1, tagReceiver.receivedMessages);
+        Assert.assertEquals(0, removedReceiver.receivedMessages);
+    }
+
+    @Test
+    public void testMixedBatchIsSplitAlongTheRoutesOfItsMessages() {
+        CountingReceiver iBeaconReceiver = new CountingReceiver();
+        CountingReceiver allMessagesReceiver = new CountingReceiver();
+        source.addReceiver(IBeaconMessage.class, iBeaconReceiver);
+        source.addReceiver(allMessagesReceiver);
+        BeaconMessage tagMessage = new RelutionTagMessageV1(new long[]{1});
+
+        source.onReceivedMessages(null, Arrays.asList(message, tagMessage, message));
+        // Routes that were already computed have to be recomputed for a new receiver.
+        CountingReceiver tagReceiver = new CountingReceiver();
+        source.addReceiver(RelutionTagMessageV1.class, tagReceiver);
+        source.onReceivedMessages(null, Arrays.asList(tagMessage, message));
+        source.onReceivedMessage(null, tagMessage);
+
+        Assert.assertEquals(2, iBeaconReceiver.receivedBatches);
+        Assert.assertEquals(3, iBeaconReceiver.receivedMessages);
+        Assert.assertEquals(2, allMessagesReceiver.receivedBatches);
+        Assert.assertEquals(6, allMessagesReceiver.receivedMessages);
+        Assert.assertEquals(1, tagReceiver.receivedBatches);
+        Assert.assertEquals(2, tagReceiver.receivedMessages);
+    }
+
+    @Test
+    @Ignore("Benchmark, run manually.")
+    public void testFanOutCostPerMessage() {
+        final int warmUpMessages = 100000;
+        final int measuredMessages = 1000000;
+        int[] receiverCounts = new int[]{1, 4, 16};
+        for (int numReceivers : receiverCounts) {
+            SourceNode node = new SourceNode();
+            CountingReceiver[] receivers = new CountingReceiver[numReceivers];
+            for (int i = 0; i < numReceivers; i++) {
+                receivers[i] = new CountingReceiver();
+                node.addReceiver(receivers[i]);
+            }
+            for (int i = 0; i < warmUpMessages; i++) {
+                node.onReceivedMessage(null, message);
+            }
+            long startTime = System.nanoTime();
+            for (int i = 0; i < measuredMessages; i++) {
+                node.onReceivedMessage(null, message);
+            }
+            long durationInNs = System.nanoTime() - startTime;
+            System.out.println("Fan-out to " + numReceivers + " receivers: "
+                    + ((float) durationInNs / measuredMessages) + " ns per message");
+
+            for (CountingReceiver receiver : receivers) {
+                Assert.assertEquals(warmUpMessages + measuredMessages, receiver.receivedMessages);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+//
+//  HashSlotTableTest.java
+//  BlueRangeSDK
+//
+// Copyright (c) 2016-2017, M-Way Solutions GmbH
+// All rights reserved.
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+package com.mway.bluerange.android.sdk.utils.structs;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashSlotTableTest {
+
+    private HashSlotTable<String> table;
+
+    @Before
+    public void setUp() {
+        this.table = new HashSlotTable<>(4);
+    }
+
+    @Test
+    public void testAddedKeysShouldBeFound() {
+        int slot1 = table.addKey("a");
+        int slot2 = table.addKey("b");
+
+        Assert.assertTrue(slot1 != slot2);
+        Assert.assertEquals(slot1, table.getSlot("a"));
+        Assert.assertEquals(slot2, table.getSlot("b"));
+        Assert.assertEquals(-1, table.getSlot("c"));
+        Assert.assertEquals(2, table.size());
+    }
+
+    @Test
+    public void testAddingKeyTwiceShouldReturnSameSlot() {
+        int slot = table.addKey("a");
+        Assert.assertEquals(slot, table.addKey(new String("a")));
+        Assert.assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testSlotsShouldStayValidWhenTableGrows() {
+        int[] slots = new int[100];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = table.addKey("key" + i);
+        }
+        for (int i = 0; i < slots.length; i++) {
+            Assert.assertEquals(slots[i], table.getSlot("key" + i));
+            Assert.assertEquals("key" + i, table.getKey(slots[i]));
+        }
+        Assert.assertTrue(table.capacity() >= 100);
+    }
+
+    @Test
+    public void testRemovedKeysShouldNotBeFound() {
+        for (int i = 0; i < 100; i++) {
+            table.addKey("key" + i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            table.removeKey("key" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i % 2 == 1, table.getSlot("key" + i) >= 0);
+        }
+        Assert.assertEquals(50, table.size());
+    }
+
+    @Test
+    public void testSlotsOfRemovedKeysShouldBeReused() {
+        for (int i = 0; i < 4; i++) {
+            table.addKey("key" + i);
+        }
+        int slot = table.removeKey("key1");
+        int capacity = table.capacity();
+
+        Assert.assertNull(table.getKey(slot));
+        Assert.assertEquals(slot, table.addKey("other"));
+        Assert.assertEquals(capacity, table.capacity());
+    }
+}